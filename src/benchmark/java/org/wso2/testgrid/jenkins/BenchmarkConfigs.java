@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds synthetic TestGrid configurations for the benchmarks.
+ */
+final class BenchmarkConfigs {
+
+    private static final int SCRIPTS_PER_GROUP = 10;
+
+    private BenchmarkConfigs() {
+    }
+
+    /**
+     * Build a job property with {@code size} infrastructure scripts, {@code size} deployment
+     * pattern scripts and {@code size} scenarios, grouped ten scripts per provisioner and pattern.
+     *
+     * @param size  number of scripts and scenarios
+     * @param nonce value mixed into every section, so that distinct nonces never share cached content
+     * @return the job property
+     */
+    static TestgridJobProperty newProperty(int size, String nonce) {
+        int groups = Math.max(1, size / SCRIPTS_PER_GROUP);
+        int scriptsPerGroup = Math.min(size, SCRIPTS_PER_GROUP);
+
+        List<JenkinsInfrastructureConfig> infrastructureConfigs = new ArrayList<>(groups);
+        List<JenkinsDeploymentPatternConfig> patternConfigs = new ArrayList<>(groups);
+        for (int group = 0; group < groups; group++) {
+            List<JenkinsScriptConfig> scripts = new ArrayList<>(scriptsPerGroup);
+            List<JenkinsDeploymentPatternScript> patternScripts = new ArrayList<>(scriptsPerGroup);
+            for (int script = 0; script < scriptsPerGroup; script++) {
+                scripts.add(new JenkinsScriptConfig("infra-" + group + "-" + script, "infra-" + script + ".yaml",
+                        "Infrastructure script " + script, "CLOUDFORMATION", parameters(script)));
+                patternScripts.add(new JenkinsDeploymentPatternScript("deploy-" + group + "-" + script, "SHELL",
+                        "deploy-" + script + ".sh", parameters(script)));
+            }
+            infrastructureConfigs.add(new JenkinsInfrastructureConfig("https://github.com/wso2/testgrid-infra.git",
+                    "master", "Provisioner " + group + " " + nonce, "provisioner-" + group, scripts));
+            patternConfigs.add(new JenkinsDeploymentPatternConfig("pattern-" + group, "Pattern " + group + " " + nonce,
+                    patternScripts, "https://github.com/wso2/testgrid-deployment.git", "master"));
+        }
+
+        List<JenkinsScenario> scenarios = new ArrayList<>(size);
+        for (int scenario = 0; scenario < size; scenario++) {
+            scenarios.add(new JenkinsScenario("scenario-" + scenario, "Scenario " + scenario + " " + nonce,
+                    "scenarios/scenario-" + scenario));
+        }
+
+        return new TestgridJobProperty(infrastructureConfigs,
+                Collections.singletonList(new JenkinsDeploymentConfig(patternConfigs)),
+                null, null, false, false, scenarios, "https://github.com/wso2/testgrid-scenarios.git",
+                TestgridJobProperty.TESTNG, "master", "qa@example.com");
+    }
+
+    /**
+     * Build a parameters block of roughly {@code kilobytes} KB.
+     */
+    static String parameterBlock(int kilobytes, int seed) {
+        StringBuilder builder = new StringBuilder(kilobytes * 1024 + 128);
+        int line = 0;
+        while (builder.length() < kilobytes * 1024) {
+            switch (line % 4) {
+                case 0:
+                    builder.append("DBEngine").append(line).append("=mysql\n");
+                    break;
+                case 1:
+                    builder.append("JdbcUrl").append(line).append(" = jdbc:mysql://db-").append(seed)
+                            .append(":3306/wso2?useSSL=false&autoReconnect=true\n");
+                    break;
+                case 2:
+                    builder.append("KeyPair").append(line).append("=\"dGVzdGdyaWQ=\\tYmVuY2htYXJr\"\n");
+                    break;
+                default:
+                    builder.append("# comment line ").append(line).append('\n');
+                    break;
+            }
+            line++;
+        }
+        return builder.toString();
+    }
+
+    private static String parameters(int seed) {
+        return "region=us-east-1\n"
+                + "DBEngine=mysql\n"
+                + "DBEngineVersion=5.7\n"
+                + "JdbcUrl=jdbc:mysql://db-" + seed + ":3306/wso2?useSSL=false\n"
+                + "OS=CentOS\n";
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the structural comparison of two TestGrid configurations, when they are equal and
+ * when a single scenario was added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigDiffBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private TestgridJobProperty before;
+    private TestgridJobProperty unchanged;
+    private TestgridJobProperty changed;
+
+    @Setup
+    public void setUp() {
+        before = BenchmarkConfigs.newProperty(size, "diff");
+        unchanged = BenchmarkConfigs.newProperty(size, "diff");
+        changed = BenchmarkConfigs.newProperty(size, "diff");
+        changed.getScenarioList().add(new JenkinsScenario("added", "Added scenario", "scenarios/added"));
+    }
+
+    @Benchmark
+    public List<TestgridConfigDiff.Change> unchanged() {
+        return TestgridConfigDiff.compare(before, unchanged);
+    }
+
+    @Benchmark
+    public List<TestgridConfigDiff.Change> scenarioAdded() {
+        return TestgridConfigDiff.compare(before, changed);
+    }
+}
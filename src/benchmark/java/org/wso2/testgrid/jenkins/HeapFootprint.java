@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.util.XStream2;
+import org.wso2.testgrid.jenkins.util.StringPool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by the TestGrid configuration of many jobs, as loaded from their
+ * config.xml files at controller startup, with and without {@link StringPool}.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@heap-footprint
+ * </pre>
+ *
+ * Each mode runs in its own JVM, since pooling is fixed when the pool class is loaded.
+ */
+public final class HeapFootprint {
+
+    private static final int JOBS = Integer.getInteger("jobs", 5000);
+    private static final int SIZE = Integer.getInteger("size", 20);
+    private static final String MEASURE = "measure";
+
+    /**
+     * Keeps the measured configurations reachable.
+     */
+    private static Object[] retained;
+
+    private HeapFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && MEASURE.equals(args[0])) {
+            System.out.println(measure());
+            return;
+        }
+        long pooled = run(false);
+        long unpooled = run(true);
+        System.out.printf("%d jobs of size %d%n", JOBS, SIZE);
+        System.out.printf("without pooling: %,d bytes (%,d per job)%n", unpooled, unpooled / JOBS);
+        System.out.printf("with pooling:    %,d bytes (%,d per job)%n", pooled, pooled / JOBS);
+        System.out.printf("reduction:       %.1f%%%n", 100.0 * (unpooled - pooled) / unpooled);
+    }
+
+    /**
+     * Load the configurations of all jobs and return the heap they retain.
+     */
+    private static long measure() {
+        XStream2 xstream = new XStream2();
+        List<String> configs = new ArrayList<>(JOBS);
+        for (int job = 0; job < JOBS; job++) {
+            configs.add(xstream.toXML(BenchmarkConfigs.newProperty(SIZE, "job-" + job)));
+        }
+        // load once so that classes and XStream caches are not counted
+        xstream.fromXML(configs.get(0));
+
+        long before = usedHeap();
+        Object[] properties = new Object[JOBS];
+        for (int job = 0; job < JOBS; job++) {
+            properties[job] = xstream.fromXML(configs.get(job));
+        }
+        retained = properties;
+        long after = usedHeap();
+        retained = null;
+        return after - before;
+    }
+
+    private static long run(boolean disablePooling) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.add("-Xmx2g");
+        command.add("-Djobs=" + JOBS);
+        command.add("-Dsize=" + SIZE);
+        command.add("-D" + StringPool.class.getName() + ".disabled=" + disablePooling);
+        command.add("-classpath");
+        command.add(System.getProperty("java.class.path"));
+        command.add(HeapFootprint.class.getName());
+        command.add(MEASURE);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IOException("measurement failed: " + last);
+        }
+        return Long.parseLong(last.trim());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.util.XStream2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the XStream persistence of {@link TestgridJobProperty}, as done when a job's
+ * config.xml is saved and when it is loaded at controller startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PropertyPersistenceBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    public int size;
+
+    private XStream2 xstream;
+    private TestgridJobProperty property;
+    private String xml;
+
+    @Setup
+    public void setUp() {
+        xstream = new XStream2();
+        property = BenchmarkConfigs.newProperty(size, "persistence");
+        xml = xstream.toXML(property);
+    }
+
+    @Benchmark
+    public String marshal() {
+        return xstream.toXML(property);
+    }
+
+    @Benchmark
+    public Object unmarshal() {
+        return xstream.fromXML(xml);
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return xstream.fromXML(xstream.toXML(property));
+    }
+}
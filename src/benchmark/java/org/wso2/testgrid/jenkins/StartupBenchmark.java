@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.util.XStream2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading the TestGrid configuration of thousands of jobs, as done at controller startup:
+ * <ul>
+ *     <li>{@code reflection} reads the default XStream layout without {@link TestgridJobPropertyConverter};</li>
+ *     <li>{@code legacy} reads the same layout through the converter, as done once after upgrading;</li>
+ *     <li>{@code compact} reads the layout written by the converter.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final int SIZE = 20;
+
+    @Param({"1000", "5000"})
+    public int jobs;
+
+    @Param({"reflection", "legacy", "compact"})
+    public String layout;
+
+    private XStream2 xstream;
+    private String[] configs;
+
+    @Setup
+    public void setUp() {
+        XStream2 reflective = new XStream2();
+        XStream2 compact = new XStream2();
+        compact.registerConverter(new TestgridJobPropertyConverter(compact));
+        XStream2 writer = "compact".equals(layout) ? compact : reflective;
+        xstream = "reflection".equals(layout) ? reflective : compact;
+
+        configs = new String[jobs];
+        for (int job = 0; job < jobs; job++) {
+            configs[job] = writer.toXML(BenchmarkConfigs.newProperty(SIZE, "job-" + job));
+        }
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) {
+        for (String config : configs) {
+            blackhole.consume(xstream.fromXML(config));
+        }
+    }
+}
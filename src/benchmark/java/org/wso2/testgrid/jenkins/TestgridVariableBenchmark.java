@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the 'testgrid' pipeline variable outside of a running controller: the
+ * per build lookup done by {@link TestgridVariable#getValue}, the first read of the cells or the
+ * YAML by a new build, the reads that follow within the same build, and the serialization round
+ * trip done at every pipeline checkpoint and resume.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestgridVariableBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    public int size;
+
+    private TestgridJobProperty property;
+    private Object build;
+    private byte[] checkpoint;
+
+    @Setup
+    public void setUp() throws IOException {
+        property = BenchmarkConfigs.newProperty(size, "variable");
+        build = new Object();
+        TestgridHandle handle = handle(build);
+        handle.get(TestgridHandle.CELLS);
+        handle.get(TestgridHandle.YAML);
+        checkpoint = serialize(handle);
+    }
+
+    @Benchmark
+    public Object firstCells() {
+        return handle(new Object()).get(TestgridHandle.CELLS);
+    }
+
+    @Benchmark
+    public Object firstYaml() {
+        return handle(new Object()).get(TestgridHandle.YAML);
+    }
+
+    @Benchmark
+    public Object laterCells() {
+        return handle(build).get(TestgridHandle.CELLS);
+    }
+
+    @Benchmark
+    public Object checkpointRoundTrip() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialize(handle(build))))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public Object resume() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(checkpoint))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Looks up the handle of a build the way {@link TestgridHandle#forBuild(hudson.model.Run)} does,
+     * with the job configuration at hand instead of in a controller.
+     */
+    private TestgridHandle handle(Object owner) {
+        return TestgridHandle.forBuild(owner, () -> new TestgridHandle("folder/job", property));
+    }
+
+    private static byte[] serialize(TestgridHandle handle) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(handle);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures TestGrid YAML generation for configurations of increasing size.
+ *
+ * {@code cold} renders configurations whose sections are not cached yet, which is the cost of
+ * the first generation after a config save. {@code warm} generates an unchanged configuration
+ * again, which only hashes the inputs and reuses the cached sections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YamlGenerationBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    public int size;
+
+    private TestgridJobProperty unchanged;
+    private TestgridJobProperty changed;
+    private long nonce;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        unchanged = BenchmarkConfigs.newProperty(size, "unchanged");
+        TestgridYamlGenerator.generate(unchanged);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        changed = BenchmarkConfigs.newProperty(size, String.valueOf(nonce++));
+    }
+
+    @Benchmark
+    public String cold() {
+        return TestgridYamlGenerator.generate(changed);
+    }
+
+    @Benchmark
+    public String warm() {
+        return TestgridYamlGenerator.generate(unchanged);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+import org.wso2.testgrid.jenkins.snapshot.YamlSnapshotStore;
+import org.wso2.testgrid.jenkins.util.ScriptParameters;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Structural difference between the TestGrid configurations two builds ran with.
+ *
+ * Both configurations are read back from their {@link YamlSnapshotStore} snapshots, and compared
+ * at the level of provisioners, patterns and scenarios, their scripts, and the parameters of each
+ * script. Entries are matched by name. The comparison descends only into the parts whose hashes
+ * differ: identical snapshots, sections and provisioners or patterns are skipped without looking
+ * at their content.
+ */
+public final class TestgridConfigDiff {
+
+    /**
+     * Configurations read from snapshots, keyed by snapshot hash.
+     */
+    private static final Cache<String, TestgridJobProperty> CONFIGS = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(TestgridConfigDiff.class.getName() + ".cacheSize", 100))
+            .softValues()
+            .build();
+
+    /**
+     * Kind of a difference.
+     */
+    public enum Kind {
+        ADDED, REMOVED, CHANGED
+    }
+
+    /**
+     * One difference, at a path such as {@code provisioners/aws/scripts/infra/parameters/region}.
+     */
+    public static final class Change {
+
+        private final Kind kind;
+        private final String path;
+        private final String before;
+        private final String after;
+
+        Change(Kind kind, String path, String before, String after) {
+            this.kind = kind;
+            this.path = path;
+            this.before = before;
+            this.after = after;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getBefore() {
+            return before;
+        }
+
+        public String getAfter() {
+            return after;
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    private TestgridConfigDiff() {
+    }
+
+    /**
+     * Compare the configurations of two snapshots.
+     *
+     * @param beforeHash hash of the earlier snapshot
+     * @param afterHash  hash of the later snapshot
+     * @return the differences, in the order of the configuration
+     * @throws IOException if a snapshot is missing or cannot be read
+     */
+    public static List<Change> compare(String beforeHash, String afterHash) throws IOException {
+        if (beforeHash.equals(afterHash)) {
+            return Collections.emptyList();
+        }
+        return compare(read(beforeHash), read(afterHash));
+    }
+
+    /**
+     * Compare two configurations.
+     *
+     * @param before earlier configuration
+     * @param after  later configuration
+     * @return the differences, in the order of the configuration
+     */
+    static List<Change> compare(TestgridJobProperty before, TestgridJobProperty after) {
+        TestgridConfigDiff diff = new TestgridConfigDiff();
+        diff.diff(before, after);
+        return Collections.unmodifiableList(diff.changes);
+    }
+
+    /**
+     * Write differences as JSON.
+     *
+     * @param changes differences to write
+     * @return an array of objects holding the kind, path, and values before and after
+     */
+    public static JSONArray toJson(List<Change> changes) {
+        JSONArray array = new JSONArray();
+        for (Change change : changes) {
+            JSONObject object = new JSONObject();
+            object.put("kind", change.getKind().name());
+            object.put("path", change.getPath());
+            if (change.getBefore() != null) {
+                object.put("before", change.getBefore());
+            }
+            if (change.getAfter() != null) {
+                object.put("after", change.getAfter());
+            }
+            array.add(object);
+        }
+        return array;
+    }
+
+    /**
+     * Returns the TestGrid configuration held by a YAML snapshot, read once and cached.
+     *
+     * @param hash content hash of the snapshot
+     * @return the configuration, without email recipients
+     * @throws IOException if the snapshot is no longer stored or cannot be read
+     */
+    static TestgridJobProperty read(String hash) throws IOException {
+        try {
+            return CONFIGS.get(hash, () -> {
+                String yaml = YamlSnapshotStore.get().load(hash);
+                if (yaml == null) {
+                    throw new IOException("The TestGrid YAML snapshot " + hash + " is no longer stored");
+                }
+                return TestgridYamlReader.read(new StringReader(yaml), null);
+            });
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void diff(TestgridJobProperty before, TestgridJobProperty after) {
+        if (!TestgridYamlGenerator.infrastructureDigest(before)
+                .equals(TestgridYamlGenerator.infrastructureDigest(after))) {
+            value("includes", includes(before), includes(after));
+            value("excludes", excludes(before), excludes(after));
+            named("provisioners/", byName(before.getInfrastructureConfigs(), JenkinsInfrastructureConfig::getName),
+                    byName(after.getInfrastructureConfigs(), JenkinsInfrastructureConfig::getName),
+                    this::provisioner);
+        }
+        if (!TestgridYamlGenerator.deploymentDigest(before).equals(TestgridYamlGenerator.deploymentDigest(after))) {
+            named("patterns/", byName(patterns(before), JenkinsDeploymentPatternConfig::getName),
+                    byName(patterns(after), JenkinsDeploymentPatternConfig::getName), this::pattern);
+        }
+        if (!TestgridYamlGenerator.scenarioDigest(before).equals(TestgridYamlGenerator.scenarioDigest(after))) {
+            value("scenarioGitURL", before.getScenarioGitURL(), after.getScenarioGitURL());
+            value("scenarioGitBranch", before.getScenarioGitBranch(), after.getScenarioGitBranch());
+            named("scenarios/", byName(before.getScenarioList(), JenkinsScenario::getName),
+                    byName(after.getScenarioList(), JenkinsScenario::getName), this::scenario);
+        }
+    }
+
+    private void provisioner(String path, JenkinsInfrastructureConfig before, JenkinsInfrastructureConfig after) {
+        if (TestgridYamlGenerator.provisionerDigest(before).equals(TestgridYamlGenerator.provisionerDigest(after))) {
+            return;
+        }
+        value(path + "description", before.getDescription(), after.getDescription());
+        value(path + "gitURL", before.getGitURL(), after.getGitURL());
+        value(path + "gitBranch", before.getGitBranch(), after.getGitBranch());
+        named(path + "scripts/", byName(before.getScriptConfigs(), JenkinsScriptConfig::getName),
+                byName(after.getScriptConfigs(), JenkinsScriptConfig::getName), (scriptPath, b, a) -> {
+                    value(scriptPath + "description", b.getDescription(), a.getDescription());
+                    value(scriptPath + "type", b.getIacProvider(), a.getIacProvider());
+                    value(scriptPath + "file", b.getFile(), a.getFile());
+                    parameters(scriptPath + "parameters/", b.getParameters(), a.getParameters());
+                });
+    }
+
+    private void pattern(String path, JenkinsDeploymentPatternConfig before, JenkinsDeploymentPatternConfig after) {
+        if (TestgridYamlGenerator.patternDigest(before).equals(TestgridYamlGenerator.patternDigest(after))) {
+            return;
+        }
+        value(path + "description", before.getDescription(), after.getDescription());
+        value(path + "gitURL", before.getGitURL(), after.getGitURL());
+        value(path + "gitBranch", before.getGitBranch(), after.getGitBranch());
+        named(path + "scripts/", byName(before.getDeploymentPatternScripts(), JenkinsDeploymentPatternScript::getName),
+                byName(after.getDeploymentPatternScripts(), JenkinsDeploymentPatternScript::getName),
+                (scriptPath, b, a) -> {
+                    value(scriptPath + "type", b.getType(), a.getType());
+                    value(scriptPath + "file", b.getFile(), a.getFile());
+                    parameters(scriptPath + "parameters/", b.getParameters(), a.getParameters());
+                });
+    }
+
+    private void scenario(String path, JenkinsScenario before, JenkinsScenario after) {
+        value(path + "description", before.getDescription(), after.getDescription());
+        value(path + "dir", before.getDir(), after.getDir());
+    }
+
+    private void parameters(String path, String before, String after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        Map<String, String> beforeValues = ScriptParameters.parse(before);
+        Map<String, String> afterValues = ScriptParameters.parse(after);
+        Set<String> keys = new LinkedHashSet<>(beforeValues.keySet());
+        keys.addAll(afterValues.keySet());
+        for (String key : keys) {
+            value(path + key, beforeValues.get(key), afterValues.get(key));
+        }
+    }
+
+    /**
+     * Record the difference of a single value, if any.
+     */
+    private void value(String path, String before, String after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        Kind kind = before == null ? Kind.ADDED : after == null ? Kind.REMOVED : Kind.CHANGED;
+        changes.add(new Change(kind, path, before, after));
+    }
+
+    /**
+     * Record the entries only one side has, and compare the entries both sides have.
+     */
+    private <T> void named(String path, Map<String, T> before, Map<String, T> after, EntryComparator<T> comparator) {
+        for (Map.Entry<String, T> entry : before.entrySet()) {
+            T afterEntry = after.get(entry.getKey());
+            String entryPath = path + entry.getKey() + "/";
+            if (afterEntry == null) {
+                changes.add(new Change(Kind.REMOVED, path + entry.getKey(), entry.getKey(), null));
+            } else {
+                comparator.compare(entryPath, entry.getValue(), afterEntry);
+            }
+        }
+        for (String name : after.keySet()) {
+            if (!before.containsKey(name)) {
+                changes.add(new Change(Kind.ADDED, path + name, null, name));
+            }
+        }
+    }
+
+    /**
+     * Index entries by name. Entries sharing a name are told apart by their position among them.
+     */
+    private static <T> Map<String, T> byName(List<T> entries, Function<T, String> name) {
+        Map<String, T> byName = new LinkedHashMap<>();
+        if (entries == null) {
+            return byName;
+        }
+        for (T entry : entries) {
+            String key = String.valueOf(name.apply(entry));
+            for (int i = 2; byName.containsKey(key); i++) {
+                key = name.apply(entry) + "[" + i + "]";
+            }
+            byName.put(key, entry);
+        }
+        return byName;
+    }
+
+    private static List<JenkinsDeploymentPatternConfig> patterns(TestgridJobProperty property) {
+        List<JenkinsDeploymentPatternConfig> patterns = new ArrayList<>();
+        if (property.getDeploymentConfigs() != null) {
+            for (JenkinsDeploymentConfig deploymentConfig : property.getDeploymentConfigs()) {
+                if (deploymentConfig.getDeploymentPatternConfigs() != null) {
+                    patterns.addAll(deploymentConfig.getDeploymentPatternConfigs());
+                }
+            }
+        }
+        return patterns;
+    }
+
+    private static String includes(TestgridJobProperty property) {
+        if (property.getIncludeParameters() == null) {
+            return null;
+        }
+        List<String> includes = new ArrayList<>();
+        for (TestgridJobProperty.IncludeParameter includeParameter : property.getIncludeParameters()) {
+            includes.add(includeParameter.getIncludeParameter());
+        }
+        return String.join(", ", includes);
+    }
+
+    private static String excludes(TestgridJobProperty property) {
+        if (property.getExcludeParameters() == null) {
+            return null;
+        }
+        List<String> excludes = new ArrayList<>();
+        for (TestgridJobProperty.ExcludeParameter excludeParameter : property.getExcludeParameters()) {
+            excludes.add(excludeParameter.getExcludeParameter());
+        }
+        return String.join(", ", excludes);
+    }
+
+    @FunctionalInterface
+    private interface EntryComparator<T> {
+        void compare(String path, T before, T after);
+    }
+}
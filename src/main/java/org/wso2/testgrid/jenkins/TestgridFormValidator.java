@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.model.Descriptor;
+import hudson.model.Item;
+import hudson.util.FormValidation;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.git.RemoteValidation;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Validates the whole TestGrid section of a job configuration form in one pass.
+ *
+ * The result maps the path of every validated field, such as
+ * {@code infrastructureConfigs[0].scriptConfigs[1].file}, to the rendered validation message,
+ * which is empty for valid fields. The rules themselves are the {@code check*} methods of the
+ * descriptors of each part of the configuration. Entries based on a template only need the
+ * template to exist, since every other field is an optional override.
+ */
+final class TestgridFormValidator {
+
+    private final TestgridJobProperty.PropertyImpl propertyDescriptor;
+    private final Item item;
+    private final JSONObject fields = new JSONObject();
+    private int errors;
+
+    private TestgridFormValidator(TestgridJobProperty.PropertyImpl propertyDescriptor, Item item) {
+        this.propertyDescriptor = propertyDescriptor;
+        this.item = item;
+    }
+
+    /**
+     * Validate the form data of a {@link TestgridJobProperty}.
+     *
+     * @param propertyDescriptor descriptor of the property
+     * @param item               job being configured, may be {@code null}
+     * @param property           form data of the property
+     * @return the validation messages keyed by field path, and the number of errors
+     */
+    static JSONObject validate(TestgridJobProperty.PropertyImpl propertyDescriptor, Item item,
+                               JSONObject property) {
+        TestgridFormValidator validator = new TestgridFormValidator(propertyDescriptor, item);
+        validator.prefetch(property);
+        validator.validateProperty(property);
+        JSONObject result = new JSONObject();
+        result.put("errors", validator.errors);
+        result.put("fields", validator.fields);
+        return result;
+    }
+
+    /**
+     * Start listing every repository of the form, so that the remote checks of different
+     * repositories overlap instead of each waiting in turn.
+     */
+    private void prefetch(JSONObject property) {
+        for (JSONObject infraConfig : entries(property, "infrastructureConfigs")) {
+            RemoteValidation.prefetch(item, infraConfig.optString("gitURL"));
+        }
+        for (JSONObject deploymentConfig : entries(property, "deploymentConfigs")) {
+            for (JSONObject patternConfig : entries(deploymentConfig, "deploymentPatternConfigs")) {
+                RemoteValidation.prefetch(item, patternConfig.optString("gitURL"));
+            }
+        }
+        RemoteValidation.prefetch(item, property.optString("scenarioGitURL"));
+    }
+
+    private void validateProperty(JSONObject property) {
+        JenkinsInfrastructureConfig.DescriptorImpl infraDescriptor = JenkinsInfrastructureConfig.DESCRIPTOR;
+        JenkinsScriptConfig.DescriptorImpl scriptDescriptor = JenkinsScriptConfig.DESCRIPTOR;
+        JenkinsDeploymentPatternConfig.DescriptorImpl patternDescriptor = JenkinsDeploymentPatternConfig.DESCRIPTOR;
+        JenkinsDeploymentPatternScript.DescriptorImpl patternScriptDescriptor = JenkinsDeploymentPatternScript.DESCRIPTOR;
+        JenkinsScenario.DescriptorImpl scenarioDescriptor = JenkinsScenario.DESCRIPTOR;
+
+        List<JSONObject> infraConfigs = entries(property, "infrastructureConfigs");
+        add(propertyDescriptor, "infrastructureConfigs", propertyDescriptor.checkInfrastructureConfigs(infraConfigs));
+        for (int i = 0; i < infraConfigs.size(); i++) {
+            JSONObject infraConfig = infraConfigs.get(i);
+            String path = "infrastructureConfigs[" + i + "].";
+            String template = infraConfig.optString("template");
+            if (template.isEmpty()) {
+                add(infraDescriptor, path + "name", infraDescriptor.checkName(infraConfig.optString("name")));
+                add(infraDescriptor, path + "gitURL",
+                        infraDescriptor.checkGitURL(item, infraConfig.optString("gitURL")));
+                add(infraDescriptor, path + "gitBranch", infraDescriptor.checkGitBranch(item,
+                        infraConfig.optString("gitBranch"), infraConfig.optString("gitURL")));
+            } else {
+                TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+                add(infraDescriptor, path + "template", checkTemplate(globalConfiguration != null
+                        && globalConfiguration.getProvisionerTemplate(template) != null));
+            }
+            List<JSONObject> scriptConfigs = entries(infraConfig, "scriptConfigs");
+            for (int j = 0; j < scriptConfigs.size(); j++) {
+                JSONObject scriptConfig = scriptConfigs.get(j);
+                String scriptPath = path + "scriptConfigs[" + j + "].";
+                add(scriptDescriptor, scriptPath + "name", scriptDescriptor.checkName(scriptConfig.optString("name")));
+                add(scriptDescriptor, scriptPath + "file", scriptDescriptor.checkFile(scriptConfig.optString("file")));
+            }
+        }
+
+        List<JSONObject> deploymentConfigs = entries(property, "deploymentConfigs");
+        for (int i = 0; i < deploymentConfigs.size(); i++) {
+            List<JSONObject> patternConfigs = entries(deploymentConfigs.get(i), "deploymentPatternConfigs");
+            for (int j = 0; j < patternConfigs.size(); j++) {
+                JSONObject patternConfig = patternConfigs.get(j);
+                String path = "deploymentConfigs[" + i + "].deploymentPatternConfigs[" + j + "].";
+                String template = patternConfig.optString("template");
+                if (template.isEmpty()) {
+                    add(patternDescriptor, path + "name", patternDescriptor.checkName(patternConfig.optString("name")));
+                    add(patternDescriptor, path + "gitURL",
+                            patternDescriptor.checkGitURL(item, patternConfig.optString("gitURL")));
+                    add(patternDescriptor, path + "gitBranch", patternDescriptor.checkGitBranch(item,
+                            patternConfig.optString("gitBranch"), patternConfig.optString("gitURL")));
+                } else {
+                    TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+                    add(patternDescriptor, path + "template", checkTemplate(globalConfiguration != null
+                            && globalConfiguration.getPatternTemplate(template) != null));
+                }
+                List<JSONObject> patternScripts = entries(patternConfig, "deploymentPatternScripts");
+                for (int k = 0; k < patternScripts.size(); k++) {
+                    JSONObject patternScript = patternScripts.get(k);
+                    String scriptPath = path + "deploymentPatternScripts[" + k + "].";
+                    add(patternScriptDescriptor, scriptPath + "name",
+                            patternScriptDescriptor.checkName(patternScript.optString("name")));
+                    add(patternScriptDescriptor, scriptPath + "file",
+                            patternScriptDescriptor.checkFile(patternScript.optString("file")));
+                }
+            }
+        }
+
+        add(propertyDescriptor, "scenarioGitURL",
+                propertyDescriptor.checkScenarioGitURL(item, property.optString("scenarioGitURL")));
+        add(propertyDescriptor, "scenarioGitBranch", propertyDescriptor.checkScenarioGitBranch(item,
+                property.optString("scenarioGitBranch"), property.optString("scenarioGitURL")));
+        List<JSONObject> scenarios = entries(property, "scenarioList");
+        for (int i = 0; i < scenarios.size(); i++) {
+            JSONObject scenario = scenarios.get(i);
+            String path = "scenarioList[" + i + "].";
+            add(scenarioDescriptor, path + "name", scenarioDescriptor.checkName(scenario.optString("name")));
+            add(scenarioDescriptor, path + "dir", scenarioDescriptor.checkDir(scenario.optString("dir")));
+        }
+
+        add(propertyDescriptor, "emailToList", propertyDescriptor.checkEmailToList(property.optString("emailToList")));
+    }
+
+    private static FormValidation checkTemplate(boolean exists) {
+        return exists ? FormValidation.ok() : FormValidation.error("No such template in the global configuration");
+    }
+
+    private void add(Descriptor<?> descriptor, String path, FormValidation validation) {
+        TestgridMetrics.VALIDATIONS.inc(descriptor.getId());
+        if (validation.kind == FormValidation.Kind.ERROR) {
+            errors++;
+        }
+        fields.put(path, validation.renderHtml());
+    }
+
+    /**
+     * Returns the entries of a repeatable field, which the form submits as a single object when
+     * there is one entry and as an array when there are more.
+     */
+    private static List<JSONObject> entries(JSONObject parent, String key) {
+        Object value = parent.opt(key);
+        if (value instanceof JSONObject && !((JSONObject) value).isNullObject()) {
+            return Collections.singletonList((JSONObject) value);
+        }
+        if (!(value instanceof JSONArray)) {
+            return Collections.emptyList();
+        }
+        List<JSONObject> entries = new ArrayList<>();
+        for (Object entry : (JSONArray) value) {
+            if (entry instanceof JSONObject) {
+                entries.add((JSONObject) entry);
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import hudson.util.Secret;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global TestGrid configuration: a library of infrastructure provisioner and deployment pattern
+ * templates, defined once and referenced by name from the jobs, and the SMTP server and batching
+ * of the report mails.
+ *
+ * A job entry that references a template and overrides nothing uses the template instance
+ * itself, so every job shares one copy of it.
+ */
+@Extension
+public class TestgridGlobalConfiguration extends GlobalConfiguration {
+
+    /**
+     * Incremented whenever the templates change, so that values derived from them can be recomputed.
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private static final int DEFAULT_SMTP_PORT = 25;
+
+    private List<JenkinsInfrastructureConfig> provisionerTemplates;
+    private List<JenkinsDeploymentPatternConfig> patternTemplates;
+
+    private String smtpHost;
+    private int smtpPort = DEFAULT_SMTP_PORT;
+    private boolean smtpStartTls;
+    private String smtpUsername;
+    private Secret smtpPassword;
+    private String mailFrom;
+    private long mailBatchWindowSeconds;
+
+    private transient volatile Map<String, JenkinsInfrastructureConfig> provisionersByName = Collections.emptyMap();
+    private transient volatile Map<String, JenkinsDeploymentPatternConfig> patternsByName = Collections.emptyMap();
+
+    public TestgridGlobalConfiguration() {
+        load();
+        index();
+    }
+
+    /**
+     * @return the global TestGrid configuration, or {@code null} if Jenkins is not running
+     */
+    public static TestgridGlobalConfiguration get() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return GlobalConfiguration.all().get(TestgridGlobalConfiguration.class);
+    }
+
+    /**
+     * @param infraConfig provisioner
+     * @return whether the provisioner is one of the templates, as opposed to a job's own entry
+     */
+    public static boolean isTemplate(JenkinsInfrastructureConfig infraConfig) {
+        TestgridGlobalConfiguration globalConfiguration = get();
+        return globalConfiguration != null && infraConfig.getName() != null
+                && globalConfiguration.provisionersByName.get(infraConfig.getName()) == infraConfig;
+    }
+
+    /**
+     * @param patternConfig deployment pattern
+     * @return whether the deployment pattern is one of the templates, as opposed to a job's own entry
+     */
+    public static boolean isTemplate(JenkinsDeploymentPatternConfig patternConfig) {
+        TestgridGlobalConfiguration globalConfiguration = get();
+        return globalConfiguration != null && patternConfig.getName() != null
+                && globalConfiguration.patternsByName.get(patternConfig.getName()) == patternConfig;
+    }
+
+    /**
+     * @return a number that changes whenever the templates change
+     */
+    public static long getGeneration() {
+        return GENERATION.get();
+    }
+
+    public List<JenkinsInfrastructureConfig> getProvisionerTemplates() {
+        return provisionerTemplates;
+    }
+
+    public void setProvisionerTemplates(List<JenkinsInfrastructureConfig> provisionerTemplates) {
+        this.provisionerTemplates = provisionerTemplates;
+        index();
+    }
+
+    public List<JenkinsDeploymentPatternConfig> getPatternTemplates() {
+        return patternTemplates;
+    }
+
+    public void setPatternTemplates(List<JenkinsDeploymentPatternConfig> patternTemplates) {
+        this.patternTemplates = patternTemplates;
+        index();
+    }
+
+    /**
+     * @return host of the SMTP server for report mails, or {@code null} to use the Jenkins mailer settings
+     */
+    public String getSmtpHost() {
+        return smtpHost;
+    }
+
+    public void setSmtpHost(String smtpHost) {
+        this.smtpHost = Util.fixEmptyAndTrim(smtpHost);
+    }
+
+    public int getSmtpPort() {
+        return smtpPort;
+    }
+
+    public void setSmtpPort(int smtpPort) {
+        this.smtpPort = smtpPort > 0 ? smtpPort : DEFAULT_SMTP_PORT;
+    }
+
+    public boolean isSmtpStartTls() {
+        return smtpStartTls;
+    }
+
+    public void setSmtpStartTls(boolean smtpStartTls) {
+        this.smtpStartTls = smtpStartTls;
+    }
+
+    public String getSmtpUsername() {
+        return smtpUsername;
+    }
+
+    public void setSmtpUsername(String smtpUsername) {
+        this.smtpUsername = Util.fixEmptyAndTrim(smtpUsername);
+    }
+
+    public Secret getSmtpPassword() {
+        return smtpPassword;
+    }
+
+    public void setSmtpPassword(Secret smtpPassword) {
+        this.smtpPassword = smtpPassword;
+    }
+
+    /**
+     * @return sender address of report mails, or {@code null} for the Jenkins administrator address
+     */
+    public String getMailFrom() {
+        return mailFrom;
+    }
+
+    public void setMailFrom(String mailFrom) {
+        this.mailFrom = Util.fixEmptyAndTrim(mailFrom);
+    }
+
+    /**
+     * @return seconds the reports of several builds for the same recipients are collected into
+     * one mail, {@code 0} for one mail per build
+     */
+    public long getMailBatchWindowSeconds() {
+        return mailBatchWindowSeconds;
+    }
+
+    public void setMailBatchWindowSeconds(long mailBatchWindowSeconds) {
+        this.mailBatchWindowSeconds = Math.max(0, mailBatchWindowSeconds);
+    }
+
+    /**
+     * @param name template name
+     * @return the provisioner template with the given name, or {@code null} if there is none
+     */
+    public JenkinsInfrastructureConfig getProvisionerTemplate(String name) {
+        return name == null ? null : provisionersByName.get(name);
+    }
+
+    /**
+     * @param name template name
+     * @return the deployment pattern template with the given name, or {@code null} if there is none
+     */
+    public JenkinsDeploymentPatternConfig getPatternTemplate(String name) {
+        return name == null ? null : patternsByName.get(name);
+    }
+
+    /**
+     * @return the provisioner templates to choose from in a job, with an empty choice for none
+     */
+    public ListBoxModel getProvisionerTemplateItems() {
+        ListBoxModel model = new ListBoxModel();
+        model.add("", "");
+        for (String name : provisionersByName.keySet()) {
+            model.add(name);
+        }
+        return model;
+    }
+
+    /**
+     * @return the deployment pattern templates to choose from in a job, with an empty choice for none
+     */
+    public ListBoxModel getPatternTemplateItems() {
+        ListBoxModel model = new ListBoxModel();
+        model.add("", "");
+        for (String name : patternsByName.keySet()) {
+            model.add(name);
+        }
+        return model;
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        provisionerTemplates = null;
+        patternTemplates = null;
+        req.bindJSON(this, json);
+        index();
+        save();
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public String getDisplayName() {
+        return "TestGrid";
+    }
+
+    public FormValidation doCheckSmtpPort(@QueryParameter int value) {
+        if (value <= 0 || value > 65535) {
+            return FormValidation.error("Must be a port number");
+        }
+        return FormValidation.ok();
+    }
+
+    public FormValidation doCheckMailBatchWindowSeconds(@QueryParameter long value) {
+        if (value < 0) {
+            return FormValidation.error("Must be 0 or a positive number");
+        }
+        return FormValidation.ok();
+    }
+
+    private void index() {
+        Map<String, JenkinsInfrastructureConfig> provisioners = new TreeMap<>();
+        if (provisionerTemplates != null) {
+            for (JenkinsInfrastructureConfig template : provisionerTemplates) {
+                if (template.getName() != null) {
+                    provisioners.put(template.getName(), template);
+                }
+            }
+        }
+        Map<String, JenkinsDeploymentPatternConfig> patterns = new TreeMap<>();
+        if (patternTemplates != null) {
+            for (JenkinsDeploymentPatternConfig template : patternTemplates) {
+                if (template.getName() != null) {
+                    patterns.put(template.getName(), template);
+                }
+            }
+        }
+        provisionersByName = provisioners;
+        patternsByName = patterns;
+        GENERATION.incrementAndGet();
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.matrix.TestgridMatrix;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+import org.wso2.testgrid.jenkins.scenario.ScenarioSelectionAction;
+import org.wso2.testgrid.jenkins.snapshot.YamlSnapshotAction;
+import org.wso2.testgrid.jenkins.snapshot.YamlSnapshotStore;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Value of the 'testgrid' pipeline global variable.
+ *
+ * Only the job name, the build id and the content hash of its TestGrid configuration are serialized
+ * into the pipeline program state. The values are resolved from the job the first time they are read
+ * and kept for the lifetime of this object, which is shared by every reader within a build. If the
+ * configuration of the job changed after the build started, the values are resolved from the YAML
+ * snapshot of the build instead, so a build never sees a configuration it did not start with.
+ *
+ * When the build selected the scenarios affected by the changes of the scenario repository, the
+ * YAML, the scenarios and the cells only include the selected scenarios.
+ */
+public final class TestgridHandle extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String YAML = "yaml";
+    public static final String PROVISIONERS = "provisioners";
+    public static final String PATTERNS = "patterns";
+    public static final String SCENARIOS = "scenarios";
+    public static final String CELLS = "cells";
+
+    private static final Set<String> KEYS = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList(YAML, PROVISIONERS, PATTERNS, SCENARIOS, CELLS)));
+
+    /**
+     * Handles are kept per build so that the values resolved by a handle are shared by every
+     * reference to the variable and every step within that build.
+     */
+    private static final Map<Object, TestgridHandle> HANDLES = new WeakHashMap<>();
+
+    private final String jobFullName;
+    /**
+     * Externalizable id of the build, or {@code null} if the handle does not belong to a build.
+     */
+    private final String buildId;
+    private final String contentHash;
+    /**
+     * Names of the selected scenarios, or {@code null} if the build runs all of them.
+     */
+    private final ArrayList<String> selectedScenarios;
+
+    private transient TestgridJobProperty property;
+    private transient Map<String, Object> resolved;
+
+    TestgridHandle(String jobFullName, String buildId, String contentHash, List<String> selectedScenarios) {
+        this.jobFullName = jobFullName;
+        this.buildId = buildId;
+        this.contentHash = contentHash;
+        this.selectedScenarios = selectedScenarios == null ? null : new ArrayList<>(selectedScenarios);
+    }
+
+    /**
+     * Create a handle whose values are resolved from the given configuration, without looking up the job.
+     */
+    TestgridHandle(String jobFullName, TestgridJobProperty property) {
+        this(jobFullName, null, property.getContentHash(), null);
+        this.property = property;
+    }
+
+    /**
+     * Returns the handle of the given build, creating it on first use.
+     *
+     * @param build build to get the handle for
+     * @return the handle of the build
+     */
+    public static TestgridHandle forBuild(Run<?, ?> build) {
+        return forBuild(build, () -> {
+            TestgridJobProperty testgridJobProperty = build.getParent().getProperty(TestgridJobProperty.class);
+            if (testgridJobProperty == null) {
+                throw new IllegalStateException("job " + build.getParent().getFullName()
+                        + " does not have a TestGrid configuration");
+            }
+            ScenarioSelectionAction selection = build.getAction(ScenarioSelectionAction.class);
+            return new TestgridHandle(build.getParent().getFullName(), build.getExternalizableId(),
+                    testgridJobProperty.getContentHash(), selection == null ? null : selection.getScenarios());
+        });
+    }
+
+    /**
+     * Returns the handle kept for a build, creating it on first use.
+     *
+     * @param build   build, or any object standing for one
+     * @param factory creates the handle of the build
+     * @return the handle of the build
+     */
+    static TestgridHandle forBuild(Object build, Supplier<TestgridHandle> factory) {
+        synchronized (HANDLES) {
+            TestgridHandle handle = HANDLES.get(build);
+            if (handle == null) {
+                handle = factory.get();
+                HANDLES.put(build, handle);
+            }
+            return handle;
+        }
+    }
+
+    public String getJobFullName() {
+        return jobFullName;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Returns the execution cells of the build, expanded once and shared by every reader.
+     *
+     * @return the expanded matrix
+     */
+    public TestgridMatrix getMatrix() {
+        return (TestgridMatrix) get(CELLS);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return KEYS.contains(key);
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        if (!KEYS.contains(key)) {
+            return null;
+        }
+        if (resolved == null) {
+            resolved = new HashMap<>();
+        }
+        Object value = resolved.get(key);
+        if (value == null) {
+            value = resolve((String) key);
+            resolved.put((String) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> all = new LinkedHashMap<>();
+        for (String key : KEYS) {
+            all.put(key, get(key));
+        }
+        return Collections.unmodifiableMap(all).entrySet();
+    }
+
+    @Override
+    public int size() {
+        return KEYS.size();
+    }
+
+    private Object resolve(String key) {
+        TestgridJobProperty jobProperty = getProperty();
+        switch (key) {
+            case YAML:
+                return selectedScenarios == null ? jobProperty.getTestgridYaml()
+                        : jobProperty.withScenarios(selectedScenarios).getTestgridYaml();
+            case PROVISIONERS:
+                return provisioners(jobProperty);
+            case PATTERNS:
+                return patterns(jobProperty);
+            case SCENARIOS:
+                return scenarios(jobProperty, selectedScenarios);
+            case CELLS:
+                return TestgridMatrix.expand(jobProperty, selectedScenarios);
+            default:
+                return null;
+        }
+    }
+
+    private TestgridJobProperty getProperty() {
+        if (property != null) {
+            return property;
+        }
+        Job<?, ?> job = Jenkins.getInstance().getItemByFullName(jobFullName, Job.class);
+        if (job == null) {
+            throw new IllegalStateException("cannot find job " + jobFullName);
+        }
+        TestgridJobProperty jobProperty = job.getProperty(TestgridJobProperty.class);
+        YamlSnapshotAction snapshot = snapshot();
+        if (snapshot != null) {
+            if (jobProperty != null
+                    && snapshot.getHash().equals(YamlSnapshotStore.hash(jobProperty.getTestgridYaml()))) {
+                property = jobProperty;
+            } else {
+                try {
+                    property = TestgridConfigDiff.read(snapshot.getHash());
+                } catch (IOException e) {
+                    throw new IllegalStateException("TestGrid configuration of " + jobFullName
+                            + " changed after the build started, and the configuration the build started with"
+                            + " cannot be read: " + e.getMessage(), e);
+                }
+            }
+            return property;
+        }
+        if (jobProperty == null) {
+            throw new IllegalStateException("job " + jobFullName + " does not have a TestGrid configuration");
+        }
+        if (!contentHash.equals(jobProperty.getContentHash())) {
+            throw new IllegalStateException("TestGrid configuration of " + jobFullName
+                    + " changed after the build started, and the build has no snapshot of the configuration"
+                    + " it started with");
+        }
+        property = jobProperty;
+        return property;
+    }
+
+    /**
+     * Returns the YAML snapshot of the build, or {@code null} if the build or its snapshot cannot be found.
+     */
+    private YamlSnapshotAction snapshot() {
+        if (buildId == null) {
+            return null;
+        }
+        Run<?, ?> build = Run.fromExternalizableId(buildId);
+        return build == null ? null : build.getAction(YamlSnapshotAction.class);
+    }
+
+    private static List<Map<String, Object>> provisioners(TestgridJobProperty jobProperty) {
+        List<JenkinsInfrastructureConfig> infrastructureConfigs = jobProperty.getResolvedInfrastructureConfigs();
+        if (infrastructureConfigs == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> provisioners = new ArrayList<>(infrastructureConfigs.size());
+        for (JenkinsInfrastructureConfig infraConfig : infrastructureConfigs) {
+            Map<String, Object> provisioner = new LinkedHashMap<>();
+            provisioner.put("name", infraConfig.getName());
+            provisioner.put("description", infraConfig.getDescription());
+            provisioner.put("gitURL", infraConfig.getGitURL());
+            provisioner.put("gitBranch", infraConfig.getGitBranch());
+            List<Map<String, Object>> scripts = new ArrayList<>();
+            if (infraConfig.getScriptConfigs() != null) {
+                for (JenkinsScriptConfig scriptConfig : infraConfig.getScriptConfigs()) {
+                    Map<String, Object> script = new LinkedHashMap<>();
+                    script.put("name", scriptConfig.getName());
+                    script.put("description", scriptConfig.getDescription());
+                    script.put("type", scriptConfig.getIacProvider());
+                    script.put("file", scriptConfig.getFile());
+                    script.put("parameters", scriptConfig.getParameters());
+                    scripts.add(Collections.unmodifiableMap(script));
+                }
+            }
+            provisioner.put("scripts", Collections.unmodifiableList(scripts));
+            provisioners.add(Collections.unmodifiableMap(provisioner));
+        }
+        return Collections.unmodifiableList(provisioners);
+    }
+
+    private static List<Map<String, Object>> patterns(TestgridJobProperty jobProperty) {
+        List<JenkinsDeploymentConfig> deploymentConfigs = jobProperty.getDeploymentConfigs();
+        if (deploymentConfigs == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> patterns = new ArrayList<>();
+        for (JenkinsDeploymentConfig deploymentConfig : deploymentConfigs) {
+            List<JenkinsDeploymentPatternConfig> patternConfigs =
+                    deploymentConfig.getResolvedDeploymentPatternConfigs();
+            if (patternConfigs == null) {
+                continue;
+            }
+            for (JenkinsDeploymentPatternConfig patternConfig : patternConfigs) {
+                Map<String, Object> pattern = new LinkedHashMap<>();
+                pattern.put("name", patternConfig.getName());
+                pattern.put("description", patternConfig.getDescription());
+                pattern.put("gitURL", patternConfig.getGitURL());
+                pattern.put("gitBranch", patternConfig.getGitBranch());
+                List<Map<String, Object>> scripts = new ArrayList<>();
+                if (patternConfig.getDeploymentPatternScripts() != null) {
+                    for (JenkinsDeploymentPatternScript patternScript : patternConfig.getDeploymentPatternScripts()) {
+                        Map<String, Object> script = new LinkedHashMap<>();
+                        script.put("name", patternScript.getName());
+                        script.put("type", patternScript.getType());
+                        script.put("file", patternScript.getFile());
+                        script.put("parameters", patternScript.getParameters());
+                        scripts.add(Collections.unmodifiableMap(script));
+                    }
+                }
+                pattern.put("scripts", Collections.unmodifiableList(scripts));
+                patterns.add(Collections.unmodifiableMap(pattern));
+            }
+        }
+        return Collections.unmodifiableList(patterns);
+    }
+
+    private static List<Map<String, Object>> scenarios(TestgridJobProperty jobProperty,
+                                                       List<String> selectedScenarios) {
+        List<JenkinsScenario> scenarioList = jobProperty.getScenarioList();
+        if (scenarioList == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> scenarios = new ArrayList<>(scenarioList.size());
+        for (JenkinsScenario jenkinsScenario : scenarioList) {
+            if (selectedScenarios != null && !selectedScenarios.contains(jenkinsScenario.getName())) {
+                continue;
+            }
+            Map<String, Object> scenario = new LinkedHashMap<>();
+            scenario.put("name", jenkinsScenario.getName());
+            scenario.put("description", jenkinsScenario.getDescription());
+            scenario.put("dir", jenkinsScenario.getDir());
+            scenario.put("alwaysRun", jenkinsScenario.isAlwaysRun());
+            scenarios.add(Collections.unmodifiableMap(scenario));
+        }
+        return Collections.unmodifiableList(scenarios);
+    }
+}
@@ -21,6 +21,7 @@ import hudson.Extension;
 import hudson.model.AbstractProject;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
+import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.JobProperty;
 import hudson.model.JobPropertyDescriptor;
@@ -31,32 +32,27 @@ import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest;
-import org.wso2.testgrid.common.TestScenario;
-import org.wso2.testgrid.common.config.DeploymentConfig;
-import org.wso2.testgrid.common.config.InfrastructureConfig;
-import org.wso2.testgrid.common.config.ScenarioConfig;
-import org.wso2.testgrid.common.config.Script;
-import org.wso2.testgrid.common.config.TestgridYaml;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
 import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
-import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.git.GitCheckout;
+import org.wso2.testgrid.jenkins.git.RemoteValidation;
 import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
-import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
 import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
-import org.yaml.snakeyaml.DumperOptions;
-import org.yaml.snakeyaml.Yaml;
-import org.yaml.snakeyaml.introspector.Property;
-import org.yaml.snakeyaml.nodes.NodeTuple;
-import org.yaml.snakeyaml.nodes.Tag;
-import org.yaml.snakeyaml.representer.Representer;
+import org.wso2.testgrid.jenkins.util.ConfigDigest;
+import org.wso2.testgrid.jenkins.util.StringPool;
 
 import javax.annotation.Nonnull;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Properties;
 
 /**
  * This class adds a new Job property using the extension point to add new configuration
@@ -75,10 +71,23 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
     private boolean useIncludeParameters;
     private boolean useExcludeParameters;
     private String emailToList;
+    private boolean selectChangedScenarios;
 
-    private String testgridYaml = "UNDEFINED";
-    private static final String TESTNG = "TESTNG";
-    private static final String INTEGRATION = "INTEGRAION";
+    /**
+     * TestGrid YAML content, generated from the fields above the first time it is asked for.
+     * Older config.xml files still carry the materialized YAML; it is read into this field
+     * and dropped in {@link #readResolve()} so that it is regenerated from the current fields.
+     */
+    private transient volatile String testgridYaml;
+    private transient volatile String contentHash;
+    /**
+     * Template generation the cached values were derived from.
+     */
+    private transient volatile long templateGeneration;
+
+    static final String TESTNG = "TESTNG";
+    public static final String SCENARIOS_DIRECTORY = "scenarios";
+    private static final String UNDEFINED = "UNDEFINED";
 
     /**
      * Data bound constructor receives all values via UI and perform
@@ -97,21 +106,46 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
         this.useIncludeParameters = useIncludeParameters;
         this.useExcludeParameters = useExcludeParameters;
         this.scenarioList = scenarioList;
-        this.scenarioGitURL = scenarioGitURL;
-        this.scenarioTestType = scenarioTestType;
-        this.scenarioGitBranch = scenarioGitBranch;
-        this.emailToList = emailToList;
-        //save TestGrid yaml string content
-
-        if(infrastructureConfigs != null ){
-            this.testgridYaml = getTestGridYaml();
-        }
+        this.scenarioGitURL = StringPool.intern(scenarioGitURL);
+        this.scenarioTestType = StringPool.intern(scenarioTestType);
+        this.scenarioGitBranch = StringPool.intern(scenarioGitBranch);
+        this.emailToList = StringPool.intern(emailToList);
+    }
+
+    /**
+     * Migrate the data read from config.xml and pool its strings.
+     *
+     * @return this object
+     */
+    protected Object readResolve() {
+        testgridYaml = null;
+        contentHash = null;
+        scenarioGitURL = StringPool.intern(scenarioGitURL);
+        scenarioTestType = StringPool.intern(scenarioTestType);
+        scenarioGitBranch = StringPool.intern(scenarioGitBranch);
+        emailToList = StringPool.intern(emailToList);
+        return this;
     }
 
     public List<JenkinsInfrastructureConfig> getInfrastructureConfigs() {
         return infrastructureConfigs;
     }
 
+    /**
+     * @return the effective provisioners, with their templates applied, or {@code null} if there are none
+     * @see JenkinsInfrastructureConfig#resolve()
+     */
+    public List<JenkinsInfrastructureConfig> getResolvedInfrastructureConfigs() {
+        if (infrastructureConfigs == null) {
+            return null;
+        }
+        List<JenkinsInfrastructureConfig> resolved = new ArrayList<>(infrastructureConfigs.size());
+        for (JenkinsInfrastructureConfig infraConfig : infrastructureConfigs) {
+            resolved.add(infraConfig.resolve());
+        }
+        return resolved;
+    }
+
     public List<JenkinsScenario> getScenarioList() {
         return scenarioList;
     }
@@ -120,8 +154,92 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
         return deploymentConfigs;
     }
 
+    /**
+     * Returns the TestGrid YAML content of this job, generating it on first access.
+     *
+     * @return the YAML formatted string
+     */
     public String getTestgridYaml() {
-        return testgridYaml;
+        if (infrastructureConfigs == null) {
+            return UNDEFINED;
+        }
+        dropStaleValues();
+        String yaml = testgridYaml;
+        if (yaml == null) {
+            long start = System.nanoTime();
+            yaml = TestgridYamlGenerator.generate(this);
+            TestgridMetrics.YAML_GENERATION_SECONDS.observeSince(start);
+            TestgridMetrics.YAML_SIZE_CHARACTERS.observe(yaml.length());
+            testgridYaml = yaml;
+        }
+        return yaml;
+    }
+
+    /**
+     * Returns a stable hash of the parts of the TestGrid configuration of this job that the
+     * TestGrid YAML is generated from. Two jobs with the same hash generate the same TestGrid YAML;
+     * settings that do not reach the YAML, such as the report recipients, do not change it.
+     *
+     * @return the lower case hex encoded hash
+     */
+    public String getContentHash() {
+        dropStaleValues();
+        String hash = contentHash;
+        if (hash == null) {
+            hash = new ConfigDigest()
+                    .add(TestgridYamlGenerator.infrastructureDigest(this))
+                    .add(TestgridYamlGenerator.deploymentDigest(this))
+                    .add(TestgridYamlGenerator.scenarioDigest(this))
+                    .hex();
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Drop the cached values if the templates they were derived from changed.
+     */
+    private void dropStaleValues() {
+        long generation = TestgridGlobalConfiguration.getGeneration();
+        if (templateGeneration != generation) {
+            testgridYaml = null;
+            contentHash = null;
+            templateGeneration = generation;
+        }
+    }
+
+    /**
+     * Lists every repository branch the TestGrid configuration refers to, with the directory
+     * it is checked out into: {@code infrastructure/<name>}, {@code deployment/<name>} and
+     * {@code scenarios}, where the names are made safe with {@link GitCheckout#directoryName(String)}.
+     *
+     * @return the repositories of this job
+     */
+    public List<GitCheckout> getRepositories() {
+        List<GitCheckout> repositories = new ArrayList<>();
+        if (infrastructureConfigs != null) {
+            for (JenkinsInfrastructureConfig infraConfig : getResolvedInfrastructureConfigs()) {
+                repositories.add(new GitCheckout(infraConfig.getGitURL(), infraConfig.getGitBranch(),
+                        "infrastructure/" + GitCheckout.directoryName(infraConfig.getName())));
+            }
+        }
+        if (deploymentConfigs != null) {
+            for (JenkinsDeploymentConfig deploymentConfig : deploymentConfigs) {
+                List<JenkinsDeploymentPatternConfig> patternConfigs =
+                        deploymentConfig.getResolvedDeploymentPatternConfigs();
+                if (patternConfigs == null) {
+                    continue;
+                }
+                for (JenkinsDeploymentPatternConfig patternConfig : patternConfigs) {
+                    repositories.add(new GitCheckout(patternConfig.getGitURL(), patternConfig.getGitBranch(),
+                            "deployment/" + GitCheckout.directoryName(patternConfig.getName())));
+                }
+            }
+        }
+        if (scenarioGitURL != null) {
+            repositories.add(new GitCheckout(scenarioGitURL, scenarioGitBranch, SCENARIOS_DIRECTORY));
+        }
+        return repositories;
     }
 
     public List<IncludeParameter> getIncludeParameters() {
@@ -156,176 +274,53 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
         return emailToList;
     }
 
+    public boolean isSelectChangedScenarios() {
+        return selectChangedScenarios;
+    }
+
     /**
-     * Process the data and generate the TestGrid YAML file.
-     *
-     * @return the YAML formatted string
+     * @param selectChangedScenarios whether builds only run the scenarios whose directory changed in the
+     *                               scenario repository since the last successful build, and the scenarios
+     *                               that always run
      */
-    private String getTestGridYaml() {
-
-        TestgridYaml testgridYaml = new TestgridYaml();
-        InfrastructureConfig config = new InfrastructureConfig();
-        config.setInfrastructureProvider(InfrastructureConfig.InfrastructureProvider.AWS);
-        config.setIacProvider(InfrastructureConfig.IACProvider.CLOUDFORMATION);
-        config.setContainerOrchestrationEngine(InfrastructureConfig.ContainerOrchestrationEngine.None);
-        List<InfrastructureConfig.Provisioner> provisioners = new ArrayList<>();
-
-        if (includeParameters != null) {
-            List<String> includes = new ArrayList<>();
-            for (IncludeParameter includeParameter : includeParameters) {
-                includes.add(includeParameter.getIncludeParameter());
-            }
-            config.setIncludes(includes);
-        }
-
-        if (excludeParameters != null) {
-            List<String> excludes = new ArrayList<>();
-            for (ExcludeParameter excludeParameter : excludeParameters) {
-                excludes.add(excludeParameter.getExcludeParameter());
-            }
-            config.setIncludes(excludes);
-        }
-
-        if (infrastructureConfigs !=null){
-            for (JenkinsInfrastructureConfig infraConfig : infrastructureConfigs) {
-                InfrastructureConfig.Provisioner provisioner = new InfrastructureConfig.Provisioner();
-                provisioner.setName(infraConfig.getName());
-                provisioner.setDescription(infraConfig.getDescription());
-                if (infraConfig.getGitBranch() != null) {
-                    provisioner.setRemoteRepository("-b " + infraConfig.getGitBranch() + " " + infraConfig.getGitURL());
-                } else {
-                    provisioner.setRemoteRepository(infraConfig.getGitURL());
-                }
-                List<JenkinsScriptConfig> scriptConfigs = infraConfig.getScriptConfigs();
-                if (scriptConfigs != null) {
-                    List<Script> scripts = new ArrayList<>();
-                    for (JenkinsScriptConfig scriptConfig : scriptConfigs) {
-                        Script script = new Script();
-                        script.setName(scriptConfig.getName());
-                        script.setDescription(scriptConfig.getDescription());
-                        script.setType(Script.ScriptType.valueOf(scriptConfig.getIacProvider()));
-                        script.setFile(scriptConfig.getFile());
-                        Properties properties = new Properties();
-                        Arrays.stream(scriptConfig.getParameters().split("\n")).forEach(s -> {
-                            String[] split = s.trim().split("=");
-                            if (split.length == 2) {
-                                properties.setProperty(split[0].trim(), split[1].trim());
-                            }
-                        });
-                        script.setInputParameters(properties);
-                        scripts.add(script);
-                    }
-                    provisioner.setScripts(scripts);
-                }
-                provisioners.add(provisioner);
-            }
-            config.setProvisioners(provisioners);
-        }
-
-        //DeploymentConfig
-        DeploymentConfig tgDeploymentConfig = new DeploymentConfig();
+    @DataBoundSetter
+    public void setSelectChangedScenarios(boolean selectChangedScenarios) {
+        this.selectChangedScenarios = selectChangedScenarios;
+    }
 
-        if(deploymentConfigs != null){
-            for (JenkinsDeploymentConfig deploymentConfig : deploymentConfigs) {
-                List<JenkinsDeploymentPatternConfig> deploymentPatternConfigs = deploymentConfig.getDeploymentPatternConfigs();
-                List<DeploymentConfig.DeploymentPattern> deploymentPatterns = new ArrayList<>();
-                for (JenkinsDeploymentPatternConfig deploymentPatternConfig : deploymentPatternConfigs) {
-                    DeploymentConfig.DeploymentPattern pattern = new DeploymentConfig.DeploymentPattern();
-                    pattern.setName(deploymentPatternConfig.getName());
-                    pattern.setDescription(deploymentPatternConfig.getDescription());
-                    pattern.setDir("."); //hard-coded
-                    if (deploymentPatternConfig.getGitBranch() != null) {
-                        pattern.setRemoteRepository("-b " + deploymentPatternConfig.getGitBranch() + " " + deploymentPatternConfig.getGitURL());
-                    } else {
-                        pattern.setRemoteRepository(deploymentPatternConfig.getGitURL());
-                    }
-                    List<Script> deploymentScripts = new ArrayList<>();
-
-                    List<JenkinsDeploymentPatternScript> deploymentPatternScripts = deploymentPatternConfig.getDeploymentPatternScripts();
-                    if (deploymentPatternScripts != null) {
-                        for (JenkinsDeploymentPatternScript deploymentPatternScript : deploymentPatternScripts) {
-                            Script script = new Script();
-                            script.setName(deploymentPatternScript.getName());
-                            script.setType(Script.ScriptType.valueOf(deploymentPatternScript.getType()));
-                            script.setFile(deploymentPatternScript.getFile());
-                            Properties properties = new Properties();
-                            Arrays.stream(deploymentPatternScript.getParameters().split("\n")).forEach(s -> {
-                                String[] split = s.trim().split("=");
-                                if (split.length == 2) {
-                                    properties.setProperty(split[0].trim(), split[1].trim());
-                                }
-                            });
-                            script.setInputParameters(properties);
-                            deploymentScripts.add(script);
-                        }
-                    }
-                    pattern.setScripts(deploymentScripts);
-                    deploymentPatterns.add(pattern);
+    /**
+     * Returns a copy of this configuration that only holds the given scenarios, for the YAML of a
+     * build that runs a selection of them.
+     *
+     * @param names names of the scenarios to keep
+     * @return the configuration without the other scenarios
+     */
+    TestgridJobProperty withScenarios(Collection<String> names) {
+        List<JenkinsScenario> selected = null;
+        if (scenarioList != null) {
+            selected = new ArrayList<>();
+            for (JenkinsScenario scenario : scenarioList) {
+                if (names.contains(scenario.getName())) {
+                    selected.add(scenario);
                 }
-                tgDeploymentConfig.setDeploymentPatterns(deploymentPatterns);
             }
         }
-
-        //Scenario Config
-        ScenarioConfig tgScenarioConfig = new ScenarioConfig();
-
-        if (scenarioGitBranch != null) {
-            tgScenarioConfig.setRemoteRepository("-b " + scenarioGitBranch + " " + scenarioGitURL);
-        } else {
-            tgScenarioConfig.setRemoteRepository(scenarioGitURL);
-        }
-        scenarioTestType = mapTestType(scenarioTestType);
-        tgScenarioConfig.setTestType(scenarioTestType);
-        List<TestScenario> testScenarios = new ArrayList<>();
-
-        if(scenarioList !=null){
-            for (JenkinsScenario jenkinsScenario : scenarioList) {
-                TestScenario scenario = new TestScenario();
-                scenario.setName(jenkinsScenario.getName());
-                scenario.setDescription(jenkinsScenario.getDescription());
-                scenario.setDir(jenkinsScenario.getDir());
-                testScenarios.add(scenario);
-            }
-            tgScenarioConfig.setScenarios(testScenarios);
-        }
-
-        //set the main config sections to testgrid yaml object
-        testgridYaml.setInfrastructureConfig(config);
-        testgridYaml.setDeploymentConfig(tgDeploymentConfig);
-        testgridYaml.setScenarioConfig(tgScenarioConfig);
-
-        //Representer to filter out null values in TestGridYaml object
-        Representer representer = new Representer() {
-            @Override
-            protected NodeTuple representJavaBeanProperty(Object javaBean, Property property, Object propertyValue, Tag customTag) {
-                if (propertyValue == null) {
-                    return null;
-                } else {
-                    return super.representJavaBeanProperty(javaBean, property, propertyValue, customTag);
-                }
-            }
-        };
-        representer.addClassTag(TestgridYaml.class,Tag.MAP);
-
-        //Dumper options set to achieve proper yaml format
-        DumperOptions options = new DumperOptions();
-        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-        Yaml yaml = new Yaml(representer,options);
-        return yaml.dump(testgridYaml);
+        TestgridJobProperty copy = new TestgridJobProperty(infrastructureConfigs, deploymentConfigs,
+                includeParameters, excludeParameters, useIncludeParameters, useExcludeParameters, selected,
+                scenarioGitURL, scenarioTestType, scenarioGitBranch, emailToList);
+        copy.selectChangedScenarios = selectChangedScenarios;
+        return copy;
     }
 
     /**
-     * Map the TestType to match the test types to TestGrid internal values
-     * TODO : handle this mapping from testgrid internally.
-     * @param testType Test Type selected from UI
-     * @return Mapped Test Type
+     * Stream the TestGrid YAML content of this job straight into the given writer,
+     * without holding the whole document in memory.
+     *
+     * @param writer writer to stream the YAML content into
+     * @throws IOException if writing fails
      */
-    private String mapTestType(String testType){
-        switch (testType){
-            case TESTNG : return INTEGRATION;
-
-            default: return INTEGRATION;
-        }
+    public void writeTestgridYaml(Writer writer) throws IOException {
+        TestgridYamlGenerator.write(this, writer);
     }
 
     @Symbol("testgrid")
@@ -349,29 +344,63 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
             return "TestGrid";
         }
 
+        /**
+         * Validate the whole TestGrid section of the configuration form in one request, instead of
+         * one request per field. The request carries the form data in the {@code json} parameter,
+         * either of the whole job configuration or of this property alone.
+         *
+         * @param item job being configured
+         * @param req  request carrying the form data
+         * @param rsp  response to write the validation messages to, keyed by field path
+         * @throws IOException      if the response cannot be written
+         * @throws ServletException if the form data cannot be read
+         */
+        @RequirePOST
+        public void doValidateForm(@AncestorInPath Item item, StaplerRequest req, StaplerResponse rsp)
+                throws IOException, ServletException {
+            long start = System.nanoTime();
+            JSONObject form = req.getSubmittedForm();
+            JSONObject property = findProperty(form);
+            JSONObject result = TestgridFormValidator.validate(this, item, property == null ? form : property);
+            TestgridMetrics.FORM_VALIDATION_SECONDS.observeSince(start);
+            rsp.setContentType("application/json;charset=UTF-8");
+            result.write(rsp.getWriter());
+        }
+
+        /**
+         * Find the form data of this property within the form data of a job configuration.
+         */
+        private JSONObject findProperty(JSONObject form) {
+            Object property = form.opt(getJsonSafeClassName());
+            if (property instanceof JSONObject) {
+                return (JSONObject) property;
+            }
+            for (Object value : form.values()) {
+                if (value instanceof JSONObject) {
+                    JSONObject found = findProperty((JSONObject) value);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+            return null;
+        }
+
         public ListBoxModel doFillScenarioTestTypeItems() {
             ListBoxModel model = new ListBoxModel();
             model.add(new ListBoxModel.Option(TESTNG));
             return model;
         }
 
-        public FormValidation doCheckScenarioGitURL(@QueryParameter String value){
-            if(value.isEmpty()){
-                return FormValidation.error("* Required Parameter..");
-            }else{
-                return FormValidation.ok();
-            }
+        public FormValidation checkScenarioGitURL(Item item, String value){
+            return RemoteValidation.checkUrl(item, value);
         }
 
-        public FormValidation doCheckScenarioGitBranch(@QueryParameter String value){
-            if(value.isEmpty()){
-                return FormValidation.error("* Required Parameter..");
-            }else{
-                return FormValidation.ok();
-            }
+        public FormValidation checkScenarioGitBranch(Item item, String value, String scenarioGitURL){
+            return RemoteValidation.checkBranch(item, scenarioGitURL, value);
         }
 
-        public FormValidation doCheckInfrastructureConfigs(@QueryParameter List<JenkinsInfrastructureConfig> value){
+        public FormValidation checkInfrastructureConfigs(List<?> value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -379,7 +408,7 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
             }
         }
 
-        public FormValidation doCheckEmailToList(@QueryParameter String value){
+        public FormValidation checkEmailToList(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -400,7 +429,17 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
 
         @DataBoundConstructor
         public IncludeParameter(String includeParameter) {
-            this.includeParameter = includeParameter;
+            this.includeParameter = StringPool.intern(includeParameter);
+        }
+
+        /**
+         * Pool the string read from config.xml.
+         *
+         * @return this object
+         */
+        protected Object readResolve() {
+            includeParameter = StringPool.intern(includeParameter);
+            return this;
         }
 
         public String getIncludeParameter() {
@@ -430,7 +469,17 @@ public final class TestgridJobProperty extends JobProperty<Job<?, ?>> {
 
         @DataBoundConstructor
         public ExcludeParameter(String excludeParameter) {
-            this.excludeParameter = excludeParameter;
+            this.excludeParameter = StringPool.intern(excludeParameter);
+        }
+
+        /**
+         * Pool the string read from config.xml.
+         *
+         * @return this object
+         */
+        protected Object readResolve() {
+            excludeParameter = StringPool.intern(excludeParameter);
+            return this;
         }
 
         public String getExcludeParameter() {
@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Items;
+import hudson.util.RobustReflectionConverter;
+import hudson.util.XStream2;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes {@link TestgridJobProperty} into config.xml in a compact, versioned layout, and reads it
+ * back by calling the constructors of the model instead of reflection:
+ *
+ * <pre>
+ * &lt;org.wso2.testgrid.jenkins.TestgridJobProperty v="1" scenarioGitURL="..." scenarioGitBranch="master"&gt;
+ *   &lt;provisioners&gt;
+ *     &lt;provisioner name="..." gitURL="..." gitBranch="master"&gt;
+ *       &lt;scripts&gt;
+ *         &lt;script name="..." file="..." type="CLOUDFORMATION"&gt;&lt;parameters&gt;...&lt;/parameters&gt;&lt;/script&gt;
+ *       &lt;/scripts&gt;
+ *     &lt;/provisioner&gt;
+ *   &lt;/provisioners&gt;
+ *   &lt;deployments&gt;&lt;deployment&gt;&lt;patterns&gt;&lt;pattern ...&gt;...&lt;/pattern&gt;&lt;/patterns&gt;&lt;/deployment&gt;&lt;/deployments&gt;
+ *   &lt;scenarios&gt;&lt;scenario name="..." dir="..." alwaysRun="true"/&gt;&lt;/scenarios&gt;
+ * &lt;/org.wso2.testgrid.jenkins.TestgridJobProperty&gt;
+ * </pre>
+ *
+ * Attributes are only written for values that are set, and a list element only for lists that
+ * are. A property without the {@code v} attribute was written by the default reflection based
+ * converter, and is read by it.
+ */
+public final class TestgridJobPropertyConverter implements Converter {
+
+    static final String VERSION = "1";
+
+    private static final String V = "v";
+    private static final String PROVISIONERS = "provisioners";
+    private static final String PROVISIONER = "provisioner";
+    private static final String DEPLOYMENTS = "deployments";
+    private static final String DEPLOYMENT = "deployment";
+    private static final String PATTERNS = "patterns";
+    private static final String PATTERN = "pattern";
+    private static final String SCRIPTS = "scripts";
+    private static final String SCRIPT = "script";
+    private static final String PARAMETERS = "parameters";
+    private static final String SCENARIOS = "scenarios";
+    private static final String SCENARIO = "scenario";
+    private static final String INCLUDES = "includes";
+    private static final String EXCLUDES = "excludes";
+    private static final String ENVIRONMENT = "environment";
+
+    private static final String NAME = "name";
+    private static final String DESCRIPTION = "description";
+    private static final String GIT_URL = "gitURL";
+    private static final String GIT_BRANCH = "gitBranch";
+    private static final String TEMPLATE = "template";
+    private static final String FILE = "file";
+    private static final String TYPE = "type";
+    private static final String DIR = "dir";
+    private static final String SCENARIO_GIT_URL = "scenarioGitURL";
+    private static final String SCENARIO_GIT_BRANCH = "scenarioGitBranch";
+    private static final String SCENARIO_TEST_TYPE = "scenarioTestType";
+    private static final String EMAIL_TO_LIST = "emailToList";
+    private static final String USE_INCLUDE_PARAMETERS = "useIncludeParameters";
+    private static final String USE_EXCLUDE_PARAMETERS = "useExcludeParameters";
+    private static final String SELECT_CHANGED_SCENARIOS = "selectChangedScenarios";
+    private static final String ALWAYS_RUN = "alwaysRun";
+
+    private final RobustReflectionConverter reflection;
+
+    public TestgridJobPropertyConverter(XStream2 xstream) {
+        this.reflection = new RobustReflectionConverter(xstream.getMapper(), xstream.getReflectionProvider());
+    }
+
+    /**
+     * Register the converter for job configurations. Jobs are loaded in parallel as soon as the
+     * extensions are augmented, so this has to happen before the plugins are started; a compact
+     * property read by the reflection based converter would otherwise lose its settings.
+     */
+    @Initializer(before = InitMilestone.PLUGINS_STARTED)
+    public static void register() {
+        Items.XSTREAM2.registerConverter(new TestgridJobPropertyConverter(Items.XSTREAM2), XStream.PRIORITY_NORMAL);
+    }
+
+    @Override
+    public boolean canConvert(Class type) {
+        return type == TestgridJobProperty.class;
+    }
+
+    @Override
+    public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+        TestgridJobProperty property = (TestgridJobProperty) source;
+        writer.addAttribute(V, VERSION);
+        attribute(writer, SCENARIO_GIT_URL, property.getScenarioGitURL());
+        attribute(writer, SCENARIO_GIT_BRANCH, property.getScenarioGitBranch());
+        attribute(writer, SCENARIO_TEST_TYPE, property.getScenarioTestType());
+        attribute(writer, EMAIL_TO_LIST, property.getEmailToList());
+        if (property.getUseIncludeParameters()) {
+            writer.addAttribute(USE_INCLUDE_PARAMETERS, "true");
+        }
+        if (property.getUseExcludeParameters()) {
+            writer.addAttribute(USE_EXCLUDE_PARAMETERS, "true");
+        }
+        if (property.isSelectChangedScenarios()) {
+            writer.addAttribute(SELECT_CHANGED_SCENARIOS, "true");
+        }
+
+        if (property.getIncludeParameters() != null) {
+            writer.startNode(INCLUDES);
+            for (TestgridJobProperty.IncludeParameter includeParameter : property.getIncludeParameters()) {
+                text(writer, ENVIRONMENT, includeParameter.getIncludeParameter());
+            }
+            writer.endNode();
+        }
+        if (property.getExcludeParameters() != null) {
+            writer.startNode(EXCLUDES);
+            for (TestgridJobProperty.ExcludeParameter excludeParameter : property.getExcludeParameters()) {
+                text(writer, ENVIRONMENT, excludeParameter.getExcludeParameter());
+            }
+            writer.endNode();
+        }
+        if (property.getInfrastructureConfigs() != null) {
+            writer.startNode(PROVISIONERS);
+            for (JenkinsInfrastructureConfig infraConfig : property.getInfrastructureConfigs()) {
+                writeProvisioner(writer, infraConfig);
+            }
+            writer.endNode();
+        }
+        if (property.getDeploymentConfigs() != null) {
+            writer.startNode(DEPLOYMENTS);
+            for (JenkinsDeploymentConfig deploymentConfig : property.getDeploymentConfigs()) {
+                writer.startNode(DEPLOYMENT);
+                if (deploymentConfig.getDeploymentPatternConfigs() != null) {
+                    writer.startNode(PATTERNS);
+                    for (JenkinsDeploymentPatternConfig patternConfig : deploymentConfig.getDeploymentPatternConfigs()) {
+                        writePattern(writer, patternConfig);
+                    }
+                    writer.endNode();
+                }
+                writer.endNode();
+            }
+            writer.endNode();
+        }
+        if (property.getScenarioList() != null) {
+            writer.startNode(SCENARIOS);
+            for (JenkinsScenario scenario : property.getScenarioList()) {
+                writer.startNode(SCENARIO);
+                attribute(writer, NAME, scenario.getName());
+                attribute(writer, DESCRIPTION, scenario.getDescription());
+                attribute(writer, DIR, scenario.getDir());
+                if (scenario.isAlwaysRun()) {
+                    writer.addAttribute(ALWAYS_RUN, "true");
+                }
+                writer.endNode();
+            }
+            writer.endNode();
+        }
+    }
+
+    private static void writeProvisioner(HierarchicalStreamWriter writer, JenkinsInfrastructureConfig infraConfig) {
+        writer.startNode(PROVISIONER);
+        attribute(writer, NAME, infraConfig.getName());
+        attribute(writer, DESCRIPTION, infraConfig.getDescription());
+        attribute(writer, GIT_URL, infraConfig.getGitURL());
+        attribute(writer, GIT_BRANCH, infraConfig.getGitBranch());
+        attribute(writer, TEMPLATE, infraConfig.getTemplate());
+        if (infraConfig.getScriptConfigs() != null) {
+            writer.startNode(SCRIPTS);
+            for (JenkinsScriptConfig scriptConfig : infraConfig.getScriptConfigs()) {
+                writer.startNode(SCRIPT);
+                attribute(writer, NAME, scriptConfig.getName());
+                attribute(writer, DESCRIPTION, scriptConfig.getDescription());
+                attribute(writer, TYPE, scriptConfig.getIacProvider());
+                attribute(writer, FILE, scriptConfig.getFile());
+                text(writer, PARAMETERS, scriptConfig.getParameters());
+                writer.endNode();
+            }
+            writer.endNode();
+        }
+        writer.endNode();
+    }
+
+    private static void writePattern(HierarchicalStreamWriter writer, JenkinsDeploymentPatternConfig patternConfig) {
+        writer.startNode(PATTERN);
+        attribute(writer, NAME, patternConfig.getName());
+        attribute(writer, DESCRIPTION, patternConfig.getDescription());
+        attribute(writer, GIT_URL, patternConfig.getGitURL());
+        attribute(writer, GIT_BRANCH, patternConfig.getGitBranch());
+        attribute(writer, TEMPLATE, patternConfig.getTemplate());
+        if (patternConfig.getDeploymentPatternScripts() != null) {
+            writer.startNode(SCRIPTS);
+            for (JenkinsDeploymentPatternScript patternScript : patternConfig.getDeploymentPatternScripts()) {
+                writer.startNode(SCRIPT);
+                attribute(writer, NAME, patternScript.getName());
+                attribute(writer, TYPE, patternScript.getType());
+                attribute(writer, FILE, patternScript.getFile());
+                text(writer, PARAMETERS, patternScript.getParameters());
+                writer.endNode();
+            }
+            writer.endNode();
+        }
+        writer.endNode();
+    }
+
+    @Override
+    public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+        if (reader.getAttribute(V) == null) {
+            return reflection.unmarshal(reader, context);
+        }
+        List<TestgridJobProperty.IncludeParameter> includeParameters = null;
+        List<TestgridJobProperty.ExcludeParameter> excludeParameters = null;
+        List<JenkinsInfrastructureConfig> infrastructureConfigs = null;
+        List<JenkinsDeploymentConfig> deploymentConfigs = null;
+        List<JenkinsScenario> scenarios = null;
+        String scenarioGitURL = reader.getAttribute(SCENARIO_GIT_URL);
+        String scenarioGitBranch = reader.getAttribute(SCENARIO_GIT_BRANCH);
+        String scenarioTestType = reader.getAttribute(SCENARIO_TEST_TYPE);
+        String emailToList = reader.getAttribute(EMAIL_TO_LIST);
+        boolean useIncludeParameters = Boolean.parseBoolean(reader.getAttribute(USE_INCLUDE_PARAMETERS));
+        boolean useExcludeParameters = Boolean.parseBoolean(reader.getAttribute(USE_EXCLUDE_PARAMETERS));
+        boolean selectChangedScenarios = Boolean.parseBoolean(reader.getAttribute(SELECT_CHANGED_SCENARIOS));
+
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            switch (reader.getNodeName()) {
+                case INCLUDES:
+                    includeParameters = new ArrayList<>();
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        includeParameters.add(new TestgridJobProperty.IncludeParameter(reader.getValue()));
+                        reader.moveUp();
+                    }
+                    break;
+                case EXCLUDES:
+                    excludeParameters = new ArrayList<>();
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        excludeParameters.add(new TestgridJobProperty.ExcludeParameter(reader.getValue()));
+                        reader.moveUp();
+                    }
+                    break;
+                case PROVISIONERS:
+                    infrastructureConfigs = new ArrayList<>();
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        infrastructureConfigs.add(readProvisioner(reader));
+                        reader.moveUp();
+                    }
+                    break;
+                case DEPLOYMENTS:
+                    deploymentConfigs = new ArrayList<>();
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        deploymentConfigs.add(readDeployment(reader));
+                        reader.moveUp();
+                    }
+                    break;
+                case SCENARIOS:
+                    scenarios = new ArrayList<>();
+                    while (reader.hasMoreChildren()) {
+                        reader.moveDown();
+                        JenkinsScenario scenario = new JenkinsScenario(reader.getAttribute(NAME),
+                                reader.getAttribute(DESCRIPTION), reader.getAttribute(DIR));
+                        scenario.setAlwaysRun(Boolean.parseBoolean(reader.getAttribute(ALWAYS_RUN)));
+                        scenarios.add(scenario);
+                        reader.moveUp();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            reader.moveUp();
+        }
+        TestgridJobProperty property = new TestgridJobProperty(infrastructureConfigs, deploymentConfigs,
+                includeParameters, excludeParameters, useIncludeParameters, useExcludeParameters, scenarios,
+                scenarioGitURL, scenarioTestType, scenarioGitBranch, emailToList);
+        property.setSelectChangedScenarios(selectChangedScenarios);
+        return property;
+    }
+
+    private static JenkinsInfrastructureConfig readProvisioner(HierarchicalStreamReader reader) {
+        String name = reader.getAttribute(NAME);
+        String description = reader.getAttribute(DESCRIPTION);
+        String gitURL = reader.getAttribute(GIT_URL);
+        String gitBranch = reader.getAttribute(GIT_BRANCH);
+        String template = reader.getAttribute(TEMPLATE);
+        List<JenkinsScriptConfig> scriptConfigs = null;
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            if (SCRIPTS.equals(reader.getNodeName())) {
+                scriptConfigs = new ArrayList<>();
+                while (reader.hasMoreChildren()) {
+                    reader.moveDown();
+                    String scriptName = reader.getAttribute(NAME);
+                    String scriptDescription = reader.getAttribute(DESCRIPTION);
+                    String type = reader.getAttribute(TYPE);
+                    String file = reader.getAttribute(FILE);
+                    scriptConfigs.add(new JenkinsScriptConfig(scriptName, file, scriptDescription, type,
+                            readParameters(reader)));
+                    reader.moveUp();
+                }
+            }
+            reader.moveUp();
+        }
+        JenkinsInfrastructureConfig infraConfig = new JenkinsInfrastructureConfig(gitURL, gitBranch, description,
+                name, scriptConfigs);
+        infraConfig.setTemplate(template);
+        return infraConfig;
+    }
+
+    private static JenkinsDeploymentConfig readDeployment(HierarchicalStreamReader reader) {
+        List<JenkinsDeploymentPatternConfig> patternConfigs = null;
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            if (PATTERNS.equals(reader.getNodeName())) {
+                patternConfigs = new ArrayList<>();
+                while (reader.hasMoreChildren()) {
+                    reader.moveDown();
+                    patternConfigs.add(readPattern(reader));
+                    reader.moveUp();
+                }
+            }
+            reader.moveUp();
+        }
+        return new JenkinsDeploymentConfig(patternConfigs);
+    }
+
+    private static JenkinsDeploymentPatternConfig readPattern(HierarchicalStreamReader reader) {
+        String name = reader.getAttribute(NAME);
+        String description = reader.getAttribute(DESCRIPTION);
+        String gitURL = reader.getAttribute(GIT_URL);
+        String gitBranch = reader.getAttribute(GIT_BRANCH);
+        String template = reader.getAttribute(TEMPLATE);
+        List<JenkinsDeploymentPatternScript> patternScripts = null;
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            if (SCRIPTS.equals(reader.getNodeName())) {
+                patternScripts = new ArrayList<>();
+                while (reader.hasMoreChildren()) {
+                    reader.moveDown();
+                    String scriptName = reader.getAttribute(NAME);
+                    String type = reader.getAttribute(TYPE);
+                    String file = reader.getAttribute(FILE);
+                    patternScripts.add(new JenkinsDeploymentPatternScript(scriptName, type, file,
+                            readParameters(reader)));
+                    reader.moveUp();
+                }
+            }
+            reader.moveUp();
+        }
+        JenkinsDeploymentPatternConfig patternConfig = new JenkinsDeploymentPatternConfig(name, description,
+                patternScripts, gitURL, gitBranch);
+        patternConfig.setTemplate(template);
+        return patternConfig;
+    }
+
+    /**
+     * Read the parameters child of a script, {@code null} if it has none.
+     */
+    private static String readParameters(HierarchicalStreamReader reader) {
+        String parameters = null;
+        while (reader.hasMoreChildren()) {
+            reader.moveDown();
+            if (PARAMETERS.equals(reader.getNodeName())) {
+                parameters = reader.getValue();
+            }
+            reader.moveUp();
+        }
+        return parameters;
+    }
+
+    private static void attribute(HierarchicalStreamWriter writer, String name, String value) {
+        if (value != null) {
+            writer.addAttribute(name, value);
+        }
+    }
+
+    private static void text(HierarchicalStreamWriter writer, String name, String value) {
+        if (value != null) {
+            writer.startNode(name);
+            writer.setValue(value);
+            writer.endNode();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.BulkChange;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.RootAction;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plugin wide TestGrid endpoints, under {@code /testgrid}.
+ *
+ * <pre>
+ * curl -X POST -F 'folder/job-a=@job-a/testgrid.yaml' -F 'job-b=@job-b/testgrid.yaml' \
+ *      https://jenkins.example.com/testgrid/import
+ * curl https://jenkins.example.com/testgrid/metrics
+ * </pre>
+ */
+@Extension
+public class TestgridRootAction implements RootAction {
+
+    private static final int IMPORT_THREADS = Integer.getInteger(TestgridRootAction.class.getName()
+            + ".importThreads", 4);
+
+    private static final ExecutorService IMPORTS = Executors.newFixedThreadPool(IMPORT_THREADS,
+            new NamingThreadFactory(new DaemonThreadFactory(), "TestGrid import"));
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "TestGrid";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "testgrid";
+    }
+
+    /**
+     * Import testgrid.yaml files into the TestGrid configuration of jobs, in one batch.
+     *
+     * The request is a multipart form with one file per job, named by the full name of the job.
+     * The settings a testgrid.yaml file does not hold are kept from the current configuration of
+     * the job, see {@link TestgridYamlReader}. The files are read and the jobs saved in parallel.
+     * The response maps every job name to {@code imported} or to the reason the import failed.
+     *
+     * @param req request carrying the files
+     * @param rsp response to write the results to
+     * @throws IOException      if the request cannot be read or the response written
+     * @throws ServletException if the request is not a multipart form
+     */
+    @RequirePOST
+    public void doImport(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        List<FileItem> files;
+        try {
+            files = new ServletFileUpload(new DiskFileItemFactory()).parseRequest(req);
+        } catch (FileUploadException e) {
+            throw new ServletException(e);
+        }
+        Authentication authentication = Jenkins.getAuthentication();
+        Map<String, Object> imports = new LinkedHashMap<>();
+        try {
+            for (FileItem file : files) {
+                if (file.isFormField()) {
+                    continue;
+                }
+                String jobName = file.getFieldName();
+                Job<?, ?> job = Jenkins.getInstance().getItemByFullName(jobName, Job.class);
+                if (job == null) {
+                    imports.put(jobName, "no such job");
+                } else if (!job.hasPermission(Item.CONFIGURE)) {
+                    imports.put(jobName, "not permitted to configure the job");
+                } else {
+                    imports.put(jobName, IMPORTS.submit(() -> importYaml(job, file, authentication)));
+                }
+            }
+
+            JSONObject results = new JSONObject();
+            int imported = 0;
+            for (Map.Entry<String, Object> entry : imports.entrySet()) {
+                String result;
+                if (entry.getValue() instanceof Future) {
+                    result = await((Future<?>) entry.getValue());
+                } else {
+                    result = (String) entry.getValue();
+                }
+                if ("imported".equals(result)) {
+                    imported++;
+                }
+                results.put(entry.getKey(), result);
+            }
+            JSONObject response = new JSONObject();
+            response.put("imported", imported);
+            response.put("results", results);
+            rsp.setContentType("application/json;charset=UTF-8");
+            response.write(rsp.getWriter());
+        } finally {
+            for (FileItem file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Expose the metrics of the plugin in the Prometheus text format.
+     *
+     * @param rsp response to write the metrics to
+     * @throws IOException if the response cannot be written
+     */
+    public void doMetrics(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.READ);
+        rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        rsp.getWriter().write(TestgridMetrics.scrape());
+    }
+
+    private static Void importYaml(Job<?, ?> job, FileItem file, Authentication authentication)
+            throws IOException {
+        SecurityContext previous = ACL.impersonate(authentication);
+        try {
+            TestgridJobProperty existing = job.getProperty(TestgridJobProperty.class);
+            TestgridJobProperty imported;
+            try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+                imported = TestgridYamlReader.read(reader, existing);
+            }
+            BulkChange bulkChange = new BulkChange(job);
+            try {
+                if (existing != null) {
+                    job.removeProperty(existing);
+                }
+                job.addProperty(imported);
+                bulkChange.commit();
+            } finally {
+                bulkChange.abort();
+            }
+            return null;
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+    }
+
+    private static String await(Future<?> future) throws IOException {
+        try {
+            future.get();
+            return "imported";
+        } catch (ExecutionException e) {
+            String message = e.getCause().getMessage();
+            return message != null ? message : e.getCause().toString();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        }
+    }
+}
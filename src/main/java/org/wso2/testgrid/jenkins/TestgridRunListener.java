@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.wso2.testgrid.jenkins.git.GitMirrorCache;
+import org.wso2.testgrid.jenkins.git.PinnedRevisionsAction;
+import org.wso2.testgrid.jenkins.git.RevisionResolver;
+import org.wso2.testgrid.jenkins.pipeline.TestgridCheckoutStep;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+import org.wso2.testgrid.jenkins.scenario.ScenarioSelectionAction;
+import org.wso2.testgrid.jenkins.scenario.ScenarioSelector;
+import org.wso2.testgrid.jenkins.snapshot.YamlSnapshotAction;
+import org.wso2.testgrid.jenkins.snapshot.YamlSnapshotStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the TestGrid YAML a build runs with, and pins every repository branch of the TestGrid
+ * configuration to a commit when the build starts, so that all checkouts of the build use the
+ * same sources even if the branches move meanwhile.
+ *
+ * Jobs that only run changed scenarios then select the scenarios affected by the commits of the
+ * scenario repository since the last successful build. Listing those commits is bounded by a short
+ * timeout, after which the build runs all scenarios.
+ */
+@Extension
+public class TestgridRunListener extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOGGER = Logger.getLogger(TestgridRunListener.class.getName());
+
+    /**
+     * Time a starting build waits for the changes of the scenario repository, in seconds.
+     */
+    private static final long SELECTION_TIMEOUT =
+            Long.getLong(TestgridRunListener.class.getName() + ".selectionTimeout", 30);
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "TestGrid scenario selection"));
+
+    @Override
+    public void onStarted(Run<?, ?> run, TaskListener listener) {
+        TestgridJobProperty testgridJobProperty = run.getParent().getProperty(TestgridJobProperty.class);
+        if (testgridJobProperty == null) {
+            return;
+        }
+        if (run.getAction(YamlSnapshotAction.class) == null) {
+            snapshot(run, testgridJobProperty, listener);
+        }
+        if (run.getAction(PinnedRevisionsAction.class) == null) {
+            pin(run, testgridJobProperty, listener);
+        }
+        if (testgridJobProperty.isSelectChangedScenarios() && run.getAction(ScenarioSelectionAction.class) == null) {
+            selectScenarios(run, testgridJobProperty, listener);
+        }
+    }
+
+    @Override
+    public void onDeleted(Run<?, ?> run) {
+        YamlSnapshotAction snapshot = run.getAction(YamlSnapshotAction.class);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            YamlSnapshotStore.get().release(snapshot.getHash(), run.getExternalizableId());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot release the TestGrid YAML snapshot of " + run, e);
+        }
+    }
+
+    private static void snapshot(Run<?, ?> run, TestgridJobProperty testgridJobProperty, TaskListener listener) {
+        try {
+            String hash = YamlSnapshotStore.get().store(testgridJobProperty.getTestgridYaml(),
+                    run.getExternalizableId());
+            run.addAction(new YamlSnapshotAction(hash));
+        } catch (IOException e) {
+            listener.getLogger().println("Cannot record the TestGrid YAML of this build: " + e);
+        }
+    }
+
+    private static void pin(Run<?, ?> run, TestgridJobProperty testgridJobProperty, TaskListener listener) {
+        try {
+            Map<String, String> revisions = RevisionResolver.resolve(testgridJobProperty.getRepositories(),
+                    listener.getLogger());
+            run.addAction(new PinnedRevisionsAction(revisions));
+            listener.getLogger().println("Pinned " + revisions.size() + " TestGrid repositories");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.getLogger().println("Interrupted while pinning TestGrid repositories; "
+                    + "branches are checked out as they are");
+        }
+    }
+
+    /**
+     * Select the scenarios affected by the changes of the scenario repository since the last
+     * successful build. Whenever the changes cannot be told, no selection is recorded and the
+     * build runs all scenarios.
+     */
+    private static void selectScenarios(Run<?, ?> run, TestgridJobProperty testgridJobProperty,
+                                        TaskListener listener) {
+        PrintStream log = listener.getLogger();
+        List<JenkinsScenario> scenarios = testgridJobProperty.getScenarioList();
+        String url = testgridJobProperty.getScenarioGitURL();
+        if (scenarios == null || scenarios.isEmpty() || url == null) {
+            return;
+        }
+        String branch = testgridJobProperty.getScenarioGitBranch();
+        PinnedRevisionsAction pins = run.getAction(PinnedRevisionsAction.class);
+        String revision = pins == null ? null : pins.getRevision(url, branch);
+        if (revision == null) {
+            log.println("Running all TestGrid scenarios: the scenario repository is not pinned");
+            return;
+        }
+        Run<?, ?> base = run.getPreviousSuccessfulBuild();
+        if (base == null) {
+            log.println("Running all TestGrid scenarios: there is no successful build to compare with");
+            return;
+        }
+        PinnedRevisionsAction basePins = base.getAction(PinnedRevisionsAction.class);
+        String baseRevision = basePins == null ? null : basePins.getRevision(url, branch);
+        if (baseRevision == null) {
+            log.println("Running all TestGrid scenarios: " + base.getFullDisplayName()
+                    + " did not run with the same scenario repository");
+            return;
+        }
+        if (!sameConfiguration(run, base)) {
+            log.println("Running all TestGrid scenarios: the TestGrid configuration changed since "
+                    + base.getFullDisplayName());
+            return;
+        }
+        GitMirrorCache cache = new GitMirrorCache(
+                new File(Jenkins.getInstance().getRootDir(), TestgridCheckoutStep.CACHE_DIRECTORY),
+                TestgridCheckoutStep.DISK_BUDGET_MB * 1024 * 1024);
+        //the mirror keeps updating after a timeout, so that the next build finds it up to date
+        Future<List<String>> changes = EXECUTOR.submit(() -> cache.changedPaths(url, baseRevision, revision, log));
+        try {
+            List<String> changedPaths = changes.get(SELECTION_TIMEOUT, TimeUnit.SECONDS);
+            Set<String> selected = ScenarioSelector.select(scenarios, changedPaths);
+            run.addAction(new ScenarioSelectionAction(baseRevision, revision, changedPaths.size(), selected));
+            log.println("Selected " + selected.size() + " of " + scenarios.size() + " TestGrid scenarios from "
+                    + changedPaths.size() + " paths changed since " + base.getFullDisplayName() + ": " + selected);
+        } catch (ExecutionException e) {
+            log.println("Running all TestGrid scenarios: cannot list the changes since "
+                    + base.getFullDisplayName() + ": " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            log.println("Running all TestGrid scenarios: listing the changes since " + base.getFullDisplayName()
+                    + " takes longer than " + SELECTION_TIMEOUT + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.println("Interrupted while listing the changes of the scenario repository; "
+                    + "running all TestGrid scenarios");
+        }
+    }
+
+    /**
+     * Whether two builds ran with the same TestGrid YAML, so that a scenario unchanged in the
+     * repository ran the same way in both.
+     */
+    private static boolean sameConfiguration(Run<?, ?> run, Run<?, ?> base) {
+        YamlSnapshotAction snapshot = run.getAction(YamlSnapshotAction.class);
+        YamlSnapshotAction baseSnapshot = base.getAction(YamlSnapshotAction.class);
+        return snapshot != null && baseSnapshot != null && snapshot.getHash().equals(baseSnapshot.getHash());
+    }
+}
@@ -22,10 +22,7 @@ import hudson.Extension;
 import hudson.model.Run;
 import org.jenkinsci.plugins.workflow.cps.CpsScript;
 import org.jenkinsci.plugins.workflow.cps.GlobalVariable;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
 
 /**
  * Export a global variable called 'testgrid' to
@@ -36,6 +33,8 @@ import java.util.Map;
  * to access environment variables, and 'params' variable that is used
  * to access build parameters.
  *
+ * The value is a {@link TestgridHandle}, a map that resolves its entries lazily,
+ * so that pipeline checkpoints only serialize the job name and a content hash.
  */
 @Extension
 public class TestgridVariable extends GlobalVariable {
@@ -44,19 +43,16 @@ public class TestgridVariable extends GlobalVariable {
         return "testgrid";
     }
 
-    @SuppressWarnings("unchecked")
     @Override public Object getValue(CpsScript script) throws Exception {
-        Run<?,?> b = script.$build();
-        if (b == null) {
-            throw new IllegalStateException("cannot find owning build");
+        long start = System.nanoTime();
+        try {
+            Run<?,?> b = script.$build();
+            if (b == null) {
+                throw new IllegalStateException("cannot find owning build");
+            }
+            return TestgridHandle.forBuild(b);
+        } finally {
+            TestgridMetrics.VARIABLE_SECONDS.observeSince(start);
         }
-
-        final TestgridJobProperty testgridJobProperty = b.getParent().getProperty(TestgridJobProperty.class);
-        final String testgridYaml = testgridJobProperty.getTestgridYaml();
-        // Could extend AbstractMap and make a Serializable lazy wrapper, but getValue impls seem cheap anyway.
-        Map<String,Object> values = new HashMap<>();
-        values.put("yaml", testgridYaml);
-
-        return Collections.unmodifiableMap(values);
     }
 }
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.wso2.testgrid.common.TestScenario;
+import org.wso2.testgrid.common.config.DeploymentConfig;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.ScenarioConfig;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.common.config.TestgridYaml;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+import org.wso2.testgrid.jenkins.util.ConfigDigest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Generates the TestGrid YAML content of a {@link TestgridJobProperty}.
+ *
+ * The infrastructure, deployment and scenario sections are rendered separately and cached by a
+ * hash of the job configuration they are built from. A config save therefore only re-renders the
+ * sections whose inputs changed, and jobs with identical sections share the rendered content.
+ * Jobs built from the same templates of {@link TestgridGlobalConfiguration} therefore share both
+ * the hashes of the templates and the rendered sections.
+ */
+final class TestgridYamlGenerator {
+
+    private static final String INFRASTRUCTURE_CONFIG = "infrastructureConfig";
+    private static final String DEPLOYMENT_CONFIG = "deploymentConfig";
+    private static final String SCENARIO_CONFIG = "scenarioConfig";
+    private static final String INTEGRATION = "INTEGRAION";
+
+    private static final int CACHE_SIZE = Integer.getInteger(TestgridYamlGenerator.class.getName() + ".cacheSize",
+            1000);
+
+    /**
+     * Rendered sections keyed by section name and content hash.
+     */
+    private static final Cache<String, String> SECTIONS = CacheBuilder.newBuilder()
+            .maximumSize(CACHE_SIZE)
+            .softValues()
+            .build();
+
+    /**
+     * Hashes of provisioner and deployment pattern templates. Templates are replaced, never modified,
+     * when the global configuration changes, so they are held weakly and looked up by identity.
+     */
+    private static final Cache<Object, String> TEMPLATE_DIGESTS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    /**
+     * Top level TestGrid YAML entries other than the three sections, if the model defines any.
+     */
+    private static final String REMAINDER = renderRemainder();
+
+    private TestgridYamlGenerator() {
+    }
+
+    /**
+     * Generate the TestGrid YAML content of the given job property.
+     *
+     * @param property job property holding the TestGrid configuration
+     * @return the YAML formatted string
+     */
+    static String generate(TestgridJobProperty property) {
+        String deployment = deploymentSection(property);
+        String infrastructure = infrastructureSection(property);
+        String scenario = scenarioSection(property);
+        return new StringBuilder(deployment.length() + infrastructure.length() + scenario.length()
+                + REMAINDER.length())
+                .append(deployment)
+                .append(infrastructure)
+                .append(scenario)
+                .append(REMAINDER)
+                .toString();
+    }
+
+    /**
+     * Stream the TestGrid YAML content of the given job property into a writer.
+     *
+     * @param property job property holding the TestGrid configuration
+     * @param writer   writer to stream the YAML content into
+     * @throws IOException if writing fails
+     */
+    static void write(TestgridJobProperty property, Writer writer) throws IOException {
+        writer.write(deploymentSection(property));
+        writer.write(infrastructureSection(property));
+        writer.write(scenarioSection(property));
+        writer.write(REMAINDER);
+    }
+
+    /**
+     * Hash of all inputs of the infrastructure section.
+     */
+    static String infrastructureDigest(TestgridJobProperty property) {
+        ConfigDigest digest = new ConfigDigest();
+        List<TestgridJobProperty.IncludeParameter> includeParameters = property.getIncludeParameters();
+        digest.add(size(includeParameters));
+        if (includeParameters != null) {
+            for (TestgridJobProperty.IncludeParameter includeParameter : includeParameters) {
+                digest.add(includeParameter.getIncludeParameter());
+            }
+        }
+        List<TestgridJobProperty.ExcludeParameter> excludeParameters = property.getExcludeParameters();
+        digest.add(size(excludeParameters));
+        if (excludeParameters != null) {
+            for (TestgridJobProperty.ExcludeParameter excludeParameter : excludeParameters) {
+                digest.add(excludeParameter.getExcludeParameter());
+            }
+        }
+        List<JenkinsInfrastructureConfig> infrastructureConfigs = property.getResolvedInfrastructureConfigs();
+        digest.add(size(infrastructureConfigs));
+        if (infrastructureConfigs != null) {
+            for (JenkinsInfrastructureConfig infraConfig : infrastructureConfigs) {
+                digest.add(provisionerDigest(infraConfig));
+            }
+        }
+        return digest.hex();
+    }
+
+    /**
+     * Hash of all inputs of the deployment section.
+     */
+    static String deploymentDigest(TestgridJobProperty property) {
+        ConfigDigest digest = new ConfigDigest();
+        List<JenkinsDeploymentConfig> deploymentConfigs = property.getDeploymentConfigs();
+        digest.add(size(deploymentConfigs));
+        if (deploymentConfigs != null) {
+            for (JenkinsDeploymentConfig deploymentConfig : deploymentConfigs) {
+                List<JenkinsDeploymentPatternConfig> patternConfigs =
+                        deploymentConfig.getResolvedDeploymentPatternConfigs();
+                digest.add(size(patternConfigs));
+                if (patternConfigs == null) {
+                    continue;
+                }
+                for (JenkinsDeploymentPatternConfig patternConfig : patternConfigs) {
+                    digest.add(patternDigest(patternConfig));
+                }
+            }
+        }
+        return digest.hex();
+    }
+
+    /**
+     * Hash of all inputs of the scenario section.
+     */
+    static String scenarioDigest(TestgridJobProperty property) {
+        ConfigDigest digest = new ConfigDigest()
+                .add(property.getScenarioGitURL())
+                .add(property.getScenarioGitBranch())
+                .add(mapTestType(property.getScenarioTestType()));
+        List<JenkinsScenario> scenarioList = property.getScenarioList();
+        digest.add(size(scenarioList));
+        if (scenarioList != null) {
+            for (JenkinsScenario scenario : scenarioList) {
+                digest.add(scenario.getName())
+                        .add(scenario.getDescription())
+                        .add(scenario.getDir());
+            }
+        }
+        return digest.hex();
+    }
+
+    /**
+     * Hash of a provisioner. The hash of a template is computed once and shared by every job using it.
+     */
+    static String provisionerDigest(JenkinsInfrastructureConfig infraConfig) {
+        boolean template = TestgridGlobalConfiguration.isTemplate(infraConfig);
+        String cached = template ? TEMPLATE_DIGESTS.getIfPresent(infraConfig) : null;
+        if (cached != null) {
+            return cached;
+        }
+        ConfigDigest digest = new ConfigDigest()
+                .add(infraConfig.getName())
+                .add(infraConfig.getDescription())
+                .add(infraConfig.getGitURL())
+                .add(infraConfig.getGitBranch());
+        List<JenkinsScriptConfig> scriptConfigs = infraConfig.getScriptConfigs();
+        digest.add(size(scriptConfigs));
+        if (scriptConfigs != null) {
+            for (JenkinsScriptConfig scriptConfig : scriptConfigs) {
+                digest.add(scriptConfig.getName())
+                        .add(scriptConfig.getDescription())
+                        .add(scriptConfig.getIacProvider())
+                        .add(scriptConfig.getFile())
+                        .add(scriptConfig.getParameters());
+            }
+        }
+        String hex = digest.hex();
+        if (template) {
+            TEMPLATE_DIGESTS.put(infraConfig, hex);
+        }
+        return hex;
+    }
+
+    /**
+     * Hash of a deployment pattern. The hash of a template is computed once and shared by every job using it.
+     */
+    static String patternDigest(JenkinsDeploymentPatternConfig patternConfig) {
+        boolean template = TestgridGlobalConfiguration.isTemplate(patternConfig);
+        String cached = template ? TEMPLATE_DIGESTS.getIfPresent(patternConfig) : null;
+        if (cached != null) {
+            return cached;
+        }
+        ConfigDigest digest = new ConfigDigest()
+                .add(patternConfig.getName())
+                .add(patternConfig.getDescription())
+                .add(patternConfig.getGitURL())
+                .add(patternConfig.getGitBranch());
+        List<JenkinsDeploymentPatternScript> patternScripts = patternConfig.getDeploymentPatternScripts();
+        digest.add(size(patternScripts));
+        if (patternScripts != null) {
+            for (JenkinsDeploymentPatternScript patternScript : patternScripts) {
+                digest.add(patternScript.getName())
+                        .add(patternScript.getType())
+                        .add(patternScript.getFile())
+                        .add(patternScript.getParameters());
+            }
+        }
+        String hex = digest.hex();
+        if (template) {
+            TEMPLATE_DIGESTS.put(patternConfig, hex);
+        }
+        return hex;
+    }
+
+    private static String infrastructureSection(TestgridJobProperty property) {
+        return section(INFRASTRUCTURE_CONFIG, infrastructureDigest(property),
+                () -> buildInfrastructureConfig(property));
+    }
+
+    private static String deploymentSection(TestgridJobProperty property) {
+        return section(DEPLOYMENT_CONFIG, deploymentDigest(property), () -> buildDeploymentConfig(property));
+    }
+
+    private static String scenarioSection(TestgridJobProperty property) {
+        return section(SCENARIO_CONFIG, scenarioDigest(property), () -> buildScenarioConfig(property));
+    }
+
+    private static String section(String name, String digest, Supplier<Object> builder) {
+        String key = name + ':' + digest;
+        String section = SECTIONS.getIfPresent(key);
+        if (section == null) {
+            section = TestgridYamlRenderer.render(Collections.singletonMap(name, builder.get()));
+            SECTIONS.put(key, section);
+        }
+        return section;
+    }
+
+    private static String renderRemainder() {
+        TestgridYaml testgridYaml = new TestgridYaml();
+        testgridYaml.setInfrastructureConfig(null);
+        testgridYaml.setDeploymentConfig(null);
+        testgridYaml.setScenarioConfig(null);
+        String remainder = TestgridYamlRenderer.render(testgridYaml);
+        return "{}".equals(remainder.trim()) ? "" : remainder;
+    }
+
+    private static InfrastructureConfig buildInfrastructureConfig(TestgridJobProperty property) {
+        InfrastructureConfig config = new InfrastructureConfig();
+        config.setInfrastructureProvider(InfrastructureConfig.InfrastructureProvider.AWS);
+        config.setIacProvider(InfrastructureConfig.IACProvider.CLOUDFORMATION);
+        config.setContainerOrchestrationEngine(InfrastructureConfig.ContainerOrchestrationEngine.None);
+
+        List<TestgridJobProperty.IncludeParameter> includeParameters = property.getIncludeParameters();
+        if (includeParameters != null) {
+            List<String> includes = new ArrayList<>(includeParameters.size());
+            for (TestgridJobProperty.IncludeParameter includeParameter : includeParameters) {
+                includes.add(includeParameter.getIncludeParameter());
+            }
+            config.setIncludes(includes);
+        }
+
+        List<TestgridJobProperty.ExcludeParameter> excludeParameters = property.getExcludeParameters();
+        if (excludeParameters != null) {
+            List<String> excludes = new ArrayList<>(excludeParameters.size());
+            for (TestgridJobProperty.ExcludeParameter excludeParameter : excludeParameters) {
+                excludes.add(excludeParameter.getExcludeParameter());
+            }
+            config.setExcludes(excludes);
+        }
+
+        List<JenkinsInfrastructureConfig> infrastructureConfigs = property.getResolvedInfrastructureConfigs();
+        if (infrastructureConfigs != null) {
+            List<InfrastructureConfig.Provisioner> provisioners = new ArrayList<>(infrastructureConfigs.size());
+            for (JenkinsInfrastructureConfig infraConfig : infrastructureConfigs) {
+                InfrastructureConfig.Provisioner provisioner = new InfrastructureConfig.Provisioner();
+                provisioner.setName(infraConfig.getName());
+                provisioner.setDescription(infraConfig.getDescription());
+                provisioner.setRemoteRepository(remoteRepository(infraConfig.getGitURL(), infraConfig.getGitBranch()));
+                List<JenkinsScriptConfig> scriptConfigs = infraConfig.getScriptConfigs();
+                if (scriptConfigs != null) {
+                    List<Script> scripts = new ArrayList<>(scriptConfigs.size());
+                    for (JenkinsScriptConfig scriptConfig : scriptConfigs) {
+                        Script script = new Script();
+                        script.setName(scriptConfig.getName());
+                        script.setDescription(scriptConfig.getDescription());
+                        script.setType(scriptConfig.getIacProviderType());
+                        script.setFile(scriptConfig.getFile());
+                        script.setInputParameters(toProperties(scriptConfig.getParsedParameters()));
+                        scripts.add(script);
+                    }
+                    provisioner.setScripts(scripts);
+                }
+                provisioners.add(provisioner);
+            }
+            config.setProvisioners(provisioners);
+        }
+        return config;
+    }
+
+    private static DeploymentConfig buildDeploymentConfig(TestgridJobProperty property) {
+        DeploymentConfig tgDeploymentConfig = new DeploymentConfig();
+        List<JenkinsDeploymentConfig> deploymentConfigs = property.getDeploymentConfigs();
+        if (deploymentConfigs == null) {
+            return tgDeploymentConfig;
+        }
+        List<DeploymentConfig.DeploymentPattern> deploymentPatterns = new ArrayList<>();
+        for (JenkinsDeploymentConfig deploymentConfig : deploymentConfigs) {
+            List<JenkinsDeploymentPatternConfig> deploymentPatternConfigs =
+                    deploymentConfig.getResolvedDeploymentPatternConfigs();
+            if (deploymentPatternConfigs == null) {
+                continue;
+            }
+            for (JenkinsDeploymentPatternConfig deploymentPatternConfig : deploymentPatternConfigs) {
+                DeploymentConfig.DeploymentPattern pattern = new DeploymentConfig.DeploymentPattern();
+                pattern.setName(deploymentPatternConfig.getName());
+                pattern.setDescription(deploymentPatternConfig.getDescription());
+                pattern.setDir("."); //hard-coded
+                pattern.setRemoteRepository(remoteRepository(deploymentPatternConfig.getGitURL(),
+                        deploymentPatternConfig.getGitBranch()));
+                List<Script> deploymentScripts = new ArrayList<>();
+                List<JenkinsDeploymentPatternScript> deploymentPatternScripts =
+                        deploymentPatternConfig.getDeploymentPatternScripts();
+                if (deploymentPatternScripts != null) {
+                    for (JenkinsDeploymentPatternScript deploymentPatternScript : deploymentPatternScripts) {
+                        Script script = new Script();
+                        script.setName(deploymentPatternScript.getName());
+                        script.setType(deploymentPatternScript.getScriptType());
+                        script.setFile(deploymentPatternScript.getFile());
+                        script.setInputParameters(toProperties(deploymentPatternScript.getParsedParameters()));
+                        deploymentScripts.add(script);
+                    }
+                }
+                pattern.setScripts(deploymentScripts);
+                deploymentPatterns.add(pattern);
+            }
+        }
+        tgDeploymentConfig.setDeploymentPatterns(deploymentPatterns);
+        return tgDeploymentConfig;
+    }
+
+    private static ScenarioConfig buildScenarioConfig(TestgridJobProperty property) {
+        ScenarioConfig tgScenarioConfig = new ScenarioConfig();
+        tgScenarioConfig.setRemoteRepository(remoteRepository(property.getScenarioGitURL(),
+                property.getScenarioGitBranch()));
+        tgScenarioConfig.setTestType(mapTestType(property.getScenarioTestType()));
+        List<JenkinsScenario> scenarioList = property.getScenarioList();
+        if (scenarioList != null) {
+            List<TestScenario> testScenarios = new ArrayList<>(scenarioList.size());
+            for (JenkinsScenario jenkinsScenario : scenarioList) {
+                TestScenario scenario = new TestScenario();
+                scenario.setName(jenkinsScenario.getName());
+                scenario.setDescription(jenkinsScenario.getDescription());
+                scenario.setDir(jenkinsScenario.getDir());
+                testScenarios.add(scenario);
+            }
+            tgScenarioConfig.setScenarios(testScenarios);
+        }
+        return tgScenarioConfig;
+    }
+
+    private static String remoteRepository(String gitURL, String gitBranch) {
+        if (gitBranch != null) {
+            return "-b " + gitBranch + " " + gitURL;
+        }
+        return gitURL;
+    }
+
+    private static Properties toProperties(Map<String, String> parameters) {
+        Properties properties = new Properties();
+        properties.putAll(parameters);
+        return properties;
+    }
+
+    /**
+     * Map the TestType to match the test types to TestGrid internal values
+     * TODO : handle this mapping from testgrid internally.
+     * @param testType Test Type selected from UI
+     * @return Mapped Test Type
+     */
+    private static String mapTestType(String testType) {
+        if (TestgridJobProperty.TESTNG.equals(testType)) {
+            return INTEGRATION;
+        }
+        return INTEGRATION;
+    }
+
+    private static int size(List<?> list) {
+        return list == null ? -1 : list.size();
+    }
+}
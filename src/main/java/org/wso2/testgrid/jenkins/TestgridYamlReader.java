@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+import org.wso2.testgrid.jenkins.util.ScriptParameters;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a testgrid.yaml file back into a {@link TestgridJobProperty}, the reverse of
+ * {@link TestgridYamlGenerator}.
+ *
+ * The file is read as a stream of parser events and only the parts the job configuration
+ * holds are kept, so large files are never loaded as a whole document tree. Entries the job
+ * configuration has no place for are skipped. All deployment patterns go into one
+ * deployment configuration. The settings the file does not hold are carried over from the
+ * configuration the file replaces: the email recipients, the test type, whether only changed
+ * scenarios are selected, the scenarios that always run and the templates provisioners and
+ * deployment patterns are based on, the last two matched by name. The values of the file
+ * override those of the templates.
+ */
+final class TestgridYamlReader {
+
+    private static final String INFRASTRUCTURE_CONFIG = "infrastructureConfig";
+    private static final String DEPLOYMENT_CONFIG = "deploymentConfig";
+    private static final String SCENARIO_CONFIG = "scenarioConfig";
+
+    private final Iterator<Event> events;
+    private final Map<String, String> anchors = new HashMap<>();
+
+    private final List<JenkinsInfrastructureConfig> infrastructureConfigs = new ArrayList<>();
+    private final List<JenkinsDeploymentPatternConfig> patternConfigs = new ArrayList<>();
+    private final List<JenkinsScenario> scenarios = new ArrayList<>();
+    private final List<TestgridJobProperty.IncludeParameter> includeParameters = new ArrayList<>();
+    private final List<TestgridJobProperty.ExcludeParameter> excludeParameters = new ArrayList<>();
+    private String[] scenarioRepository = {null, null};
+
+    private TestgridYamlReader(Reader reader) {
+        this.events = new Yaml().parse(reader).iterator();
+    }
+
+    /**
+     * Read a TestGrid configuration.
+     *
+     * @param reader   reader of the testgrid.yaml content
+     * @param existing configuration the file replaces, or {@code null} if there is none
+     * @return the job property holding the configuration
+     * @throws IOException if the content is not a valid testgrid.yaml file
+     */
+    static TestgridJobProperty read(Reader reader, TestgridJobProperty existing) throws IOException {
+        try {
+            TestgridYamlReader yamlReader = new TestgridYamlReader(reader);
+            yamlReader.readDocument();
+            return yamlReader.toProperty(existing);
+        } catch (YAMLException e) {
+            throw new IOException("Invalid testgrid.yaml: " + e.getMessage(), e);
+        }
+    }
+
+    private TestgridJobProperty toProperty(TestgridJobProperty existing) {
+        if (existing != null) {
+            carryOver(existing);
+        }
+        List<JenkinsDeploymentConfig> deploymentConfigs = patternConfigs.isEmpty()
+                ? Collections.<JenkinsDeploymentConfig>emptyList()
+                : Collections.singletonList(new JenkinsDeploymentConfig(patternConfigs));
+        String testType = existing == null || existing.getScenarioTestType() == null
+                ? TestgridJobProperty.TESTNG : existing.getScenarioTestType();
+        TestgridJobProperty property = new TestgridJobProperty(infrastructureConfigs,
+                new ArrayList<>(deploymentConfigs), includeParameters, excludeParameters,
+                !includeParameters.isEmpty(), !excludeParameters.isEmpty(), scenarios, scenarioRepository[1],
+                testType, scenarioRepository[0], existing == null ? null : existing.getEmailToList());
+        property.setSelectChangedScenarios(existing != null && existing.isSelectChangedScenarios());
+        return property;
+    }
+
+    /**
+     * Carry the settings the file does not hold over from the configuration it replaces.
+     */
+    private void carryOver(TestgridJobProperty existing) {
+        Map<String, String> provisionerTemplates = new HashMap<>();
+        if (existing.getInfrastructureConfigs() != null) {
+            for (JenkinsInfrastructureConfig config : existing.getInfrastructureConfigs()) {
+                if (config.getTemplate() != null) {
+                    provisionerTemplates.putIfAbsent(config.resolve().getName(), config.getTemplate());
+                }
+            }
+        }
+        for (JenkinsInfrastructureConfig config : infrastructureConfigs) {
+            String template = provisionerTemplates.get(config.getName());
+            if (template != null) {
+                config.setTemplate(template);
+            }
+        }
+
+        Map<String, String> patternTemplates = new HashMap<>();
+        if (existing.getDeploymentConfigs() != null) {
+            for (JenkinsDeploymentConfig deploymentConfig : existing.getDeploymentConfigs()) {
+                if (deploymentConfig.getDeploymentPatternConfigs() == null) {
+                    continue;
+                }
+                for (JenkinsDeploymentPatternConfig config : deploymentConfig.getDeploymentPatternConfigs()) {
+                    if (config.getTemplate() != null) {
+                        patternTemplates.putIfAbsent(config.resolve().getName(), config.getTemplate());
+                    }
+                }
+            }
+        }
+        for (JenkinsDeploymentPatternConfig config : patternConfigs) {
+            String template = patternTemplates.get(config.getName());
+            if (template != null) {
+                config.setTemplate(template);
+            }
+        }
+
+        if (existing.getScenarioList() != null) {
+            List<String> alwaysRun = new ArrayList<>();
+            for (JenkinsScenario scenario : existing.getScenarioList()) {
+                if (scenario.isAlwaysRun()) {
+                    alwaysRun.add(scenario.getName());
+                }
+            }
+            for (JenkinsScenario scenario : scenarios) {
+                scenario.setAlwaysRun(alwaysRun.contains(scenario.getName()));
+            }
+        }
+    }
+
+    private void readDocument() throws IOException {
+        Event event = next();
+        while (!(event instanceof CollectionStartEvent || event instanceof ScalarEvent)) {
+            event = next();
+        }
+        mapping(event, key -> {
+            switch (key) {
+                case INFRASTRUCTURE_CONFIG:
+                    mapping(next(), this::infrastructureField);
+                    break;
+                case DEPLOYMENT_CONFIG:
+                    mapping(next(), field -> {
+                        if ("deploymentPatterns".equals(field)) {
+                            patternConfigs.addAll(sequence(next(), this::patternConfig));
+                        } else {
+                            skip(next());
+                        }
+                    });
+                    break;
+                case SCENARIO_CONFIG:
+                    mapping(next(), this::scenarioField);
+                    break;
+                default:
+                    skip(next());
+                    break;
+            }
+        });
+    }
+
+    private void infrastructureField(String key) throws IOException {
+        switch (key) {
+            case "includes":
+                for (String include : sequence(next(), this::scalar)) {
+                    includeParameters.add(new TestgridJobProperty.IncludeParameter(include));
+                }
+                break;
+            case "excludes":
+                for (String exclude : sequence(next(), this::scalar)) {
+                    excludeParameters.add(new TestgridJobProperty.ExcludeParameter(exclude));
+                }
+                break;
+            case "provisioners":
+                infrastructureConfigs.addAll(sequence(next(), this::provisioner));
+                break;
+            default:
+                skip(next());
+                break;
+        }
+    }
+
+    private JenkinsInfrastructureConfig provisioner(Event start) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        List<JenkinsScriptConfig> scriptConfigs = new ArrayList<>();
+        mapping(start, key -> {
+            if ("scripts".equals(key)) {
+                scriptConfigs.addAll(sequence(next(), this::scriptConfig));
+            } else {
+                scalarField(key, next(), values);
+            }
+        });
+        String[] repository = repository(values.get("remoteRepository"));
+        return new JenkinsInfrastructureConfig(repository[1], repository[0], values.get("description"),
+                values.get("name"), scriptConfigs);
+    }
+
+    private JenkinsScriptConfig scriptConfig(Event start) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        Map<String, String> parameters = new LinkedHashMap<>();
+        script(start, values, parameters);
+        return new JenkinsScriptConfig(values.get("name"), values.get("file"), values.get("description"),
+                values.get("type"), ScriptParameters.format(parameters));
+    }
+
+    private JenkinsDeploymentPatternConfig patternConfig(Event start) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        List<JenkinsDeploymentPatternScript> patternScripts = new ArrayList<>();
+        mapping(start, key -> {
+            if ("scripts".equals(key)) {
+                patternScripts.addAll(sequence(next(), this::patternScript));
+            } else {
+                scalarField(key, next(), values);
+            }
+        });
+        String[] repository = repository(values.get("remoteRepository"));
+        return new JenkinsDeploymentPatternConfig(values.get("name"), values.get("description"), patternScripts,
+                repository[1], repository[0]);
+    }
+
+    private JenkinsDeploymentPatternScript patternScript(Event start) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        Map<String, String> parameters = new LinkedHashMap<>();
+        script(start, values, parameters);
+        return new JenkinsDeploymentPatternScript(values.get("name"), values.get("type"), values.get("file"),
+                ScriptParameters.format(parameters));
+    }
+
+    private void script(Event start, Map<String, String> values, Map<String, String> parameters)
+            throws IOException {
+        mapping(start, key -> {
+            if ("inputParameters".equals(key)) {
+                mapping(next(), name -> parameters.put(name, scalar(next())));
+            } else {
+                scalarField(key, next(), values);
+            }
+        });
+    }
+
+    private void scenarioField(String key) throws IOException {
+        switch (key) {
+            case "remoteRepository":
+                scenarioRepository = repository(scalar(next()));
+                break;
+            case "scenarios":
+                scenarios.addAll(sequence(next(), this::scenario));
+                break;
+            default:
+                skip(next());
+                break;
+        }
+    }
+
+    private JenkinsScenario scenario(Event start) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        mapping(start, key -> scalarField(key, next(), values));
+        return new JenkinsScenario(values.get("name"), values.get("description"), values.get("dir"));
+    }
+
+    /**
+     * Split a TestGrid remote repository, {@code [-b|--branch <branch>] <url>}, into branch and URL.
+     */
+    private static String[] repository(String remoteRepository) {
+        String[] repository = {null, null};
+        if (remoteRepository == null) {
+            return repository;
+        }
+        String[] tokens = remoteRepository.trim().split("\\s+");
+        for (int i = 0; i < tokens.length; i++) {
+            if (("-b".equals(tokens[i]) || "--branch".equals(tokens[i])) && i + 1 < tokens.length) {
+                repository[0] = tokens[++i];
+            } else if (!tokens[i].startsWith("-")) {
+                repository[1] = tokens[i];
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Keep a scalar field, skipping values that are not scalars.
+     */
+    private void scalarField(String key, Event start, Map<String, String> values) throws IOException {
+        if (start instanceof ScalarEvent || start instanceof AliasEvent) {
+            values.put(key, scalar(start));
+        } else {
+            skip(start);
+        }
+    }
+
+    private void mapping(Event start, FieldReader reader) throws IOException {
+        if (!(start instanceof MappingStartEvent)) {
+            if (start instanceof ScalarEvent && scalar(start) == null) {
+                return;
+            }
+            throw error("a mapping", start);
+        }
+        for (Event event = next(); !(event instanceof MappingEndEvent); event = next()) {
+            String key = scalar(event);
+            if (key == null) {
+                throw error("a mapping key", event);
+            }
+            reader.read(key);
+        }
+    }
+
+    private <T> List<T> sequence(Event start, ItemReader<T> reader) throws IOException {
+        if (!(start instanceof SequenceStartEvent)) {
+            if (start instanceof ScalarEvent && scalar(start) == null) {
+                return Collections.emptyList();
+            }
+            throw error("a list", start);
+        }
+        List<T> items = new ArrayList<>();
+        for (Event event = next(); !(event instanceof SequenceEndEvent); event = next()) {
+            items.add(reader.read(event));
+        }
+        return items;
+    }
+
+    /**
+     * Read a scalar value. Plain {@code null} and {@code ~} values, and empty plain values, read as {@code null}.
+     */
+    private String scalar(Event event) throws IOException {
+        if (event instanceof AliasEvent) {
+            String anchor = ((AliasEvent) event).getAnchor();
+            if (!anchors.containsKey(anchor)) {
+                throw error("a scalar", event);
+            }
+            return anchors.get(anchor);
+        }
+        if (!(event instanceof ScalarEvent)) {
+            throw error("a scalar", event);
+        }
+        ScalarEvent scalar = (ScalarEvent) event;
+        String value = scalar.getValue();
+        if (scalar.getImplicit().canOmitTagInPlainScalar()
+                && (value.isEmpty() || "~".equals(value) || "null".equalsIgnoreCase(value))) {
+            value = null;
+        }
+        if (scalar.getAnchor() != null) {
+            anchors.put(scalar.getAnchor(), value);
+        }
+        return value;
+    }
+
+    /**
+     * Skip a value, including all nested values of a mapping or a list.
+     */
+    private void skip(Event start) throws IOException {
+        if (start instanceof ScalarEvent) {
+            scalar(start);
+            return;
+        }
+        if (!(start instanceof CollectionStartEvent)) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            Event event = next();
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    private Event next() throws IOException {
+        if (!events.hasNext()) {
+            throw new IOException("Unexpected end of testgrid.yaml");
+        }
+        return events.next();
+    }
+
+    private static IOException error(String expected, Event event) {
+        return new IOException("Expected " + expected + " at " + event.getStartMark());
+    }
+
+    /**
+     * Reads the value of a mapping entry.
+     */
+    @FunctionalInterface
+    private interface FieldReader {
+        void read(String key) throws IOException;
+    }
+
+    /**
+     * Reads an item of a list, given its first event.
+     */
+    @FunctionalInterface
+    private interface ItemReader<T> {
+        T read(Event start) throws IOException;
+    }
+}
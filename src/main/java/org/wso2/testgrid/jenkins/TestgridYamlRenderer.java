@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.wso2.testgrid.common.config.DeploymentConfig;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.ScenarioConfig;
+import org.wso2.testgrid.common.config.TestgridYaml;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.introspector.Property;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shared YAML rendering engine used to dump the TestGrid configuration objects.
+ *
+ * The null filtering {@link Representer} and the block style {@link DumperOptions} are set up
+ * once per thread. SnakeYAML keeps per-dump state inside the representer and the emitter, so a
+ * {@link Yaml} instance cannot be shared between request threads; each thread reuses its own.
+ */
+public final class TestgridYamlRenderer {
+
+    private static final DumperOptions OPTIONS = new DumperOptions();
+
+    static {
+        //Dumper options set to achieve proper yaml format
+        OPTIONS.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+    }
+
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(TestgridYamlRenderer::newYaml);
+
+    private TestgridYamlRenderer() {
+    }
+
+    /**
+     * Render the given object as a YAML document.
+     *
+     * @param data object to be rendered
+     * @return the YAML formatted string
+     */
+    public static String render(Object data) {
+        return YAML.get().dump(data);
+    }
+
+    /**
+     * Render the given object as a YAML document straight into the given writer.
+     * The writer is neither flushed nor closed.
+     *
+     * @param data   object to be rendered
+     * @param writer writer to stream the YAML content into
+     */
+    public static void render(Object data, Writer writer) {
+        YAML.get().dump(data, writer);
+    }
+
+    /**
+     * Render the given object as a UTF-8 encoded YAML document straight into the given stream.
+     * The stream is flushed but not closed.
+     *
+     * @param data object to be rendered
+     * @param out  stream to write the YAML content into
+     * @throws IOException if writing to the stream fails
+     */
+    public static void render(Object data, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        render(data, writer);
+        writer.flush();
+    }
+
+    private static Yaml newYaml() {
+        Representer representer = new NullSkippingRepresenter();
+        representer.addClassTag(TestgridYaml.class, Tag.MAP);
+        //sections are rendered on their own as values of a plain map
+        representer.addClassTag(InfrastructureConfig.class, Tag.MAP);
+        representer.addClassTag(DeploymentConfig.class, Tag.MAP);
+        representer.addClassTag(ScenarioConfig.class, Tag.MAP);
+        return new Yaml(representer, OPTIONS);
+    }
+
+    /**
+     * Representer to filter out null values in TestGridYaml object.
+     */
+    private static final class NullSkippingRepresenter extends Representer {
+
+        @Override
+        protected NodeTuple representJavaBeanProperty(Object javaBean, Property property, Object propertyValue,
+                                                      Tag customTag) {
+            if (propertyValue == null) {
+                return null;
+            }
+            return super.representJavaBeanProperty(javaBean, property, propertyValue, customTag);
+        }
+    }
+}
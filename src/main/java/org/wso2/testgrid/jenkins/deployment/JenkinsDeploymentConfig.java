@@ -22,6 +22,7 @@ import hudson.model.Describable;
 import hudson.model.Descriptor;
 import org.kohsuke.stapler.DataBoundConstructor;
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,6 +43,21 @@ public class JenkinsDeploymentConfig implements Describable<JenkinsDeploymentCon
         return deploymentPatternConfigs;
     }
 
+    /**
+     * @return the effective deployment patterns, with their templates applied, or {@code null} if there are none
+     * @see JenkinsDeploymentPatternConfig#resolve()
+     */
+    public List<JenkinsDeploymentPatternConfig> getResolvedDeploymentPatternConfigs() {
+        if (deploymentPatternConfigs == null) {
+            return null;
+        }
+        List<JenkinsDeploymentPatternConfig> resolved = new ArrayList<>(deploymentPatternConfigs.size());
+        for (JenkinsDeploymentPatternConfig patternConfig : deploymentPatternConfigs) {
+            resolved.add(patternConfig.resolve());
+        }
+        return resolved;
+    }
+
     @Override
     public Descriptor<JenkinsDeploymentConfig> getDescriptor() {
         return DESCRIPTOR;
@@ -18,11 +18,18 @@
 package org.wso2.testgrid.jenkins.deployment;
 
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
+import hudson.model.Item;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.wso2.testgrid.jenkins.TestgridGlobalConfiguration;
+import org.wso2.testgrid.jenkins.git.GitCheckout;
+import org.wso2.testgrid.jenkins.git.RemoteValidation;
+import org.wso2.testgrid.jenkins.util.StringPool;
 
 import java.util.List;
 
@@ -40,6 +47,11 @@ public class JenkinsDeploymentPatternConfig implements Describable<JenkinsDeploy
     private String gitURL;
     private String gitBranch;
     private List<JenkinsDeploymentPatternScript> deploymentPatternScripts;
+    private String template;
+    /**
+     * Result of {@link #resolve()}, valid while the template generation it was computed in lasts.
+     */
+    private transient volatile Resolved resolved;
 
     public String getName() {
         return name;
@@ -64,11 +76,84 @@ public class JenkinsDeploymentPatternConfig implements Describable<JenkinsDeploy
     @DataBoundConstructor
     public JenkinsDeploymentPatternConfig(String name, String description, List<JenkinsDeploymentPatternScript> deploymentPatternScripts,
                                           String gitURL,String gitBranch) {
-        this.name = name;
-        this.description = description;
-        this.gitURL = gitURL;
+        this.name = StringPool.intern(name);
+        this.description = StringPool.intern(description);
+        this.gitURL = StringPool.intern(gitURL);
         this.deploymentPatternScripts = deploymentPatternScripts;
-        this.gitBranch = gitBranch;
+        this.gitBranch = StringPool.intern(gitBranch);
+    }
+
+    /**
+     * Pool the strings read from config.xml.
+     *
+     * @return this object
+     */
+    protected Object readResolve() {
+        name = StringPool.intern(name);
+        description = StringPool.intern(description);
+        gitURL = StringPool.intern(gitURL);
+        gitBranch = StringPool.intern(gitBranch);
+        template = StringPool.intern(template);
+        return this;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @param template name of the deployment pattern template in the global configuration this
+     *                 pattern is based on; the fields set here override the template
+     */
+    @DataBoundSetter
+    public void setTemplate(String template) {
+        this.template = StringPool.intern(Util.fixEmptyAndTrim(template));
+        this.resolved = null;
+    }
+
+    /**
+     * Returns the effective deployment pattern: this one if it is not based on a template, otherwise
+     * the template with the fields set here applied. Without overrides, the shared template instance
+     * itself is returned.
+     *
+     * @return the effective deployment pattern
+     */
+    public JenkinsDeploymentPatternConfig resolve() {
+        if (template == null) {
+            return this;
+        }
+        long generation = TestgridGlobalConfiguration.getGeneration();
+        Resolved cached = resolved;
+        if (cached != null && cached.generation == generation) {
+            return cached.config;
+        }
+        JenkinsDeploymentPatternConfig config = resolveTemplate();
+        resolved = new Resolved(generation, config);
+        return config;
+    }
+
+    private JenkinsDeploymentPatternConfig resolveTemplate() {
+        TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+        JenkinsDeploymentPatternConfig base = globalConfiguration == null ? null
+                : globalConfiguration.getPatternTemplate(template);
+        if (base == null) {
+            return this;
+        }
+        String resolvedName = Util.fixEmpty(name);
+        String resolvedDescription = Util.fixEmpty(description);
+        String resolvedGitURL = Util.fixEmpty(gitURL);
+        String resolvedGitBranch = Util.fixEmpty(gitBranch);
+        boolean hasScripts = deploymentPatternScripts != null && !deploymentPatternScripts.isEmpty();
+        if (resolvedName == null && resolvedDescription == null && resolvedGitURL == null
+                && resolvedGitBranch == null && !hasScripts) {
+            return base;
+        }
+        return new JenkinsDeploymentPatternConfig(
+                resolvedName != null ? resolvedName : base.name,
+                resolvedDescription != null ? resolvedDescription : base.description,
+                hasScripts ? deploymentPatternScripts : base.deploymentPatternScripts,
+                resolvedGitURL != null ? resolvedGitURL : base.gitURL,
+                resolvedGitBranch != null ? resolvedGitBranch : base.gitBranch);
     }
 
     @Override
@@ -76,12 +161,31 @@ public class JenkinsDeploymentPatternConfig implements Describable<JenkinsDeploy
         return DESCRIPTOR;
     }
 
+    /**
+     * Effective deployment pattern together with the template generation it was resolved in.
+     */
+    private static final class Resolved {
+
+        private final long generation;
+        private final JenkinsDeploymentPatternConfig config;
+
+        Resolved(long generation, JenkinsDeploymentPatternConfig config) {
+            this.generation = generation;
+            this.config = config;
+        }
+    }
+
     /**
      * Static inner class that extends the {@link Descriptor} class to provide the
      * metadata for the {@link JenkinsDeploymentPatternConfig} UI describable class.
      */
     public static class DescriptorImpl extends Descriptor<JenkinsDeploymentPatternConfig>{
 
+        public ListBoxModel doFillTemplateItems() {
+            TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+            return globalConfiguration == null ? new ListBoxModel() : globalConfiguration.getPatternTemplateItems();
+        }
+
         /**
          * Validate the name entered by the user. This implementation checks if it is empty,
          * and prompts the user.
@@ -89,42 +193,40 @@ public class JenkinsDeploymentPatternConfig implements Describable<JenkinsDeploy
          * @param value name  value entered by the user
          * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.
          */
-        public FormValidation doCheckName(@QueryParameter String value){
+        public FormValidation checkName(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
+            }else if(!GitCheckout.directoryName(value).equals(value.trim())){
+                return FormValidation.error("The name is checked out as a directory; it must not contain /, \\ or :"
+                        + " and must not be . or ..");
             }else{
                 return FormValidation.ok();
             }
         }
 
         /**
-         * Validate the gitURl entered by the user. This implementation checks if it is empty,
-         * and prompts the user.
+         * Validate the gitURl entered by the user. This implementation checks if it is empty
+         * and, for users who may configure the job, whether the repository can be read.
          *
+         * @param item  job being configured
          * @param value String value provided by the gitURL field.
-         * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.
+         * @return the a positive {@link FormValidation} result if it is valid, else a negative result.
          */
-        public FormValidation doCheckGitURL(@QueryParameter String value){
-            if(value.isEmpty()){
-                return FormValidation.error("* Required Parameter..");
-            }else{
-                return FormValidation.ok();
-            }
+        public FormValidation checkGitURL(Item item, String value){
+            return RemoteValidation.checkUrl(item, value);
         }
 
         /**
-         * Validate the gitBranch entered by the user. This implementation checks if it is empty,
-         * and prompts the user.
+         * Validate the gitBranch entered by the user. This implementation checks if it is empty
+         * and, for users who may configure the job, whether the branch exists in the repository.
          *
-         * @param value gitBranch value entered by the user
-         * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.
+         * @param item   job being configured
+         * @param value  gitBranch value entered by the user
+         * @param gitURL repository the branch belongs to
+         * @return the a positive {@link FormValidation} result if it is valid, else a negative result.
          */
-        public FormValidation doCheckGitBranch(@QueryParameter String value){
-            if(value.isEmpty()){
-                return FormValidation.error("* Required Parameter..");
-            }else{
-                return FormValidation.ok();
-            }
+        public FormValidation checkGitBranch(Item item, String value, String gitURL){
+            return RemoteValidation.checkBranch(item, gitURL, value);
         }
     }
 }
@@ -23,10 +23,14 @@ import hudson.model.Descriptor;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.QueryParameter;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.jenkins.util.ScriptParameters;
+import org.wso2.testgrid.jenkins.util.ScriptTypes;
+import org.wso2.testgrid.jenkins.util.StringPool;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * Defines the variables in the Deployment Pattern script config section of the UI
@@ -37,17 +41,31 @@ public class JenkinsDeploymentPatternScript implements Describable<JenkinsDeploy
 
     @Extension
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
-    private String name;
-    private String type;
-    private String file;
-    private String parameters;
+    private final String name;
+    private final Script.ScriptType type;
+    private final String file;
+    private final String parameters;
+    private transient volatile Map<String, String> parsedParameters;
 
     @DataBoundConstructor
     public JenkinsDeploymentPatternScript(String name, String type, String file, String parameters) {
-        this.name = name;
+        this(name, ScriptTypes.valueOf(type), file, parameters);
+    }
+
+    private JenkinsDeploymentPatternScript(String name, Script.ScriptType type, String file, String parameters) {
+        this.name = StringPool.intern(name);
         this.type = type;
-        this.file = file;
-        this.parameters = parameters;
+        this.file = StringPool.intern(file);
+        this.parameters = StringPool.intern(parameters);
+    }
+
+    /**
+     * Pool the strings read from config.xml.
+     *
+     * @return an equal script holding pooled strings
+     */
+    protected Object readResolve() {
+        return new JenkinsDeploymentPatternScript(name, type, file, parameters);
     }
 
     public String getName() {
@@ -55,6 +73,10 @@ public class JenkinsDeploymentPatternScript implements Describable<JenkinsDeploy
     }
 
     public String getType() {
+        return type == null ? null : type.name();
+    }
+
+    public Script.ScriptType getScriptType() {
         return type;
     }
 
@@ -66,6 +88,21 @@ public class JenkinsDeploymentPatternScript implements Describable<JenkinsDeploy
         return parameters;
     }
 
+    /**
+     * Returns the input parameters parsed into key value pairs. The result is parsed once
+     * and cached on this object.
+     *
+     * @return an unmodifiable map of the input parameters
+     */
+    public Map<String, String> getParsedParameters() {
+        Map<String, String> parsed = parsedParameters;
+        if (parsed == null) {
+            parsed = ScriptParameters.parse(parameters);
+            parsedParameters = parsed;
+        }
+        return parsed;
+    }
+
     @Override
     public Descriptor<JenkinsDeploymentPatternScript> getDescriptor() {
         return DESCRIPTOR;
@@ -104,7 +141,7 @@ public class JenkinsDeploymentPatternScript implements Describable<JenkinsDeploy
          * @param value name value entered by the user
          * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.
          */
-        public FormValidation doCheckName(@QueryParameter String value){
+        public FormValidation checkName(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -119,7 +156,7 @@ public class JenkinsDeploymentPatternScript implements Describable<JenkinsDeploy
          * @param value file name entered by the user.
          * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.
          */
-        public FormValidation doCheckFile(@QueryParameter String value){
+        public FormValidation checkFile(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.environment;
+
+import hudson.FilePath;
+import hudson.XmlFile;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.util.ConfigDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of warm environments created by the provisioners of the TestGrid configurations, kept in
+ * {@code JENKINS_HOME/testgrid-environments.xml}.
+ *
+ * Environments are keyed by a hash of the provisioner commit, its scripts and their parsed input
+ * parameters, so a build only leases an environment that the same provisioner sources would create.
+ * Environments are only leased by builds of the job that created them, on the node they were
+ * created on, and pass a health check before they are handed out. Idle environments are destroyed
+ * after an idle time, and the least recently used ones beyond the maximum pool size as soon as
+ * they are released. Environments that are given up are retired for good: they are never leased
+ * again, and destroying them is retried until it succeeds.
+ */
+public final class EnvironmentPool {
+
+    static final String FILE = "testgrid-environments.xml";
+
+    /**
+     * Directory holding the environments, in the root directory of each node.
+     */
+    public static final String DIRECTORY = "testgrid-environments";
+
+    /**
+     * Minutes an environment may stay idle before it is destroyed.
+     */
+    private static final long IDLE_MINUTES = Long.getLong(EnvironmentPool.class.getName() + ".idleMinutes", 60);
+
+    /**
+     * Maximum number of idle environments kept.
+     */
+    private static final int MAX_SIZE = Integer.getInteger(EnvironmentPool.class.getName() + ".maxSize", 10);
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "TestGrid environment pool"));
+
+    private static final Logger LOGGER = Logger.getLogger(EnvironmentPool.class.getName());
+
+    private static EnvironmentPool instance;
+
+    private List<PooledEnvironment> environments = new ArrayList<>();
+
+    private transient XmlFile file;
+
+    /**
+     * @return the pool of this Jenkins instance
+     */
+    public static synchronized EnvironmentPool get() {
+        if (instance == null) {
+            XmlFile file = new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.getInstance().getRootDir(), FILE));
+            EnvironmentPool pool = null;
+            if (file.exists()) {
+                try {
+                    pool = (EnvironmentPool) file.read();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Cannot read the TestGrid environment pool", e);
+                }
+            }
+            if (pool == null) {
+                pool = new EnvironmentPool();
+            }
+            pool.file = file;
+            instance = pool;
+        }
+        return instance;
+    }
+
+    protected Object readResolve() {
+        if (environments == null) {
+            environments = new ArrayList<>();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the key of the environments a provisioner creates.
+     *
+     * @param commit      commit of the provisioner repository
+     * @param infraConfig provisioner, with its template applied
+     * @return the lower case hex encoded hash
+     */
+    public static String key(String commit, JenkinsInfrastructureConfig infraConfig) {
+        ConfigDigest digest = new ConfigDigest().add(infraConfig.getGitURL()).add(commit);
+        List<JenkinsScriptConfig> scriptConfigs = infraConfig.getScriptConfigs();
+        digest.add(scriptConfigs == null ? 0 : scriptConfigs.size());
+        if (scriptConfigs != null) {
+            for (JenkinsScriptConfig scriptConfig : scriptConfigs) {
+                digest.add(scriptConfig.getName()).add(scriptConfig.getIacProvider()).add(scriptConfig.getFile());
+                Map<String, String> parameters = new TreeMap<>(scriptConfig.getParsedParameters());
+                digest.add(parameters.size());
+                for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                    digest.add(parameter.getKey()).add(parameter.getValue());
+                }
+            }
+        }
+        return digest.hex();
+    }
+
+    /**
+     * Run a task on the threads of the pool, which create, check and destroy the environments.
+     *
+     * @param task task to run
+     * @return the future of the task
+     */
+    public static Future<?> submit(Runnable task) {
+        return EXECUTOR.submit(task);
+    }
+
+    /**
+     * Lease an environment of a provisioner on the node of the given provisioner checkout: the
+     * most recently used idle environment with the same key that passes its health check, or
+     * else a new environment that the provisioner scripts create. Environments that fail their
+     * health check are destroyed.
+     *
+     * @param infraConfig provisioner, with its template applied; all its scripts must be SHELL scripts
+     * @param commit      commit of the provisioner repository, {@code null} if it is not pinned,
+     *                    in which case the environment is not reused
+     * @param source      checkout of the provisioner repository
+     * @param job         full name of the job of the build
+     * @param build       id of the build taking the lease
+     * @param listener    listener to report progress and the script output to
+     * @return the leased environment; it was reused if it has been leased more than once
+     * @throws IOException if the environment cannot be created
+     * @throws InterruptedException if interrupted
+     */
+    public PooledEnvironment lease(JenkinsInfrastructureConfig infraConfig, String commit, FilePath source,
+                                   String job, String build, TaskListener listener)
+            throws IOException, InterruptedException {
+        Computer computer = source.toComputer();
+        Node node = computer == null ? null : computer.getNode();
+        FilePath nodeRoot = node == null ? null : node.getRootPath();
+        if (nodeRoot == null) {
+            throw new IOException("The node of " + source + " is offline");
+        }
+        String nodeName = computer.getName();
+        String key = commit == null ? null : key(commit, infraConfig);
+        PooledEnvironment environment;
+        while ((environment = acquire(key, job, nodeName, build)) != null) {
+            listener.getLogger().println("Checking the health of " + environment);
+            boolean healthy;
+            try {
+                healthy = directory(source, environment).act(new EnvironmentScripts(EnvironmentScripts.CHECK, null,
+                        environment.getScripts(), environment.getParameters(), listener));
+            } catch (IOException e) {
+                listener.getLogger().println("Cannot check the health of " + environment + ": " + e.getMessage());
+                healthy = false;
+            }
+            if (healthy) {
+                listener.getLogger().println("Reusing " + environment);
+                return environment;
+            }
+            listener.getLogger().println(environment + " is not healthy; destroying it");
+            discard(environment);
+        }
+
+        List<String> scripts = new ArrayList<>();
+        List<String> parameters = new ArrayList<>();
+        if (infraConfig.getScriptConfigs() != null) {
+            for (JenkinsScriptConfig scriptConfig : infraConfig.getScriptConfigs()) {
+                scripts.add(scriptConfig.getFile());
+                parameters.add(scriptConfig.getParameters());
+            }
+        }
+        environment = create(key, job, infraConfig.getName(), nodeName, nodeRoot.child(DIRECTORY).getRemote(),
+                scripts, parameters, build);
+        listener.getLogger().println("Creating " + environment
+                + (key == null ? "; it is not reused since the provisioner repository is not pinned" : ""));
+        try {
+            directory(source, environment).act(new EnvironmentScripts(EnvironmentScripts.CREATE, source.getRemote(),
+                    scripts, parameters, listener));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            discard(environment);
+            throw e;
+        }
+        return environment;
+    }
+
+    /**
+     * Returns the variables the provisioner scripts exported from an environment.
+     *
+     * @param source      any file on the node of the environment
+     * @param environment leased environment
+     * @return the variables of {@code environment.properties} in the environment directory
+     * @throws IOException if the variables cannot be read
+     * @throws InterruptedException if interrupted
+     */
+    public static Map<String, String> variables(FilePath source, PooledEnvironment environment)
+            throws IOException, InterruptedException {
+        return directory(source, environment).act(new EnvironmentScripts.Outputs());
+    }
+
+    private static FilePath directory(FilePath source, PooledEnvironment environment) {
+        return new FilePath(source.getChannel(), environment.getDirectory());
+    }
+
+    /**
+     * Lease the most recently used idle environment of the given job with the given key on the given node.
+     *
+     * @param key   key of the environment, {@code null} never matches
+     * @param job   full name of the job of the build
+     * @param node  name of the node
+     * @param build id of the build taking the lease
+     * @return the leased environment, or {@code null} if there is none
+     */
+    synchronized PooledEnvironment acquire(String key, String job, String node, String build) {
+        if (key == null) {
+            return null;
+        }
+        PooledEnvironment best = null;
+        for (PooledEnvironment environment : environments) {
+            if (environment.isIdle() && key.equals(environment.getKey()) && job.equals(environment.getJob())
+                    && node.equals(environment.getNode())
+                    && (best == null || environment.getLastUsed() > best.getLastUsed())) {
+                best = environment;
+            }
+        }
+        if (best != null) {
+            best.lease(build);
+            save();
+        }
+        return best;
+    }
+
+    /**
+     * Add a new environment, leased by the given build, before its scripts create it.
+     *
+     * @param key         key of the environment, {@code null} if it cannot be reused
+     * @param job         full name of the job whose builds may lease the environment
+     * @param provisioner name of the provisioner
+     * @param node        name of the node
+     * @param root        directory holding the environments on the node
+     * @param scripts     script files, relative to the provisioner directory
+     * @param parameters  input parameters text of each script
+     * @param build       id of the build taking the lease
+     * @return the leased environment
+     */
+    synchronized PooledEnvironment create(String key, String job, String provisioner, String node, String root,
+                                          List<String> scripts, List<String> parameters, String build) {
+        String id = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        PooledEnvironment environment = new PooledEnvironment(id, key, job, provisioner, node, root + '/' + id,
+                scripts, parameters);
+        environment.lease(build);
+        environments.add(environment);
+        save();
+        return environment;
+    }
+
+    /**
+     * Return an environment to the pool, and destroy the environments that exceed the pool limits.
+     * An environment that cannot be reused is destroyed right away.
+     *
+     * @param id id of the environment
+     */
+    public void release(String id) {
+        List<PooledEnvironment> destroyed = new ArrayList<>();
+        synchronized (this) {
+            for (PooledEnvironment environment : environments) {
+                if (environment.getId().equals(id) && environment.getLeasedBy() != null) {
+                    environment.release();
+                    if (environment.getKey() == null) {
+                        environment.retire();
+                        destroyed.add(environment);
+                    }
+                }
+            }
+            destroyed.addAll(expired());
+            save();
+        }
+        destroyLater(destroyed);
+    }
+
+    /**
+     * Return every environment leased by a build to the pool, for builds that ended without
+     * releasing their leases.
+     *
+     * @param build id of the build
+     */
+    public void releaseAll(String build) {
+        List<String> leased = new ArrayList<>();
+        synchronized (this) {
+            for (PooledEnvironment environment : environments) {
+                if (build.equals(environment.getLeasedBy())) {
+                    leased.add(environment.getId());
+                }
+            }
+        }
+        for (String id : leased) {
+            release(id);
+        }
+    }
+
+    /**
+     * Destroy a leased environment that is broken, instead of returning it to the pool.
+     *
+     * @param environment environment to destroy
+     */
+    void discard(PooledEnvironment environment) {
+        synchronized (this) {
+            environment.release();
+            environment.retire();
+            save();
+        }
+        destroyLater(Collections.singletonList(environment));
+    }
+
+    /**
+     * Destroy the idle environments that exceed the idle time or the pool size, and the retired
+     * environments that could not be destroyed before.
+     */
+    public void evict() {
+        List<PooledEnvironment> destroyed;
+        synchronized (this) {
+            destroyed = expired();
+            if (!destroyed.isEmpty()) {
+                save();
+            }
+        }
+        destroyLater(destroyed);
+    }
+
+    /**
+     * @return all environments of the pool, leased and idle
+     */
+    public synchronized List<PooledEnvironment> getEnvironments() {
+        return new ArrayList<>(environments);
+    }
+
+    /**
+     * Select the idle environments to destroy and retire them, so that they are no longer leased,
+     * together with the retired environments whose destruction is not in progress.
+     */
+    private List<PooledEnvironment> expired() {
+        long now = System.currentTimeMillis();
+        List<PooledEnvironment> idle = new ArrayList<>();
+        List<PooledEnvironment> expired = new ArrayList<>();
+        for (PooledEnvironment environment : environments) {
+            if (environment.isRetired()) {
+                if (environment.getLeasedBy() == null && !environment.isDestroying()) {
+                    expired.add(environment);
+                }
+                continue;
+            }
+            if (!environment.isIdle()) {
+                continue;
+            }
+            if (now - environment.getLastUsed() > TimeUnit.MINUTES.toMillis(IDLE_MINUTES)) {
+                expired.add(environment);
+            } else {
+                idle.add(environment);
+            }
+        }
+        idle.sort(Comparator.comparingLong(PooledEnvironment::getLastUsed).reversed());
+        for (int i = MAX_SIZE; i < idle.size(); i++) {
+            expired.add(idle.get(i));
+        }
+        for (PooledEnvironment environment : expired) {
+            environment.retire();
+        }
+        return expired;
+    }
+
+    private void destroyLater(List<PooledEnvironment> destroyed) {
+        for (PooledEnvironment environment : destroyed) {
+            EXECUTOR.submit(() -> destroy(environment));
+        }
+    }
+
+    /**
+     * Destroy a retired environment on its node. An environment whose node is offline, or whose
+     * destruction fails, stays retired and is destroyed by a later eviction; one whose node no
+     * longer exists is dropped.
+     */
+    private void destroy(PooledEnvironment environment) {
+        VirtualChannel channel = channel(environment.getNode());
+        if (channel == null) {
+            synchronized (this) {
+                if (node(environment.getNode()) == null) {
+                    LOGGER.log(Level.WARNING, "Dropping {0}: node {1} no longer exists",
+                            new Object[]{environment, environment.getNode()});
+                    environments.remove(environment);
+                    save();
+                } else {
+                    environment.setDestroying(false);
+                }
+            }
+            return;
+        }
+        try {
+            LOGGER.log(Level.INFO, "Destroying {0}", environment);
+            boolean destroyed = new FilePath(channel, environment.getDirectory()).act(new EnvironmentScripts(
+                    EnvironmentScripts.DESTROY, null, environment.getScripts(), environment.getParameters(),
+                    new LogTaskListener(LOGGER, Level.INFO)));
+            if (!destroyed) {
+                LOGGER.log(Level.WARNING, "Provisioner scripts failed to destroy {0}; "
+                        + "its resources may need to be cleaned up by hand", environment);
+            }
+            synchronized (this) {
+                environments.remove(environment);
+                save();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Cannot destroy " + environment + "; retrying later", e);
+            synchronized (this) {
+                environment.setDestroying(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                environment.setDestroying(false);
+            }
+        }
+    }
+
+    private static Node node(String name) {
+        Jenkins jenkins = Jenkins.getInstance();
+        return name.isEmpty() ? jenkins : jenkins.getNode(name);
+    }
+
+    private static VirtualChannel channel(String name) {
+        Node node = node(name);
+        Computer computer = node == null ? null : node.toComputer();
+        return computer == null ? null : computer.getChannel();
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot save the TestGrid environment pool to " + file, e);
+        }
+    }
+}
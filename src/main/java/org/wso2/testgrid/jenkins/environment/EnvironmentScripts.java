@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.environment;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.wso2.testgrid.jenkins.util.ScriptParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the SHELL scripts of a provisioner against an environment directory, on the node holding it.
+ *
+ * Every script is run as {@code sh <file> <action>} from the copy of the provisioner in the
+ * {@code provisioner} directory of the environment, with its input parameters and
+ * {@code TESTGRID_ENVIRONMENT_DIR} in its environment:
+ * <ul>
+ *     <li>{@code create} copies the provisioner and runs the scripts in order;</li>
+ *     <li>{@code check} runs the scripts in order, and the environment is healthy if all of them
+ *     exit with 0;</li>
+ *     <li>{@code destroy} runs the scripts in reverse order and deletes the environment directory.</li>
+ * </ul>
+ * A script may write {@code key=value} lines to {@code environment.properties} in the environment
+ * directory, which the builds leasing the environment see as environment variables.
+ */
+final class EnvironmentScripts extends MasterToSlaveFileCallable<Boolean> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String CREATE = "create";
+    static final String CHECK = "check";
+    static final String DESTROY = "destroy";
+
+    static final String ENVIRONMENT_DIR = "TESTGRID_ENVIRONMENT_DIR";
+    static final String PROVISIONER_DIRECTORY = "provisioner";
+    static final String OUTPUTS = "environment.properties";
+
+    /**
+     * Timeout of a single script, in minutes.
+     */
+    private static final long TIMEOUT = Long.getLong(EnvironmentScripts.class.getName() + ".timeoutMinutes", 60);
+
+    private final String action;
+    private final String source;
+    private final List<String> scripts;
+    private final List<String> parameters;
+    private final TaskListener listener;
+
+    /**
+     * @param action     {@link #CREATE}, {@link #CHECK} or {@link #DESTROY}
+     * @param source     directory of the provisioner checkout to copy on {@link #CREATE}
+     * @param scripts    script files, relative to the provisioner directory
+     * @param parameters input parameters text of each script
+     * @param listener   listener to report the script output to
+     */
+    EnvironmentScripts(String action, String source, List<String> scripts, List<String> parameters,
+                       TaskListener listener) {
+        this.action = action;
+        this.source = source;
+        this.scripts = scripts;
+        this.parameters = parameters;
+        this.listener = listener;
+    }
+
+    @Override
+    public Boolean invoke(File environment, VirtualChannel channel) throws IOException, InterruptedException {
+        File provisioner = new File(environment, PROVISIONER_DIRECTORY);
+        switch (action) {
+            case CREATE:
+                if (!provisioner.isDirectory() && !provisioner.mkdirs()) {
+                    throw new IOException("Cannot create " + provisioner);
+                }
+                new FilePath(new File(source)).copyRecursiveTo("**/*", ".git/**", new FilePath(provisioner));
+                for (int i = 0; i < scripts.size(); i++) {
+                    if (run(environment, provisioner, i) != 0) {
+                        throw new IOException("Provisioner script " + scripts.get(i) + " failed to create "
+                                + environment.getName());
+                    }
+                }
+                return true;
+            case CHECK:
+                if (!provisioner.isDirectory()) {
+                    return false;
+                }
+                for (int i = 0; i < scripts.size(); i++) {
+                    if (run(environment, provisioner, i) != 0) {
+                        return false;
+                    }
+                }
+                return true;
+            case DESTROY:
+                boolean destroyed = true;
+                if (provisioner.isDirectory()) {
+                    for (int i = scripts.size() - 1; i >= 0; i--) {
+                        if (run(environment, provisioner, i) != 0) {
+                            listener.getLogger().println("Provisioner script " + scripts.get(i)
+                                    + " failed to destroy " + environment.getName());
+                            destroyed = false;
+                        }
+                    }
+                }
+                Util.deleteRecursive(environment);
+                return destroyed;
+            default:
+                throw new IllegalArgumentException("Unknown action " + action);
+        }
+    }
+
+    private int run(File environment, File provisioner, int script) throws IOException, InterruptedException {
+        Map<String, String> env = new HashMap<>(ScriptParameters.parse(parameters.get(script)));
+        env.put(ENVIRONMENT_DIR, environment.getAbsolutePath());
+        return new Launcher.LocalLauncher(listener).launch()
+                .cmds("sh", scripts.get(script), action)
+                .envs(env)
+                .pwd(provisioner)
+                .stdout(listener)
+                .start()
+                .joinWithTimeout(TIMEOUT, TimeUnit.MINUTES, listener);
+    }
+
+    /**
+     * Reads the outputs the scripts wrote to {@link #OUTPUTS}.
+     */
+    static final class Outputs extends MasterToSlaveFileCallable<Map<String, String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Map<String, String> invoke(File environment, VirtualChannel channel) throws IOException {
+            File outputs = new File(environment, OUTPUTS);
+            if (!outputs.isFile()) {
+                return new HashMap<>();
+            }
+            return new HashMap<>(ScriptParameters.parse(
+                    new String(Files.readAllBytes(outputs.toPath()), StandardCharsets.UTF_8)));
+        }
+    }
+}
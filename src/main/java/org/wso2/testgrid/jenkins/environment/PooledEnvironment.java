@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An environment created by a provisioner of the TestGrid configuration, held by the
+ * {@link EnvironmentPool} between the builds that lease it.
+ *
+ * The environment lives on the node it was created on, in its own directory that holds a copy
+ * of the provisioner scripts, so that the environment can be checked and destroyed without the
+ * workspace it was created from.
+ */
+public final class PooledEnvironment {
+
+    private final String id;
+    private final String key;
+    /**
+     * Full name of the job whose builds may lease the environment.
+     */
+    private final String job;
+    private final String provisioner;
+    private final String node;
+    private final String directory;
+    private final ArrayList<String> scripts;
+    private final ArrayList<String> parameters;
+    private final long created;
+    private long lastUsed;
+    private int leases;
+    /**
+     * Build holding the lease, or {@code null} if the environment is idle.
+     */
+    private String leasedBy;
+    /**
+     * Whether the environment was given up: it is never leased again, and destroying it is
+     * retried until it succeeds.
+     */
+    private boolean retired;
+    private transient boolean destroying;
+
+    PooledEnvironment(String id, String key, String job, String provisioner, String node, String directory,
+                      List<String> scripts, List<String> parameters) {
+        this.id = id;
+        this.key = key;
+        this.job = job;
+        this.provisioner = provisioner;
+        this.node = node;
+        this.directory = directory;
+        this.scripts = new ArrayList<>(scripts);
+        this.parameters = new ArrayList<>(parameters);
+        this.created = System.currentTimeMillis();
+        this.lastUsed = created;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return hash of the provisioner commit, scripts and parameters the environment was created
+     * with, or {@code null} if it cannot be reused
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public String getProvisioner() {
+        return provisioner;
+    }
+
+    /**
+     * @return name of the node holding the environment, empty for the controller
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @return directory of the environment on its node
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return script files, relative to the provisioner directory, in the order they create the environment
+     */
+    public List<String> getScripts() {
+        return Collections.unmodifiableList(scripts);
+    }
+
+    /**
+     * @return input parameters text of each script
+     */
+    public List<String> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return when the environment was last leased or released
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return number of times the environment was leased
+     */
+    public int getLeases() {
+        return leases;
+    }
+
+    public String getLeasedBy() {
+        return leasedBy;
+    }
+
+    boolean isIdle() {
+        return leasedBy == null && !retired;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    boolean isDestroying() {
+        return destroying;
+    }
+
+    void lease(String build) {
+        leasedBy = build;
+        leases++;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    void release() {
+        leasedBy = null;
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Give up the environment and mark it as being destroyed.
+     */
+    void retire() {
+        retired = true;
+        destroying = true;
+    }
+
+    void setDestroying(boolean destroying) {
+        this.destroying = destroying;
+    }
+
+    @Override
+    public String toString() {
+        return provisioner + " environment " + id;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import java.io.Serializable;
+import java.util.regex.Pattern;
+
+/**
+ * A repository revision to be checked out into a directory relative to the workspace.
+ */
+public final class GitCheckout implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[/\\\\:\\p{Cntrl}]");
+    private static final Pattern DOTS = Pattern.compile("\\.*");
+
+    private final String url;
+    private final String revision;
+    private final String directory;
+
+    public GitCheckout(String url, String revision, String directory) {
+        this.url = url;
+        this.revision = revision;
+        this.directory = directory;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getRevision() {
+        return revision;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Turn a configured name into the name of a single directory, so that a name such as
+     * {@code ../x} cannot place a checkout outside of its parent directory.
+     *
+     * @param name configured name
+     * @return the name with path separators and control characters replaced by {@code _},
+     *         and never empty, {@code .} or {@code ..}
+     */
+    public static String directoryName(String name) {
+        String directory = SEPARATORS.matcher(name == null ? "" : name.trim()).replaceAll("_");
+        if (DOTS.matcher(directory).matches()) {
+            return "_" + directory;
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the git command line client with a timeout.
+ *
+ * Standard output is collected in a temporary file, so that a chatty command can neither block on a
+ * full pipe nor keep the caller waiting after the timeout has expired. Standard error is drained on
+ * its own thread and only reported when the command fails, so that warnings never end up in the
+ * output callers parse.
+ */
+public final class GitCommand {
+
+    /**
+     * Default timeout of a git command, in seconds.
+     */
+    public static final long DEFAULT_TIMEOUT = Long.getLong(GitCommand.class.getName() + ".timeout", 600);
+
+    private static final String GIT = System.getProperty(GitCommand.class.getName() + ".executable", "git");
+
+    /**
+     * Amount of standard error kept for the error message, in bytes.
+     */
+    private static final int MAX_ERROR = 64 * 1024;
+
+    private GitCommand() {
+    }
+
+    /**
+     * Run git with the default timeout.
+     *
+     * @see #run(File, long, String...)
+     */
+    public static String run(File workingDirectory, String... arguments) throws IOException, InterruptedException {
+        return run(workingDirectory, DEFAULT_TIMEOUT, arguments);
+    }
+
+    /**
+     * Run git and return its output.
+     *
+     * @param workingDirectory directory to run git in, {@code null} for the current directory
+     * @param timeout          timeout in seconds
+     * @param arguments        git arguments
+     * @return standard output of the command
+     * @throws IOException if git cannot be started, exits with an error, or does not complete in time
+     * @throws InterruptedException if interrupted while waiting for git
+     */
+    public static String run(File workingDirectory, long timeout, String... arguments)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(arguments.length + 1);
+        command.add(GIT);
+        command.addAll(Arrays.asList(arguments));
+
+        File output = File.createTempFile("testgrid-git", ".log");
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command)
+                    .redirectOutput(output);
+            if (workingDirectory != null) {
+                builder.directory(workingDirectory);
+            }
+            //never wait for credentials on a terminal that is not there
+            builder.environment().put("GIT_TERMINAL_PROMPT", "0");
+            builder.environment().put("GIT_ASKPASS", "echo");
+
+            Process process = builder.start();
+            ErrorDrain error = new ErrorDrain(process.getErrorStream());
+            error.start();
+            try {
+                if (!process.waitFor(timeout, TimeUnit.SECONDS)) {
+                    throw new IOException("Timed out after " + timeout + " seconds: " + String.join(" ", command));
+                }
+            } finally {
+                process.destroy();
+            }
+            error.join(TimeUnit.SECONDS.toMillis(10));
+            if (process.exitValue() != 0) {
+                throw new IOException(String.join(" ", command) + " failed with exit code "
+                        + process.exitValue() + ": " + error.text().trim());
+            }
+            return new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    /**
+     * Reads the standard error of a command, keeping its beginning for the error message.
+     */
+    private static final class ErrorDrain extends Thread {
+
+        private final InputStream stream;
+        private final ByteArrayOutputStream kept = new ByteArrayOutputStream();
+
+        ErrorDrain(InputStream stream) {
+            super("TestGrid git stderr");
+            setDaemon(true);
+            this.stream = stream;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = stream) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    synchronized (kept) {
+                        kept.write(buffer, 0, Math.max(0, Math.min(read, MAX_ERROR - kept.size())));
+                    }
+                }
+            } catch (IOException e) {
+                // the process is gone; keep what was read
+            }
+        }
+
+        String text() {
+            synchronized (kept) {
+                return new String(kept.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
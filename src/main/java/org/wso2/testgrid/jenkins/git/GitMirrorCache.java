@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import hudson.Util;
+import org.wso2.testgrid.jenkins.util.ConfigDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of bare git mirrors on a node.
+ *
+ * Every repository URL gets one mirror under the cache root, which is cloned once and then
+ * brought up to date with an incremental fetch. Checkouts are local clones of the mirror, whose
+ * objects are hard linked where the file system allows it, so they never touch the remote.
+ *
+ * Each mirror is guarded by a lock that is held both within this JVM and, through a lock file,
+ * across the JVMs sharing the node. When the mirrors grow beyond the disk budget, the least
+ * recently used ones that are not in use are deleted.
+ */
+public final class GitMirrorCache {
+
+    private static final String MIRROR_SUFFIX = ".git";
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /**
+     * File inside a mirror whose modification time is the last use of the mirror, and whose
+     * content is the size of the mirror in bytes.
+     */
+    private static final String USAGE_FILE = "testgrid-usage";
+
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final File root;
+    private final long diskBudget;
+
+    /**
+     * @param root       directory holding the mirrors
+     * @param diskBudget maximum size of all mirrors in bytes
+     */
+    public GitMirrorCache(File root, long diskBudget) {
+        this.root = root;
+        this.diskBudget = diskBudget;
+    }
+
+    /**
+     * Bring the mirror of the given repository up to date, creating it if needed.
+     *
+     * @param url repository URL
+     * @param log stream to report progress to
+     * @return directory of the bare mirror
+     * @throws IOException if git fails
+     * @throws InterruptedException if interrupted
+     */
+    public File update(String url, PrintStream log) throws IOException, InterruptedException {
+        url = GitRemote.checkUrl(url);
+        String name = mirrorName(url);
+        File mirror = new File(root, name + MIRROR_SUFFIX);
+        try (RepositoryLock ignored = lock(name)) {
+            updateLocked(url, mirror, log);
+        }
+        evict(name, log);
+        return mirror;
+    }
+
+    /**
+     * Check out a revision of the given repository into a directory, using the mirror of the repository.
+     *
+     * @param url         repository URL
+     * @param revision    branch, tag or commit to check out; {@code null} for the default branch
+     * @param destination directory to check out into; an existing directory must be empty or a
+     *                    git checkout
+     * @param log         stream to report progress to
+     * @throws IOException if git fails, or the destination holds files that are not a git checkout
+     * @throws InterruptedException if interrupted
+     */
+    public void checkout(String url, String revision, File destination, PrintStream log)
+            throws IOException, InterruptedException {
+        url = GitRemote.checkUrl(url);
+        String normalized = GitRemote.checkRevision(GitRemote.normalizeRevision(revision));
+        String name = mirrorName(url);
+        File mirror = new File(root, name + MIRROR_SUFFIX);
+        try (RepositoryLock ignored = lock(name)) {
+            updateLocked(url, mirror, log);
+            String mirrorPath = mirror.getAbsolutePath();
+            if (new File(destination, ".git").isDirectory()) {
+                GitCommand.run(destination, "fetch", "--prune", "--tags", mirrorPath,
+                        "+refs/heads/*:refs/remotes/origin/*");
+            } else {
+                String[] files = destination.list();
+                if (files != null && files.length > 0) {
+                    throw new IOException(destination + " is not empty and not a git checkout;"
+                            + " check out into another directory");
+                }
+                File parent = destination.getAbsoluteFile().getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Could not create " + parent);
+                }
+                GitCommand.run(parent, "clone", "--no-checkout", "--", mirrorPath, destination.getAbsolutePath());
+                GitCommand.run(destination, "remote", "set-url", "--", "origin", url);
+            }
+            String commit = resolve(destination, normalized);
+            log.println("Checking out " + url + " " + commit + " into " + destination);
+            GitCommand.run(destination, "checkout", "--force", "--detach", commit);
+        }
+        evict(name, log);
+    }
+
+    /**
+     * List the paths that differ between two commits of the given repository, using its mirror.
+     * Renamed files are listed under both their old and their new path.
+     *
+     * @param url  repository URL
+     * @param from commit to compare from
+     * @param to   commit to compare to
+     * @param log  stream to report progress to
+     * @return the changed paths, relative to the root of the repository
+     * @throws IOException if git fails, for example because one of the commits no longer exists
+     * @throws InterruptedException if interrupted
+     */
+    public List<String> changedPaths(String url, String from, String to, PrintStream log)
+            throws IOException, InterruptedException {
+        url = GitRemote.checkUrl(url);
+        GitRemote.checkRevision(from);
+        GitRemote.checkRevision(to);
+        String name = mirrorName(url);
+        File mirror = new File(root, name + MIRROR_SUFFIX);
+        String output;
+        try (RepositoryLock ignored = lock(name)) {
+            updateLocked(url, mirror, log);
+            output = GitCommand.run(mirror, "diff", "--name-only", "--no-renames", "-z", from, to, "--");
+        }
+        evict(name, log);
+        List<String> paths = new ArrayList<>();
+        for (String path : output.split("\0")) {
+            if (!path.trim().isEmpty()) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Resolve a revision of a checkout to a commit, preferring the branch of that name in the mirror.
+     * The revision has been checked not to look like an option.
+     */
+    private static String resolve(File repository, String revision) throws IOException, InterruptedException {
+        try {
+            return GitCommand.run(repository, "rev-parse", "--verify", "--quiet",
+                    "refs/remotes/origin/" + revision + "^{commit}").trim();
+        } catch (IOException e) {
+            return GitCommand.run(repository, "rev-parse", "--verify", revision + "^{commit}").trim();
+        }
+    }
+
+    private void updateLocked(String url, File mirror, PrintStream log) throws IOException, InterruptedException {
+        if (new File(mirror, "HEAD").isFile()) {
+            log.println("Fetching " + url + " into mirror " + mirror.getName());
+            GitCommand.run(mirror, GitRemote.remote("fetch", "--prune", "--tags", "origin"));
+        } else {
+            log.println("Creating mirror " + mirror.getName() + " of " + url);
+            Util.deleteRecursive(mirror);
+            GitCommand.run(root, GitRemote.remote("clone", "--mirror", "--", url, mirror.getAbsolutePath()));
+        }
+        File usage = new File(mirror, USAGE_FILE);
+        Files.write(usage.toPath(), String.valueOf(sizeOf(mirror)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Delete the least recently used mirrors until the cache fits in the disk budget.
+     * Mirrors that are locked, and the mirror that was just used, are never deleted.
+     */
+    private void evict(String current, PrintStream log) throws IOException, InterruptedException {
+        File[] mirrors = root.listFiles(file -> file.isDirectory() && file.getName().endsWith(MIRROR_SUFFIX));
+        if (mirrors == null) {
+            return;
+        }
+        List<Usage> usages = new ArrayList<>(mirrors.length);
+        long total = 0;
+        for (File mirror : mirrors) {
+            Usage usage = Usage.of(mirror);
+            usages.add(usage);
+            total += usage.size;
+        }
+        if (total <= diskBudget) {
+            return;
+        }
+        usages.sort(Comparator.comparingLong(usage -> usage.lastUsed));
+        for (Usage usage : usages) {
+            if (total <= diskBudget) {
+                break;
+            }
+            String name = usage.mirror.getName();
+            name = name.substring(0, name.length() - MIRROR_SUFFIX.length());
+            if (name.equals(current)) {
+                continue;
+            }
+            try (RepositoryLock lock = tryLock(name)) {
+                if (lock == null) {
+                    continue;
+                }
+                log.println("Evicting mirror " + usage.mirror.getName() + " to stay within the disk budget");
+                Util.deleteRecursive(usage.mirror);
+                total -= usage.size;
+            }
+        }
+    }
+
+    /**
+     * Name of the mirror directory of a repository: the repository name followed by a hash of its URL.
+     */
+    static String mirrorName(String url) {
+        String base = repositoryName(url).replaceAll("[^A-Za-z0-9._-]", "_");
+        return base + "-" + new ConfigDigest().add(trimSlashes(url)).hex().substring(0, 16);
+    }
+
+    /**
+     * Name of a repository, taken from the last segment of its URL without the {@code .git} suffix.
+     *
+     * @param url repository URL
+     * @return the repository name, usable as a directory name
+     */
+    public static String repositoryName(String url) {
+        String trimmed = trimSlashes(url);
+        String base = trimmed.substring(Math.max(trimmed.lastIndexOf('/'), trimmed.lastIndexOf(':')) + 1);
+        if (base.endsWith(MIRROR_SUFFIX)) {
+            base = base.substring(0, base.length() - MIRROR_SUFFIX.length());
+        }
+        return GitCheckout.directoryName(base);
+    }
+
+    private static String trimSlashes(String url) {
+        String trimmed = url.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Size of the objects of a mirror, as counted by git from its pack index and loose object
+     * directories, so that the whole mirror is not walked on every use.
+     */
+    static long sizeOf(File mirror) throws IOException, InterruptedException {
+        long kilobytes = 0;
+        for (String line : GitCommand.run(mirror, "count-objects", "-v").split("\n")) {
+            int separator = line.indexOf(':');
+            if (separator < 0) {
+                continue;
+            }
+            String key = line.substring(0, separator).trim();
+            if ("size".equals(key) || "size-pack".equals(key) || "size-garbage".equals(key)) {
+                try {
+                    kilobytes += Long.parseLong(line.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    // not a count, ignore
+                }
+            }
+        }
+        return kilobytes * 1024;
+    }
+
+    private RepositoryLock lock(String name) throws IOException {
+        ReentrantLock lock = LOCKS.computeIfAbsent(lockKey(name), key -> new ReentrantLock());
+        lock.lock();
+        try {
+            prepareRoot();
+            RandomAccessFile file = new RandomAccessFile(new File(root, name + LOCK_SUFFIX), "rw");
+            try {
+                return new RepositoryLock(lock, file, file.getChannel().lock());
+            } catch (IOException | RuntimeException e) {
+                file.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    private RepositoryLock tryLock(String name) throws IOException {
+        ReentrantLock lock = LOCKS.computeIfAbsent(lockKey(name), key -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            return null;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(new File(root, name + LOCK_SUFFIX), "rw");
+            FileLock fileLock = file.getChannel().tryLock();
+            if (fileLock != null) {
+                return new RepositoryLock(lock, file, fileLock);
+            }
+            file.close();
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                file.close();
+            }
+            lock.unlock();
+            throw e;
+        }
+        lock.unlock();
+        return null;
+    }
+
+    private String lockKey(String name) {
+        return new File(root, name).getAbsolutePath();
+    }
+
+    private void prepareRoot() throws IOException {
+        if (!root.isDirectory() && !root.mkdirs() && !root.isDirectory()) {
+            throw new IOException("Could not create " + root);
+        }
+    }
+
+    /**
+     * Lock on a single mirror, held within this JVM and across JVMs.
+     */
+    private static final class RepositoryLock implements AutoCloseable {
+
+        private final ReentrantLock lock;
+        private final RandomAccessFile file;
+        private final FileLock fileLock;
+
+        RepositoryLock(ReentrantLock lock, RandomAccessFile file, FileLock fileLock) {
+            this.lock = lock;
+            this.file = file;
+            this.fileLock = fileLock;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                fileLock.release();
+                file.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Size and last use of a mirror, as recorded in its usage file. Mirrors without a usage file,
+     * which are still being cloned, are counted when they are read, as far as git can count them.
+     */
+    private static final class Usage {
+
+        private final File mirror;
+        private final long size;
+        private final long lastUsed;
+
+        private Usage(File mirror, long size, long lastUsed) {
+            this.mirror = mirror;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        static Usage of(File mirror) throws IOException, InterruptedException {
+            File usage = new File(mirror, USAGE_FILE);
+            if (!usage.isFile()) {
+                long size;
+                try {
+                    size = sizeOf(mirror);
+                } catch (IOException e) {
+                    // not a repository yet, or being deleted
+                    size = 0;
+                }
+                return new Usage(mirror, size, mirror.lastModified());
+            }
+            long size;
+            try {
+                size = Long.parseLong(new String(Files.readAllBytes(usage.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (NumberFormatException e) {
+                size = sizeOf(mirror);
+            }
+            return new Usage(mirror, size, usage.lastModified());
+        }
+    }
+}
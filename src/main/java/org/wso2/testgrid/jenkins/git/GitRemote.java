@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import hudson.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the references of remote git repositories.
+ */
+public final class GitRemote {
+
+    private static final Pattern COMMIT = Pattern.compile("[0-9a-f]{40}");
+    private static final String HEADS = "refs/heads/";
+    private static final String TAGS = "refs/tags/";
+    private static final String PEELED = "^{}";
+    private static final Pattern SCHEME = Pattern.compile("([A-Za-z][A-Za-z0-9+.-]*)://.+");
+    private static final Pattern SCP = Pattern.compile("(?:[^@/\\s]+@)?[^@/:\\s]{2,}:[^\\s]*");
+    private static final List<String> TRANSPORTS = Arrays.asList("https", "http", "ssh", "git");
+    private static final String FILE = "file";
+
+    private GitRemote() {
+    }
+
+    /**
+     * List the references of a remote repository.
+     *
+     * @param url     repository URL
+     * @param timeout timeout in seconds
+     * @return commit of every reference, keyed by the full reference name
+     * @throws IOException if the repository cannot be read
+     * @throws InterruptedException if interrupted
+     */
+    public static Map<String, String> lsRemote(String url, long timeout) throws IOException, InterruptedException {
+        String output = GitCommand.run(null, timeout, remote("ls-remote", "--", checkUrl(url)));
+        Map<String, String> refs = new HashMap<>();
+        for (String line : output.split("\n")) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                refs.put(line.substring(tab + 1).trim(), line.substring(0, tab).trim());
+            }
+        }
+        return Collections.unmodifiableMap(refs);
+    }
+
+    /**
+     * Check that a URL names a remote repository that git may be pointed at. Only the https, http,
+     * ssh and git transports are accepted, so that a job configuration can neither pass options to git
+     * nor make the controller or an agent read local repositories. Local repositories are accepted
+     * when the {@code GitRemote.allowLocal} system property is set on the JVM running git.
+     *
+     * @param url repository URL
+     * @return the trimmed URL
+     * @throws IOException if the URL is not acceptable
+     */
+    public static String checkUrl(String url) throws IOException {
+        String trimmed = Util.fixEmptyAndTrim(url);
+        if (trimmed == null) {
+            throw new IOException("No repository URL");
+        }
+        if (trimmed.startsWith("-") || trimmed.contains("::")) {
+            throw new IOException("Not a repository URL: " + trimmed);
+        }
+        Matcher scheme = SCHEME.matcher(trimmed);
+        if (scheme.matches()) {
+            String transport = scheme.group(1).toLowerCase(Locale.ENGLISH);
+            if (TRANSPORTS.contains(transport) || (FILE.equals(transport) && allowLocal())) {
+                return trimmed;
+            }
+            throw new IOException("Repository URLs must use https, http, ssh or git: " + trimmed);
+        }
+        if (SCP.matcher(trimmed).matches()) {
+            return trimmed;
+        }
+        if (allowLocal() && new File(trimmed).isAbsolute()) {
+            return trimmed;
+        }
+        throw new IOException("Not a remote repository URL: " + trimmed);
+    }
+
+    /**
+     * Check that a revision cannot be taken for a git option.
+     *
+     * @param revision revision to pass to git
+     * @return the revision
+     * @throws IOException if the revision is not acceptable
+     */
+    public static String checkRevision(String revision) throws IOException {
+        if (revision == null || revision.isEmpty() || revision.startsWith("-")) {
+            throw new IOException("Not a revision: " + revision);
+        }
+        return revision;
+    }
+
+    /**
+     * Prefix the arguments of a git command that talks to a remote repository with the
+     * configuration that restricts it to the accepted transports.
+     *
+     * @param arguments git arguments
+     * @return the arguments to run git with
+     */
+    static String[] remote(String... arguments) {
+        List<String> command = new ArrayList<>(arguments.length + 10);
+        command.add("-c");
+        command.add("protocol.allow=never");
+        for (String transport : TRANSPORTS) {
+            command.add("-c");
+            command.add("protocol." + transport + ".allow=always");
+        }
+        if (allowLocal()) {
+            command.add("-c");
+            command.add("protocol." + FILE + ".allow=always");
+        }
+        command.addAll(Arrays.asList(arguments));
+        return command.toArray(new String[command.size()]);
+    }
+
+    private static boolean allowLocal() {
+        return Boolean.getBoolean(GitRemote.class.getName() + ".allowLocal");
+    }
+
+    /**
+     * Find the commit a revision refers to in the references of a repository.
+     *
+     * @param refs     references as returned by {@link #lsRemote(String, long)}
+     * @param revision branch, tag, full reference or commit
+     * @return the commit, or {@code null} if the revision does not exist
+     */
+    public static String resolve(Map<String, String> refs, String revision) {
+        String normalized = normalizeRevision(revision);
+        if (COMMIT.matcher(normalized).matches()) {
+            return normalized;
+        }
+        String commit = refs.get(normalized);
+        if (commit == null) {
+            commit = refs.get(HEADS + normalized);
+        }
+        if (commit == null) {
+            commit = refs.get(TAGS + normalized + PEELED);
+        }
+        if (commit == null) {
+            commit = refs.get(TAGS + normalized);
+        }
+        return commit;
+    }
+
+    /**
+     * Turn the branch notations used in the job configuration, such as {@code *}{@code /master}
+     * or {@code refs/heads/master}, into a plain revision name.
+     *
+     * @param revision revision as configured, may be {@code null}
+     * @return the revision name, {@code HEAD} if none is configured
+     */
+    public static String normalizeRevision(String revision) {
+        String normalized = Util.fixEmptyAndTrim(revision);
+        if (normalized == null) {
+            return "HEAD";
+        }
+        if (normalized.startsWith("*/")) {
+            normalized = normalized.substring(2);
+        }
+        if (normalized.startsWith(HEADS)) {
+            normalized = normalized.substring(HEADS.length());
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import hudson.model.InvisibleAction;
+import org.wso2.testgrid.jenkins.util.ConfigDigest;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the commit every repository branch of the TestGrid configuration resolved to when
+ * the build started, so that everything the build checks out comes from the same commits.
+ */
+public final class PinnedRevisionsAction extends InvisibleAction {
+
+    private final TreeMap<String, String> revisions;
+
+    public PinnedRevisionsAction(Map<String, String> revisions) {
+        this.revisions = new TreeMap<>(revisions);
+    }
+
+    /**
+     * Key of a repository branch.
+     *
+     * @param url      repository URL
+     * @param revision branch as configured
+     * @return the key
+     */
+    public static String key(String url, String revision) {
+        return url + '#' + GitRemote.normalizeRevision(revision);
+    }
+
+    /**
+     * Returns the commit the given branch was pinned to.
+     *
+     * @param url      repository URL
+     * @param revision branch as configured
+     * @return the commit, or {@code null} if the branch was not pinned
+     */
+    public String getRevision(String url, String revision) {
+        return revisions.get(key(url, revision));
+    }
+
+    /**
+     * Returns the commit the given branch was pinned to, or the branch itself if it was not pinned.
+     */
+    public String getRevisionOrBranch(String url, String revision) {
+        String commit = getRevision(url, revision);
+        return commit == null ? revision : commit;
+    }
+
+    /**
+     * @return commit of every pinned branch, keyed by {@link #key(String, String)}
+     */
+    public Map<String, String> getRevisions() {
+        return Collections.unmodifiableMap(revisions);
+    }
+
+    /**
+     * Returns a hash of all pinned commits. Builds with the same key check out identical sources,
+     * which makes it usable as a cache key for anything derived from them.
+     *
+     * @return the lower case hex encoded hash
+     */
+    public String getCacheKey() {
+        ConfigDigest digest = new ConfigDigest().add(revisions.size());
+        for (Map.Entry<String, String> revision : revisions.entrySet()) {
+            digest.add(revision.getKey()).add(revision.getValue());
+        }
+        return digest.hex();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Form validation of repository URL and branch fields against the remote repositories.
+ *
+ * Repositories are listed with {@code git ls-remote} on a small background pool, never on the
+ * request thread, and the listings are cached for a while and shared by every form. A request
+ * waits only briefly for a listing; if the repository is slow to answer, the field is reported
+ * as being checked and the cached result is used the next time it is validated.
+ */
+public final class RemoteValidation {
+
+    private static final String PREFIX = RemoteValidation.class.getName();
+
+    private static final int THREADS = Integer.getInteger(PREFIX + ".threads", 4);
+
+    /**
+     * Timeout of listing a repository, in seconds.
+     */
+    private static final long TIMEOUT = Long.getLong(PREFIX + ".timeout", 30);
+
+    /**
+     * Time a validation request waits for a listing, in milliseconds.
+     */
+    private static final long WAIT = Long.getLong(PREFIX + ".wait", 2000);
+
+    /**
+     * Time successful listings are reused, in seconds.
+     */
+    private static final long TTL = Long.getLong(PREFIX + ".ttl", 300);
+
+    /**
+     * Time failed listings are reused, in seconds.
+     */
+    private static final long FAILURE_TTL = Long.getLong(PREFIX + ".failureTtl", 30);
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS,
+            new NamingThreadFactory(new DaemonThreadFactory(), "TestGrid remote validation"));
+
+    private static final Cache<String, Listing> LISTINGS = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(PREFIX + ".cacheSize", 500))
+            .expireAfterWrite(TTL, TimeUnit.SECONDS)
+            .build();
+
+    private RemoteValidation() {
+    }
+
+    /**
+     * Validate a repository URL: it must be given and, if the user may configure the item,
+     * the repository must be readable.
+     *
+     * @param item item the form belongs to, may be {@code null}
+     * @param url  URL entered by the user
+     * @return the validation result
+     */
+    public static FormValidation checkUrl(Item item, String url) {
+        String trimmed = Util.fixEmptyAndTrim(url);
+        if (trimmed == null) {
+            return FormValidation.error("* Required Parameter..");
+        }
+        try {
+            GitRemote.checkUrl(trimmed);
+        } catch (IOException e) {
+            return FormValidation.error(e.getMessage());
+        }
+        if (!canCheckRemote(item)) {
+            return FormValidation.ok();
+        }
+        try {
+            listing(trimmed).get(WAIT, TimeUnit.MILLISECONDS);
+            return FormValidation.ok();
+        } catch (ExecutionException e) {
+            return FormValidation.error("Cannot read the repository: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            return FormValidation.ok("Checking the repository...");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FormValidation.ok();
+        }
+    }
+
+    /**
+     * Validate a branch: it must be given and, if the repository can be read, exist in the repository.
+     * Problems reading the repository are reported by {@link #checkUrl(Item, String)} instead.
+     *
+     * @param item   item the form belongs to, may be {@code null}
+     * @param url    URL of the repository
+     * @param branch branch entered by the user
+     * @return the validation result
+     */
+    public static FormValidation checkBranch(Item item, String url, String branch) {
+        if (Util.fixEmptyAndTrim(branch) == null) {
+            return FormValidation.error("* Required Parameter..");
+        }
+        String trimmed = Util.fixEmptyAndTrim(url);
+        if (!isRemote(trimmed) || !canCheckRemote(item)) {
+            return FormValidation.ok();
+        }
+        try {
+            Map<String, String> refs = listing(trimmed).get(WAIT, TimeUnit.MILLISECONDS);
+            if (GitRemote.resolve(refs, branch) == null) {
+                return FormValidation.error("Branch " + GitRemote.normalizeRevision(branch)
+                        + " does not exist in " + trimmed);
+            }
+            return FormValidation.ok();
+        } catch (ExecutionException | TimeoutException e) {
+            return FormValidation.ok();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FormValidation.ok();
+        }
+    }
+
+    /**
+     * Start listing a repository in the background, if the user may configure the item and the
+     * listing is not cached yet.
+     *
+     * @param item item the form belongs to, may be {@code null}
+     * @param url  URL entered by the user
+     */
+    public static void prefetch(Item item, String url) {
+        String trimmed = Util.fixEmptyAndTrim(url);
+        if (!isRemote(trimmed) || !canCheckRemote(item)) {
+            return;
+        }
+        try {
+            listing(trimmed);
+        } catch (ExecutionException e) {
+            // reported when the field is validated
+        }
+    }
+
+    /**
+     * Whether a URL may be listed at all; URLs that are not are reported by
+     * {@link #checkUrl(Item, String)}.
+     */
+    private static boolean isRemote(String url) {
+        try {
+            GitRemote.checkUrl(url);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Remote repositories are only contacted on behalf of users who may configure the item, so
+     * that the forms cannot be used to probe arbitrary hosts.
+     */
+    private static boolean canCheckRemote(Item item) {
+        if (item != null) {
+            return item.hasPermission(Item.CONFIGURE);
+        }
+        return Jenkins.getInstance().hasPermission(Jenkins.ADMINISTER);
+    }
+
+    /**
+     * Returns the listing of a repository, starting it in the background if it is not cached.
+     */
+    private static Future<Map<String, String>> listing(String url) throws ExecutionException {
+        Listing listing = LISTINGS.get(url, () -> new Listing(url));
+        if (listing.isStaleFailure()) {
+            LISTINGS.asMap().remove(url, listing);
+            listing = LISTINGS.get(url, () -> new Listing(url));
+        }
+        return listing.refs;
+    }
+
+    /**
+     * A listing of a repository, running or completed.
+     */
+    private static final class Listing {
+
+        private final Future<Map<String, String>> refs;
+        private final long started = System.currentTimeMillis();
+
+        Listing(String url) {
+            this.refs = EXECUTOR.submit(() -> GitRemote.lsRemote(url, TIMEOUT));
+        }
+
+        /**
+         * Whether the listing failed long enough ago to be retried.
+         */
+        boolean isStaleFailure() {
+            if (!refs.isDone() || System.currentTimeMillis() - started < TimeUnit.SECONDS.toMillis(FAILURE_TTL)) {
+                return false;
+            }
+            try {
+                refs.get();
+                return false;
+            } catch (ExecutionException | InterruptedException e) {
+                return true;
+            }
+        }
+    }
+}
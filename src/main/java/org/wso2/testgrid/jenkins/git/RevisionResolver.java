@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves repository branches to commits in one batched pass: every repository is listed once
+ * with {@code git ls-remote}, and different repositories are listed in parallel. The whole pass
+ * is bounded by a short timeout, so that a slow or unreachable remote delays the start of a build
+ * by that much at most; its branches are then left unpinned.
+ */
+public final class RevisionResolver {
+
+    private static final int THREADS = Integer.getInteger(RevisionResolver.class.getName() + ".threads", 8);
+
+    /**
+     * Timeout of listing all repositories, in seconds.
+     */
+    static final long TIMEOUT = Long.getLong(RevisionResolver.class.getName() + ".timeout", 15);
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS,
+            new NamingThreadFactory(new DaemonThreadFactory(), "TestGrid revision resolver"));
+
+    private RevisionResolver() {
+    }
+
+    /**
+     * Resolve the given branches. Branches that cannot be resolved are reported and left out of the result.
+     *
+     * @param checkouts repository branches to resolve
+     * @param log       stream to report failures to
+     * @return commit of every resolved branch, keyed by {@link PinnedRevisionsAction#key(String, String)}
+     * @throws InterruptedException if interrupted
+     */
+    public static Map<String, String> resolve(Collection<GitCheckout> checkouts, PrintStream log)
+            throws InterruptedException {
+        Map<String, Set<String>> branchesByUrl = new LinkedHashMap<>();
+        for (GitCheckout checkout : checkouts) {
+            if (checkout.getUrl() == null || checkout.getUrl().trim().isEmpty()) {
+                continue;
+            }
+            branchesByUrl.computeIfAbsent(checkout.getUrl(), url -> new LinkedHashSet<>())
+                    .add(checkout.getRevision());
+        }
+
+        Map<String, Future<Map<String, String>>> listings = new LinkedHashMap<>();
+        for (String url : branchesByUrl.keySet()) {
+            listings.put(url, EXECUTOR.submit(() -> GitRemote.lsRemote(url, TIMEOUT)));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        Map<String, String> revisions = new HashMap<>();
+        for (Map.Entry<String, Future<Map<String, String>>> listing : listings.entrySet()) {
+            String url = listing.getKey();
+            Map<String, String> refs;
+            try {
+                refs = listing.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                log.println("Could not list " + url + ": " + e.getCause().getMessage());
+                continue;
+            } catch (TimeoutException e) {
+                listing.getValue().cancel(true);
+                log.println("Timed out listing " + url);
+                continue;
+            }
+            for (String branch : branchesByUrl.get(url)) {
+                String commit = GitRemote.resolve(refs, branch);
+                if (commit == null) {
+                    log.println("Branch " + GitRemote.normalizeRevision(branch) + " does not exist in " + url);
+                } else {
+                    revisions.put(PinnedRevisionsAction.key(url, branch), commit);
+                }
+            }
+        }
+        return revisions;
+    }
+}
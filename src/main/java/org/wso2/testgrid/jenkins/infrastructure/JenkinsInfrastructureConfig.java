@@ -19,11 +19,18 @@
 package org.wso2.testgrid.jenkins.infrastructure;
 
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
+import hudson.model.Item;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.wso2.testgrid.jenkins.TestgridGlobalConfiguration;
+import org.wso2.testgrid.jenkins.git.GitCheckout;
+import org.wso2.testgrid.jenkins.git.RemoteValidation;
+import org.wso2.testgrid.jenkins.util.StringPool;
 
 import java.util.List;
 
@@ -41,17 +48,36 @@ public class JenkinsInfrastructureConfig implements Describable<JenkinsInfrastru
     private String gitBranch;
     private String description;
     private List<JenkinsScriptConfig> scriptConfigs;
+    private String template;
+    /**
+     * Result of {@link #resolve()}, valid while the template generation it was computed in lasts.
+     */
+    private transient volatile Resolved resolved;
 
     @DataBoundConstructor
     public JenkinsInfrastructureConfig(String gitURL, String gitBranch, String description, String name,
                                        List<JenkinsScriptConfig> scriptConfigs) {
-        this.gitURL = gitURL;
-        this.gitBranch = gitBranch;
-        this.description = description;
-        this.name = name;
+        this.gitURL = StringPool.intern(gitURL);
+        this.gitBranch = StringPool.intern(gitBranch);
+        this.description = StringPool.intern(description);
+        this.name = StringPool.intern(name);
         this.scriptConfigs = scriptConfigs;
     }
 
+    /**
+     * Pool the strings read from config.xml.
+     *
+     * @return this object
+     */
+    protected Object readResolve() {
+        name = StringPool.intern(name);
+        gitURL = StringPool.intern(gitURL);
+        gitBranch = StringPool.intern(gitBranch);
+        description = StringPool.intern(description);
+        template = StringPool.intern(template);
+        return this;
+    }
+
     @Override
     public Descriptor<JenkinsInfrastructureConfig> getDescriptor() {
         return DESCRIPTOR;
@@ -77,6 +103,79 @@ public class JenkinsInfrastructureConfig implements Describable<JenkinsInfrastru
         return description;
     }
 
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @param template name of the provisioner template in the global configuration this
+     *                 provisioner is based on; the fields set here override the template
+     */
+    @DataBoundSetter
+    public void setTemplate(String template) {
+        this.template = StringPool.intern(Util.fixEmptyAndTrim(template));
+        this.resolved = null;
+    }
+
+    /**
+     * Returns the effective provisioner: this one if it is not based on a template, otherwise the
+     * template with the fields set here applied. Without overrides, the shared template instance
+     * itself is returned.
+     *
+     * @return the effective provisioner
+     */
+    public JenkinsInfrastructureConfig resolve() {
+        if (template == null) {
+            return this;
+        }
+        long generation = TestgridGlobalConfiguration.getGeneration();
+        Resolved cached = resolved;
+        if (cached != null && cached.generation == generation) {
+            return cached.config;
+        }
+        JenkinsInfrastructureConfig config = resolveTemplate();
+        resolved = new Resolved(generation, config);
+        return config;
+    }
+
+    private JenkinsInfrastructureConfig resolveTemplate() {
+        TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+        JenkinsInfrastructureConfig base = globalConfiguration == null ? null
+                : globalConfiguration.getProvisionerTemplate(template);
+        if (base == null) {
+            return this;
+        }
+        String resolvedName = Util.fixEmpty(name);
+        String resolvedDescription = Util.fixEmpty(description);
+        String resolvedGitURL = Util.fixEmpty(gitURL);
+        String resolvedGitBranch = Util.fixEmpty(gitBranch);
+        boolean hasScripts = scriptConfigs != null && !scriptConfigs.isEmpty();
+        if (resolvedName == null && resolvedDescription == null && resolvedGitURL == null
+                && resolvedGitBranch == null && !hasScripts) {
+            return base;
+        }
+        return new JenkinsInfrastructureConfig(
+                resolvedGitURL != null ? resolvedGitURL : base.gitURL,
+                resolvedGitBranch != null ? resolvedGitBranch : base.gitBranch,
+                resolvedDescription != null ? resolvedDescription : base.description,
+                resolvedName != null ? resolvedName : base.name,
+                hasScripts ? scriptConfigs : base.scriptConfigs);
+    }
+
+    /**
+     * Effective provisioner together with the template generation it was resolved in.
+     */
+    private static final class Resolved {
+
+        private final long generation;
+        private final JenkinsInfrastructureConfig config;
+
+        Resolved(long generation, JenkinsInfrastructureConfig config) {
+            this.generation = generation;
+            this.config = config;
+        }
+    }
+
     /**
      * Static inner class that extends the {@link Descriptor} class to provide the
      * metadata for the {@link JenkinsInfrastructureConfig} UI describable class.
@@ -89,28 +188,28 @@ public class JenkinsInfrastructureConfig implements Describable<JenkinsInfrastru
          * @param value
          * @return
          */
-        public FormValidation doCheckName(@QueryParameter String value){
+        public FormValidation checkName(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
+            }else if(!GitCheckout.directoryName(value).equals(value.trim())){
+                return FormValidation.error("The name is checked out as a directory; it must not contain /, \\ or :"
+                        + " and must not be . or ..");
             }else{
                 return FormValidation.ok();
             }
         }
 
-        public FormValidation doCheckGitURL(@QueryParameter String value){
-            if(value.isEmpty()){
-                return FormValidation.error("* Required Parameter..");
-            }else{
-                return FormValidation.ok();
-            }
+        public FormValidation checkGitURL(Item item, String value){
+            return RemoteValidation.checkUrl(item, value);
         }
 
-        public FormValidation doCheckGitBranch(@QueryParameter String value){
-            if(value.isEmpty()){
-                return FormValidation.error("* Required Parameter..");
-            }else{
-                return FormValidation.ok();
-            }
+        public FormValidation checkGitBranch(Item item, String value, String gitURL){
+            return RemoteValidation.checkBranch(item, gitURL, value);
+        }
+
+        public ListBoxModel doFillTemplateItems() {
+            TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+            return globalConfiguration == null ? new ListBoxModel() : globalConfiguration.getProvisionerTemplateItems();
         }
 
         @Override
@@ -23,10 +23,14 @@ import hudson.model.Descriptor;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.QueryParameter;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.jenkins.util.ScriptParameters;
+import org.wso2.testgrid.jenkins.util.ScriptTypes;
+import org.wso2.testgrid.jenkins.util.StringPool;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * Defines the variables in the Infrastructure script config section of the UI
@@ -41,55 +45,110 @@ public class JenkinsScriptConfig implements Describable<JenkinsScriptConfig>{
     private String file;
     private String description;
     private String parameters;
-    private String iacProvider;
+    private Script.ScriptType iacProvider;
+    private transient volatile Map<String, String> parsedParameters;
 
     @DataBoundConstructor
     public JenkinsScriptConfig(String name, String file, String description, String iacProvider, String parameters) {
-        this.name = name;
-        this.file = file;
-        this.description = description;
+        this(name, file, description, ScriptTypes.valueOf(iacProvider), parameters);
+    }
+
+    private JenkinsScriptConfig(String name, String file, String description, Script.ScriptType iacProvider,
+                                String parameters) {
+        this.name = StringPool.intern(name);
+        this.file = StringPool.intern(file);
+        this.description = StringPool.intern(description);
         this.iacProvider = iacProvider;
-        this.parameters = parameters;
+        this.parameters = StringPool.intern(parameters);
+    }
+
+    /**
+     * Pool the strings read from config.xml.
+     *
+     * @return an equal script configuration holding pooled strings
+     */
+    protected Object readResolve() {
+        return new JenkinsScriptConfig(name, file, description, iacProvider, parameters);
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @deprecated the configuration is set through the constructor; kept for binary compatibility
+     */
+    @Deprecated
     public void setName(String name) {
-        this.name = name;
+        this.name = StringPool.intern(name);
     }
 
     public String getFile() {
         return file;
     }
 
+    /**
+     * @deprecated the configuration is set through the constructor; kept for binary compatibility
+     */
+    @Deprecated
     public void setFile(String file) {
-        this.file = file;
+        this.file = StringPool.intern(file);
     }
 
     public String getDescription() {
         return description;
     }
 
+    /**
+     * @deprecated the configuration is set through the constructor; kept for binary compatibility
+     */
+    @Deprecated
     public void setDescription(String description) {
-        this.description = description;
+        this.description = StringPool.intern(description);
     }
 
     public String getParameters() {
         return parameters;
     }
 
+    /**
+     * @deprecated the configuration is set through the constructor; kept for binary compatibility
+     */
+    @Deprecated
     public void setParameters(String parameters) {
-        this.parameters = parameters;
+        this.parameters = StringPool.intern(parameters);
+        this.parsedParameters = null;
+    }
+
+    /**
+     * Returns the input parameters parsed into key value pairs. The result is parsed once
+     * and cached until the parameters change.
+     *
+     * @return an unmodifiable map of the input parameters
+     */
+    public Map<String, String> getParsedParameters() {
+        Map<String, String> parsed = parsedParameters;
+        if (parsed == null) {
+            parsed = ScriptParameters.parse(parameters);
+            parsedParameters = parsed;
+        }
+        return parsed;
     }
 
     public String getIacProvider() {
-        return iacProvider;
+        return iacProvider == null ? null : iacProvider.name();
     }
 
+    /**
+     * @deprecated the configuration is set through the constructor; kept for binary compatibility
+     */
+    @Deprecated
     public void setIacProvider(String iacProvider) {
-        this.iacProvider = iacProvider;
+        this.iacProvider = ScriptTypes.valueOf(iacProvider);
+    }
+
+    public Script.ScriptType getIacProviderType() {
+        return iacProvider;
     }
 
     @Override
@@ -121,7 +180,7 @@ public class JenkinsScriptConfig implements Describable<JenkinsScriptConfig>{
          * @param value name  value entered by the user
          * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.
          */
-        public FormValidation doCheckName(@QueryParameter String value){
+        public FormValidation checkName(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -135,7 +194,7 @@ public class JenkinsScriptConfig implements Describable<JenkinsScriptConfig>{
          *
          * @param value file name  value entered by the user
          * @return the a positive {@link FormValidation} result if it is not empty, else a negative result.         */
-        public FormValidation doCheckFile(@QueryParameter String value){
+        public FormValidation checkFile(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.mail;
+
+import hudson.model.Result;
+import hudson.model.Run;
+import org.wso2.testgrid.jenkins.results.CellResult;
+import org.wso2.testgrid.jenkins.results.TestgridResultsAction;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * What a report mail tells about one completed build, captured when the build completes so that
+ * the mail can be rendered later without holding on to the build.
+ */
+final class BuildReport {
+
+    private final String name;
+    private final String url;
+    private final String result;
+    private final Map<String, CellResult> cells;
+
+    BuildReport(String name, String url, String result, Map<String, CellResult> cells) {
+        this.name = name;
+        this.url = url;
+        this.result = result;
+        this.cells = cells;
+    }
+
+    static BuildReport of(Run<?, ?> run, String rootUrl) {
+        Result result = run.getResult();
+        TestgridResultsAction results = run.getAction(TestgridResultsAction.class);
+        return new BuildReport(run.getFullDisplayName(), rootUrl == null ? null : rootUrl + run.getUrl(),
+                result == null ? "UNKNOWN" : result.toString(),
+                results == null ? Collections.<String, CellResult>emptyMap() : results.getCells());
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getResult() {
+        return result;
+    }
+
+    Map<String, CellResult> getCells() {
+        return cells;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.mail;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+import org.wso2.testgrid.jenkins.TestgridGlobalConfiguration;
+import org.wso2.testgrid.jenkins.TestgridJobProperty;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Hands the report of every completed TestGrid build with email recipients to the {@link ReportMailer}.
+ */
+@Extension
+public class ReportMailListener extends RunListener<Run<?, ?>> {
+
+    @Override
+    public void onCompleted(Run<?, ?> run, @Nonnull TaskListener listener) {
+        TestgridJobProperty testgridJobProperty = run.getParent().getProperty(TestgridJobProperty.class);
+        if (testgridJobProperty == null || ReportMailer.normalize(testgridJobProperty.getEmailToList()).isEmpty()) {
+            return;
+        }
+        TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+        long window = globalConfiguration == null ? 0 : globalConfiguration.getMailBatchWindowSeconds();
+        ReportMailer.get().submit(testgridJobProperty.getEmailToList(),
+                BuildReport.of(run, Jenkins.getInstance().getRootUrl()), window);
+    }
+}
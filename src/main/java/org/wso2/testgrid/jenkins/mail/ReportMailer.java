@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.mail;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.wso2.testgrid.jenkins.results.CellResult;
+
+import javax.mail.MessagingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the TestGrid report mails without holding the threads of the builds.
+ *
+ * Reports are collected per recipient list. The reports that arrive within the batch window of
+ * the first one are rendered into one summary mail per recipient list, so a matrix sends one mail
+ * per build, or per window for several builds, never one per cell. Mails are sent by a small pool
+ * of workers behind a bounded queue; a failed mail is retried with exponential backoff.
+ */
+public final class ReportMailer {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportMailer.class.getName());
+
+    private static final int WORKERS = Integer.getInteger(ReportMailer.class.getName() + ".workers", 2);
+    private static final int QUEUE_SIZE = Integer.getInteger(ReportMailer.class.getName() + ".queueSize", 100);
+    private static final int MAX_ATTEMPTS = Integer.getInteger(ReportMailer.class.getName() + ".maxAttempts", 5);
+    private static final long BACKOFF_SECONDS = Long.getLong(ReportMailer.class.getName() + ".backoffSeconds", 30);
+    private static final long MAX_BACKOFF_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+    private static final int MAX_LISTED_FAILURES = 20;
+
+    private static final ReportMailer INSTANCE = new ReportMailer(new SmtpTransport());
+
+    private final MailTransport transport;
+    private final long backoffSeconds;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor workers;
+    /**
+     * Reports waiting for the batch window of their recipient list to close.
+     */
+    private final Map<String, List<BuildReport>> pending = new HashMap<>();
+
+    ReportMailer(MailTransport transport) {
+        this(transport, BACKOFF_SECONDS);
+    }
+
+    /**
+     * @param transport      transport delivering the mails
+     * @param backoffSeconds delay before the first retry of a failed mail, doubled for every further retry
+     */
+    ReportMailer(MailTransport transport, long backoffSeconds) {
+        this.transport = transport;
+        this.backoffSeconds = backoffSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "TestGrid mail scheduler"));
+        this.workers = new ThreadPoolExecutor(WORKERS, WORKERS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), new NamingThreadFactory(new DaemonThreadFactory(),
+                "TestGrid mail"));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    public static ReportMailer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue the report of a build for the given recipients.
+     *
+     * @param recipients    comma or space separated addresses
+     * @param report        report of the build
+     * @param windowSeconds seconds to wait for more reports for the same recipients, {@code 0} to send at once
+     */
+    void submit(String recipients, BuildReport report, long windowSeconds) {
+        String key = normalize(recipients);
+        if (key.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            List<BuildReport> reports = pending.get(key);
+            if (reports != null) {
+                reports.add(report);
+                return;
+            }
+            reports = new ArrayList<>();
+            reports.add(report);
+            pending.put(key, reports);
+        }
+        if (windowSeconds <= 0) {
+            flush(key);
+        } else {
+            scheduler.schedule(() -> flush(key), windowSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void flush(String recipients) {
+        List<BuildReport> reports;
+        synchronized (pending) {
+            reports = pending.remove(recipients);
+        }
+        if (reports != null && !reports.isEmpty()) {
+            send(new Mail(recipients, subject(reports), render(reports)), 1);
+        }
+    }
+
+    private void send(Mail mail, int attempt) {
+        try {
+            workers.execute(() -> {
+                try {
+                    transport.send(mail.recipients, mail.subject, mail.body);
+                } catch (MessagingException | RuntimeException e) {
+                    retry(mail, attempt, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "TestGrid mail queue is full; dropping the report to {0}", mail.recipients);
+        }
+    }
+
+    private void retry(Mail mail, int attempt, Exception failure) {
+        if (attempt >= MAX_ATTEMPTS) {
+            LOGGER.log(Level.WARNING, "Giving up sending the TestGrid report to " + mail.recipients + " after "
+                    + attempt + " attempts", failure);
+            return;
+        }
+        long delay = Math.min(MAX_BACKOFF_SECONDS, backoffSeconds << (attempt - 1));
+        LOGGER.log(Level.FINE, "Cannot send the TestGrid report to " + mail.recipients + "; retrying in "
+                + delay + "s", failure);
+        scheduler.schedule(() -> send(mail, attempt + 1), delay, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the recipient list in a canonical form, so that lists naming the same addresses share a batch.
+     */
+    static String normalize(String recipients) {
+        if (recipients == null) {
+            return "";
+        }
+        TreeSet<String> addresses = new TreeSet<>();
+        for (String address : Arrays.asList(recipients.trim().split("[,;\\s]+"))) {
+            if (!address.isEmpty()) {
+                addresses.add(address);
+            }
+        }
+        return String.join(", ", addresses);
+    }
+
+    static String subject(List<BuildReport> reports) {
+        if (reports.size() == 1) {
+            BuildReport report = reports.get(0);
+            return "TestGrid " + report.getName() + ": " + report.getResult();
+        }
+        int failed = 0;
+        for (BuildReport report : reports) {
+            if (!"SUCCESS".equals(report.getResult())) {
+                failed++;
+            }
+        }
+        return "TestGrid: " + reports.size() + " builds, " + failed + " not successful";
+    }
+
+    static String render(List<BuildReport> reports) {
+        StringBuilder body = new StringBuilder();
+        for (BuildReport report : reports) {
+            body.append(report.getName()).append(": ").append(report.getResult()).append('\n');
+            if (report.getUrl() != null) {
+                body.append(report.getUrl()).append('\n');
+            }
+            for (Map.Entry<String, CellResult> cell : report.getCells().entrySet()) {
+                CellResult result = cell.getValue();
+                body.append("  ").append(cell.getKey()).append(": ")
+                        .append(result.getPassed()).append(" passed, ")
+                        .append(result.getFailed()).append(" failed, ")
+                        .append(result.getSkipped()).append(" skipped, ")
+                        .append(result.getDurationString()).append('\n');
+                List<String> failures = result.getFailures();
+                int listed = Math.min(failures.size(), MAX_LISTED_FAILURES);
+                for (int i = 0; i < listed; i++) {
+                    body.append("    ").append(failures.get(i)).append('\n');
+                }
+                if (result.getFailed() > listed) {
+                    body.append("    ... and ").append(result.getFailed() - listed).append(" more\n");
+                }
+            }
+            body.append('\n');
+        }
+        return body.toString();
+    }
+
+    private static final class Mail {
+
+        private final String recipients;
+        private final String subject;
+        private final String body;
+
+        Mail(String recipients, String subject, String body) {
+            this.recipients = recipients;
+            this.subject = subject;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.mail;
+
+import hudson.tasks.Mailer;
+import hudson.util.Secret;
+import jenkins.model.JenkinsLocationConfiguration;
+import org.wso2.testgrid.jenkins.TestgridGlobalConfiguration;
+
+import javax.mail.Authenticator;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * Sends mails through the SMTP server of the global TestGrid configuration, or through the
+ * server of the Jenkins mailer if none is configured there.
+ */
+final class SmtpTransport implements MailTransport {
+
+    private static final String TIMEOUT_MILLIS = "30000";
+
+    @Override
+    public void send(String recipients, String subject, String body) throws MessagingException {
+        TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+        Session session;
+        String from;
+        if (globalConfiguration != null && globalConfiguration.getSmtpHost() != null) {
+            session = session(globalConfiguration);
+            from = globalConfiguration.getMailFrom();
+        } else {
+            session = Mailer.descriptor().createSession();
+            from = null;
+        }
+        if (from == null) {
+            JenkinsLocationConfiguration location = JenkinsLocationConfiguration.get();
+            from = location == null ? null : location.getAdminAddress();
+        }
+
+        MimeMessage message = new MimeMessage(session);
+        if (from != null) {
+            message.setFrom(new InternetAddress(from));
+        }
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipients));
+        message.setSubject(subject, "UTF-8");
+        message.setText(body, "UTF-8");
+        message.setSentDate(new Date());
+        Transport.send(message);
+    }
+
+    private static Session session(TestgridGlobalConfiguration globalConfiguration) {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", globalConfiguration.getSmtpHost());
+        properties.put("mail.smtp.port", String.valueOf(globalConfiguration.getSmtpPort()));
+        properties.put("mail.smtp.connectiontimeout", TIMEOUT_MILLIS);
+        properties.put("mail.smtp.timeout", TIMEOUT_MILLIS);
+        if (globalConfiguration.isSmtpStartTls()) {
+            properties.put("mail.smtp.starttls.enable", "true");
+        }
+        String username = globalConfiguration.getSmtpUsername();
+        if (username == null) {
+            return Session.getInstance(properties);
+        }
+        properties.put("mail.smtp.auth", "true");
+        String password = Secret.toString(globalConfiguration.getSmtpPassword());
+        return Session.getInstance(properties, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(username, password);
+            }
+        });
+    }
+}
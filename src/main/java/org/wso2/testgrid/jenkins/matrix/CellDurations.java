@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import hudson.model.Job;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Recorded durations of the matrix cells of a job, kept in {@code testgrid-durations.xml} in the
+ * job directory.
+ *
+ * Every successful cell updates an exponentially weighted moving average of its duration, both
+ * for the cell itself and for its scenario on its provisioner, so that a new deployment pattern
+ * starts out with the duration the scenario takes on that provisioner elsewhere. Cells without
+ * either are expected to take as long as the average cell of the job.
+ */
+public final class CellDurations extends JobXmlStore {
+
+    static final String FILE = "testgrid-durations.xml";
+
+    /**
+     * Weight of the latest duration in the moving average, in percent.
+     */
+    private static final int WEIGHT_PERCENT = Integer.getInteger(CellDurations.class.getName() + ".weightPercent", 30);
+
+    private static final Map<Job<?, ?>, CellDurations> DURATIONS = new WeakHashMap<>();
+
+    /**
+     * Average duration in milliseconds, keyed by {@link MatrixCell#getKey()}.
+     */
+    private TreeMap<String, Long> cells = new TreeMap<>();
+    /**
+     * Average duration in milliseconds, keyed by the cell key without the deployment pattern.
+     */
+    private TreeMap<String, Long> scenarios = new TreeMap<>();
+
+    /**
+     * Returns the durations of a job, loading them on first use.
+     *
+     * @param job job to get the durations of
+     * @return the durations of the job
+     */
+    public static CellDurations of(Job<?, ?> job) {
+        return of(DURATIONS, job, FILE, CellDurations.class, CellDurations::new);
+    }
+
+    protected Object readResolve() {
+        if (cells == null) {
+            cells = new TreeMap<>();
+        }
+        if (scenarios == null) {
+            scenarios = new TreeMap<>();
+        }
+        return this;
+    }
+
+    /**
+     * Record the duration of a successful cell.
+     *
+     * @param cell     cell that completed
+     * @param duration duration of the cell in milliseconds
+     */
+    public synchronized void record(MatrixCell cell, long duration) {
+        average(cells, cell.getKey(), duration);
+        average(scenarios, scenarioKey(cell), duration);
+        scheduleSave();
+    }
+
+    /**
+     * Returns the expected duration of a cell.
+     *
+     * @param cell cell to estimate
+     * @return the duration in milliseconds, or {@code -1} if neither the cell nor its scenario
+     * on its provisioner has run before
+     */
+    public synchronized long estimate(MatrixCell cell) {
+        Long duration = cells.get(cell.getKey());
+        if (duration == null) {
+            duration = scenarios.get(scenarioKey(cell));
+        }
+        return duration == null ? -1 : duration;
+    }
+
+    /**
+     * @return whether no cell of the job has completed yet
+     */
+    public synchronized boolean isEmpty() {
+        return cells.isEmpty();
+    }
+
+    /**
+     * Order the cells of a matrix longest first. Starting the cells in this order whenever a
+     * branch becomes free keeps a long cell from starting last and running on its own, which
+     * keeps the total duration close to the shortest possible. Cells of equal duration, and all
+     * cells when none has run before, keep their order in the matrix.
+     *
+     * @param matrix matrix to order
+     * @return the cell indexes, longest first
+     */
+    public int[] longestFirst(TestgridMatrix matrix) {
+        int size = matrix.size();
+        long[] estimates = new long[size];
+        long total = 0;
+        int known = 0;
+        for (int i = 0; i < size; i++) {
+            estimates[i] = estimate(matrix.getCell(i));
+            if (estimates[i] >= 0) {
+                total += estimates[i];
+                known++;
+            }
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (known > 0) {
+            long average = total / known;
+            for (int i = 0; i < size; i++) {
+                if (estimates[i] < 0) {
+                    estimates[i] = average;
+                }
+            }
+            //a stable sort, so that cells of equal duration keep their order
+            Arrays.sort(order, Comparator.comparingLong((Integer index) -> estimates[index]).reversed());
+        }
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = order[i];
+        }
+        return indexes;
+    }
+
+    private static void average(Map<String, Long> averages, String key, long duration) {
+        Long average = averages.get(key);
+        averages.put(key, average == null ? duration
+                : Math.round(average + (duration - average) * WEIGHT_PERCENT / 100.0));
+    }
+
+    private static String scenarioKey(MatrixCell cell) {
+        return MatrixCell.key(cell.getProvisioner(), null, cell.getScenario());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import hudson.model.Job;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Pass and fail history of the matrix cells of a job, kept in {@code testgrid-cell-history.xml}
+ * in the job directory.
+ *
+ * The latest outcomes of every cell are kept as a string of {@code P} and {@code F}, oldest
+ * first. The flakiness of a cell is the share of consecutive outcomes that differ: a cell that
+ * keeps passing or keeps failing scores 0, while one that alternates between the two scores close
+ * to 1. A cell that broke once and stayed broken only flips once, so it scores low as its history
+ * grows, and the flip of a failure that was fixed by the latest run is not counted at all. A cell
+ * is only considered flaky once it has run and failed often enough for its score to mean something.
+ */
+public final class CellHistory extends JobXmlStore {
+
+    static final String FILE = "testgrid-cell-history.xml";
+
+    /**
+     * Number of outcomes kept per cell.
+     */
+    private static final int WINDOW = Integer.getInteger(CellHistory.class.getName() + ".window", 20);
+
+    /**
+     * Flakiness, in percent, from which a cell is considered flaky.
+     */
+    private static final int FLAKY_PERCENT = Integer.getInteger(CellHistory.class.getName() + ".flakyPercent", 30);
+
+    /**
+     * Number of outcomes a cell needs before it can be considered flaky.
+     */
+    private static final int MIN_RUNS = Integer.getInteger(CellHistory.class.getName() + ".minRuns", 5);
+
+    /**
+     * Number of failures within the window a cell needs before it can be considered flaky.
+     */
+    private static final int MIN_FAILURES = Integer.getInteger(CellHistory.class.getName() + ".minFailures", 2);
+
+    private static final char PASSED = 'P';
+    private static final char FAILED = 'F';
+
+    private static final Map<Job<?, ?>, CellHistory> HISTORIES = new WeakHashMap<>();
+
+    /**
+     * Latest outcomes, keyed by {@link MatrixCell#getKey()}.
+     */
+    private TreeMap<String, String> outcomes = new TreeMap<>();
+
+    /**
+     * Returns the history of a job, loading it on first use.
+     *
+     * @param job job to get the history of
+     * @return the history of the job
+     */
+    public static CellHistory of(Job<?, ?> job) {
+        return of(HISTORIES, job, FILE, CellHistory.class, CellHistory::new);
+    }
+
+    protected Object readResolve() {
+        if (outcomes == null) {
+            outcomes = new TreeMap<>();
+        }
+        return this;
+    }
+
+    /**
+     * Record the outcome of an attempt of a cell.
+     *
+     * @param cell   cell that completed
+     * @param passed whether the cell passed
+     */
+    public synchronized void record(MatrixCell cell, boolean passed) {
+        String previous = outcomes.get(cell.getKey());
+        String latest = (previous == null ? "" : previous) + (passed ? PASSED : FAILED);
+        if (latest.length() > WINDOW) {
+            latest = latest.substring(latest.length() - WINDOW);
+        }
+        outcomes.put(cell.getKey(), latest);
+        scheduleSave();
+    }
+
+    /**
+     * Returns the flakiness of a cell.
+     *
+     * @param cell cell to score
+     * @return the share of consecutive outcomes of the cell that differ, between 0 and 1, leaving
+     * out a trailing fix; 0 if the cell has run less than twice
+     */
+    public synchronized double flakiness(MatrixCell cell) {
+        return flakiness(outcomes.get(cell.getKey()));
+    }
+
+    /**
+     * @param cell cell to check
+     * @return whether the cell has run and failed often enough, and its flakiness reaches the flaky threshold
+     */
+    public synchronized boolean isFlaky(MatrixCell cell) {
+        String history = outcomes.get(cell.getKey());
+        if (history == null || history.length() < MIN_RUNS) {
+            return false;
+        }
+        int failures = 0;
+        for (int i = 0; i < history.length(); i++) {
+            if (history.charAt(i) == FAILED) {
+                failures++;
+            }
+        }
+        return failures >= MIN_FAILURES && flakiness(history) * 100 >= FLAKY_PERCENT;
+    }
+
+    private static double flakiness(String history) {
+        if (history == null) {
+            return 0;
+        }
+        int length = history.length();
+        if (length >= 2 && history.charAt(length - 2) == FAILED && history.charAt(length - 1) == PASSED) {
+            // a failure the latest run fixed does not make the cell flaky
+            length--;
+        }
+        if (length < 2) {
+            return 0;
+        }
+        int flips = 0;
+        for (int i = 1; i < length; i++) {
+            if (history.charAt(i) != history.charAt(i - 1)) {
+                flips++;
+            }
+        }
+        return (double) flips / (length - 1);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * State of a job kept in an XML file of its own in the job directory.
+ *
+ * The state is loaded on first use and shared by all builds of the job. Changes are saved in the
+ * background, once for all the changes made within a few seconds, so that updating the state never
+ * waits for the disk. The file is looked up in the job directory whenever the state is saved, so
+ * the state follows the job when it is renamed or moved, and is not written once the job is deleted.
+ */
+abstract class JobXmlStore {
+
+    /**
+     * Seconds the state waits for more changes before it is saved.
+     */
+    private static final long SAVE_DELAY_SECONDS = 5;
+
+    private static final Logger LOGGER = Logger.getLogger(JobXmlStore.class.getName());
+
+    private transient WeakReference<Job<?, ?>> job;
+    private transient String fileName;
+    private transient boolean saveScheduled;
+
+    /**
+     * Returns the state of a job, loading it on first use.
+     *
+     * @param states   states loaded so far, keyed by their job
+     * @param job      job to get the state of
+     * @param fileName name of the file in the job directory
+     * @param type     type of the state
+     * @param empty    creates the state of a job without a file
+     * @return the state of the job
+     */
+    static <T extends JobXmlStore> T of(Map<Job<?, ?>, T> states, Job<?, ?> job, String fileName,
+                                        Class<T> type, Supplier<T> empty) {
+        synchronized (states) {
+            T state = states.get(job);
+            if (state == null) {
+                XmlFile file = file(job, fileName);
+                if (file.exists()) {
+                    try {
+                        state = type.cast(file.read());
+                    } catch (IOException | RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Cannot read " + file, e);
+                    }
+                }
+                if (state == null) {
+                    state = empty.get();
+                }
+                JobXmlStore store = state;
+                store.job = new WeakReference<>(job);
+                store.fileName = fileName;
+                states.put(job, state);
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Save the state in the background, unless a save is already scheduled. States that do not
+     * belong to a job are not saved.
+     */
+    protected final synchronized void scheduleSave() {
+        if (job == null || saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        Timer.get().schedule(this::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private synchronized void save() {
+        saveScheduled = false;
+        Job<?, ?> owner = job.get();
+        if (owner == null || !owner.getRootDir().isDirectory()) {
+            return;
+        }
+        XmlFile file = file(owner, fileName);
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot save " + file, e);
+        }
+    }
+
+    private static XmlFile file(Job<?, ?> job, String fileName) {
+        return new XmlFile(Jenkins.XSTREAM2, new File(job.getRootDir(), fileName));
+    }
+}
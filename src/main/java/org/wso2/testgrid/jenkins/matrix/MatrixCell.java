@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import java.io.Serializable;
+
+/**
+ * A single execution cell of the TestGrid matrix: one infrastructure provisioner,
+ * one deployment pattern and one scenario.
+ */
+public final class MatrixCell implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final char KEY_SEPARATOR = '/';
+
+    private final int index;
+    private final String provisioner;
+    private final String pattern;
+    private final String scenario;
+
+    MatrixCell(int index, String provisioner, String pattern, String scenario) {
+        this.index = index;
+        this.provisioner = provisioner;
+        this.pattern = pattern;
+        this.scenario = scenario;
+    }
+
+    /**
+     * @return position of this cell in the expanded matrix
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return name of the infrastructure provisioner, or {@code null} if the job has none
+     */
+    public String getProvisioner() {
+        return provisioner;
+    }
+
+    /**
+     * @return name of the deployment pattern, or {@code null} if the job has none
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return name of the scenario, or {@code null} if the job has none
+     */
+    public String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * Returns the key that identifies the infrastructure/deployment/scenario combination of this
+     * cell across builds, independent of its position in the matrix.
+     *
+     * @return key in the form {@code provisioner/pattern/scenario}
+     */
+    public String getKey() {
+        return key(provisioner, pattern, scenario);
+    }
+
+    /**
+     * Build the key of the given infrastructure/deployment/scenario combination.
+     *
+     * @see #getKey()
+     */
+    public static String key(String provisioner, String pattern, String scenario) {
+        return (provisioner == null ? "" : provisioner) + KEY_SEPARATOR
+                + (pattern == null ? "" : pattern) + KEY_SEPARATOR
+                + (scenario == null ? "" : scenario);
+    }
+
+    @Override
+    public String toString() {
+        return index + ":" + getKey();
+    }
+}
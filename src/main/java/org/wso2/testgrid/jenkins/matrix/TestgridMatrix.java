@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import org.wso2.testgrid.jenkins.TestgridJobProperty;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Flat, indexed list of the execution cells of a job: every combination of infrastructure
+ * provisioner, deployment pattern and scenario.
+ *
+ * The include and exclude parameters of the job do not remove cells: as in the TestGrid runtime,
+ * they select infrastructure parameter values, such as an operating system or a database, and are
+ * applied by the runtime within each cell from the generated YAML.
+ *
+ * Only the names of each dimension are held. The cells themselves are created on access, so the
+ * matrix stays small even for tens of thousands of combinations.
+ *
+ * As a {@link List} the matrix exposes each cell as a read-only map with the keys
+ * {@code index}, {@code provisioner}, {@code pattern}, {@code scenario} and {@code key},
+ * which is what pipelines see through the 'testgrid' variable.
+ */
+public final class TestgridMatrix extends AbstractList<Map<String, Object>> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] NONE = {null};
+
+    private final String[] provisioners;
+    private final String[] patterns;
+    private final String[] scenarios;
+    private final int size;
+
+    private TestgridMatrix(String[] provisioners, String[] patterns, String[] scenarios, int size) {
+        this.provisioners = provisioners;
+        this.patterns = patterns;
+        this.scenarios = scenarios;
+        this.size = size;
+    }
+
+    /**
+     * Expand the TestGrid configuration of a job into its execution cells.
+     *
+     * @param property job property holding the TestGrid configuration
+     * @return the expanded matrix
+     */
+    public static TestgridMatrix expand(TestgridJobProperty property) {
+        return expand(provisionerNames(property), patternNames(property), scenarioNames(property));
+    }
+
+    /**
+     * Expand the TestGrid configuration of a job into its execution cells, running only the given scenarios.
+     *
+     * @param property  job property holding the TestGrid configuration
+     * @param scenarios names of the scenarios to run, {@code null} to run all of them
+     * @return the expanded matrix, without cells if none of the scenarios of the job is selected
+     */
+    public static TestgridMatrix expand(TestgridJobProperty property, Collection<String> scenarios) {
+        if (scenarios == null) {
+            return expand(property);
+        }
+        List<String> scenarioNames = new ArrayList<>(scenarioNames(property));
+        boolean hasScenarios = !scenarioNames.isEmpty();
+        scenarioNames.retainAll(scenarios);
+        if (hasScenarios && scenarioNames.isEmpty()) {
+            return new TestgridMatrix(NONE, NONE, NONE, 0);
+        }
+        return expand(provisionerNames(property), patternNames(property), scenarioNames);
+    }
+
+    /**
+     * Expand the given dimensions into their execution cells.
+     * A dimension without entries does not multiply the matrix; its name is {@code null} in every cell.
+     *
+     * @param provisionerNames names of the infrastructure provisioners
+     * @param patternNames     names of the deployment patterns
+     * @param scenarioNames    names of the scenarios
+     * @return the expanded matrix
+     */
+    public static TestgridMatrix expand(List<String> provisionerNames, List<String> patternNames,
+                                        List<String> scenarioNames) {
+        if (provisionerNames.isEmpty() && patternNames.isEmpty() && scenarioNames.isEmpty()) {
+            return new TestgridMatrix(NONE, NONE, NONE, 0);
+        }
+        String[] provisioners = toArray(provisionerNames);
+        String[] patterns = toArray(patternNames);
+        String[] scenarios = toArray(scenarioNames);
+
+        long product = (long) provisioners.length * patterns.length * scenarios.length;
+        if (product > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("TestGrid matrix is too large: " + product + " cells");
+        }
+        return new TestgridMatrix(provisioners, patterns, scenarios, (int) product);
+    }
+
+    /**
+     * Returns the cell at the given position.
+     *
+     * @param index position of the cell
+     * @return the cell
+     */
+    public MatrixCell getCell(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int position = index;
+        int scenario = position % scenarios.length;
+        position /= scenarios.length;
+        int pattern = position % patterns.length;
+        int provisioner = position / patterns.length;
+        return new MatrixCell(index, provisioners[provisioner], patterns[pattern], scenarios[scenario]);
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        MatrixCell cell = getCell(index);
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("index", cell.getIndex());
+        values.put("provisioner", cell.getProvisioner());
+        values.put("pattern", cell.getPattern());
+        values.put("scenario", cell.getScenario());
+        values.put("key", cell.getKey());
+        return Collections.unmodifiableMap(values);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static String[] toArray(List<String> names) {
+        return names.isEmpty() ? NONE : names.toArray(new String[names.size()]);
+    }
+
+    private static List<String> provisionerNames(TestgridJobProperty property) {
+        List<JenkinsInfrastructureConfig> infrastructureConfigs = property.getResolvedInfrastructureConfigs();
+        if (infrastructureConfigs == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(infrastructureConfigs.size());
+        for (JenkinsInfrastructureConfig infraConfig : infrastructureConfigs) {
+            names.add(infraConfig.getName());
+        }
+        return names;
+    }
+
+    private static List<String> patternNames(TestgridJobProperty property) {
+        List<JenkinsDeploymentConfig> deploymentConfigs = property.getDeploymentConfigs();
+        if (deploymentConfigs == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (JenkinsDeploymentConfig deploymentConfig : deploymentConfigs) {
+            List<JenkinsDeploymentPatternConfig> patternConfigs =
+                    deploymentConfig.getResolvedDeploymentPatternConfigs();
+            if (patternConfigs == null) {
+                continue;
+            }
+            for (JenkinsDeploymentPatternConfig patternConfig : patternConfigs) {
+                names.add(patternConfig.getName());
+            }
+        }
+        return names;
+    }
+
+    private static List<String> scenarioNames(TestgridJobProperty property) {
+        List<JenkinsScenario> scenarioList = property.getScenarioList();
+        if (scenarioList == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(scenarioList.size());
+        for (JenkinsScenario scenario : scenarioList) {
+            names.add(scenario.getName());
+        }
+        return names;
+    }
+}
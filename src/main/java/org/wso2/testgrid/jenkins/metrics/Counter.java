@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, recorded without locking.
+ */
+public final class Counter extends Metric<LongAdder> {
+
+    Counter(String name, String help, String labelName) {
+        super(name, help, labelName);
+    }
+
+    public void inc() {
+        inc(null);
+    }
+
+    public void inc(String labelValue) {
+        recorder(labelValue).increment();
+    }
+
+    @Override
+    String getType() {
+        return "counter";
+    }
+
+    @Override
+    LongAdder newRecorder() {
+        return new LongAdder();
+    }
+
+    @Override
+    void write(StringBuilder out, String labels, LongAdder recorder) {
+        sample(out, getName(), labels, recorder.sum());
+    }
+}
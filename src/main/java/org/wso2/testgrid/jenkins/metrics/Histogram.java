@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of observed values over fixed buckets, recorded without locking.
+ */
+public final class Histogram extends Metric<Histogram.Buckets> {
+
+    private final double[] bounds;
+
+    /**
+     * @param bounds ascending upper bounds of the buckets, without the implicit {@code +Inf} bucket
+     */
+    Histogram(String name, String help, String labelName, double... bounds) {
+        super(name, help, labelName);
+        this.bounds = bounds.clone();
+    }
+
+    public void observe(double value) {
+        observe(null, value);
+    }
+
+    public void observe(String labelValue, double value) {
+        recorder(labelValue).observe(value);
+    }
+
+    /**
+     * Observe the seconds elapsed since the given {@link System#nanoTime()}.
+     */
+    public void observeSince(long startNanos) {
+        observeSince(null, startNanos);
+    }
+
+    public void observeSince(String labelValue, long startNanos) {
+        observe(labelValue, (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    String getType() {
+        return "histogram";
+    }
+
+    @Override
+    Buckets newRecorder() {
+        return new Buckets();
+    }
+
+    @Override
+    void write(StringBuilder out, String labels, Buckets recorder) {
+        String separator = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += recorder.counts[i].sum();
+            sample(out, getName() + "_bucket", separator + "le=\"" + format(bounds[i]) + "\"", cumulative);
+        }
+        cumulative += recorder.counts[bounds.length].sum();
+        sample(out, getName() + "_bucket", separator + "le=\"+Inf\"", cumulative);
+        sample(out, getName() + "_sum", labels, recorder.sum.sum());
+        sample(out, getName() + "_count", labels, cumulative);
+    }
+
+    /**
+     * Counts per bucket of one label value. The last bucket holds the values above every bound.
+     */
+    final class Buckets {
+
+        private final LongAdder[] counts;
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Buckets() {
+            counts = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        private void observe(double value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            counts[bucket].increment();
+            sum.add(value);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A named metric, optionally split by the value of one label, written in the Prometheus text format.
+ *
+ * @param <T> recorder holding the values of one label value
+ */
+public abstract class Metric<T> {
+
+    private static final String NO_LABEL = "";
+
+    private final String name;
+    private final String help;
+    private final String labelName;
+    private final ConcurrentMap<String, T> recorders = new ConcurrentHashMap<>();
+
+    Metric(String name, String help, String labelName) {
+        this.name = name;
+        this.help = help;
+        this.labelName = labelName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    abstract String getType();
+
+    abstract T newRecorder();
+
+    abstract void write(StringBuilder out, String labels, T recorder);
+
+    /**
+     * Returns the recorder of the given label value, creating it on first use. Once created,
+     * a recorder is found without locking.
+     */
+    T recorder(String labelValue) {
+        String key = labelValue == null ? NO_LABEL : labelValue;
+        T recorder = recorders.get(key);
+        if (recorder == null) {
+            T created = newRecorder();
+            recorder = recorders.putIfAbsent(key, created);
+            if (recorder == null) {
+                recorder = created;
+            }
+        }
+        return recorder;
+    }
+
+    /**
+     * Write the help, type and samples of this metric.
+     */
+    void write(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(getType()).append('\n');
+        for (Map.Entry<String, T> entry : recorders.entrySet()) {
+            String labels = labelName == null ? "" : labelName + "=\"" + escape(entry.getKey()) + "\"";
+            write(out, labels, entry.getValue());
+        }
+    }
+
+    static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                default:
+                    escaped.append(c);
+                    break;
+            }
+        }
+        return escaped.toString();
+    }
+}
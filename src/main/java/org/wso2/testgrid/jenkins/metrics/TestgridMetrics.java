@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Metrics of the time the plugin spends on its hot paths, exposed at {@code /testgrid/metrics}.
+ */
+public final class TestgridMetrics {
+
+    public static final String CLONE = "clone";
+    public static final String CELL = "cell";
+
+    /**
+     * Phases the pipeline can time with the {@code testgridPhase} step.
+     */
+    public static final Set<String> PIPELINE_PHASES = Collections.unmodifiableSet(new LinkedHashSet<>(
+            Arrays.asList("provision", "deploy", "scenario")));
+
+    private static final double[] SECONDS = {0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5};
+    private static final double[] PHASE_SECONDS = {1, 5, 15, 30, 60, 300, 900, 1800, 3600, 7200};
+    private static final double[] CHARACTERS = {1024, 4096, 16384, 65536, 262144, 1048576, 4194304};
+
+    public static final Histogram YAML_GENERATION_SECONDS = new Histogram("testgrid_yaml_generation_seconds",
+            "Time spent generating the TestGrid YAML of a job.", null, SECONDS);
+
+    public static final Histogram YAML_SIZE_CHARACTERS = new Histogram("testgrid_yaml_size_characters",
+            "Length of the generated TestGrid YAML, in characters.", null, CHARACTERS);
+
+    public static final Histogram VARIABLE_SECONDS = new Histogram("testgrid_variable_get_value_seconds",
+            "Time spent resolving the 'testgrid' pipeline variable.", null, SECONDS);
+
+    public static final Counter VALIDATIONS = new Counter("testgrid_validation_calls_total",
+            "Field validations performed, per descriptor.", "descriptor");
+
+    public static final Histogram FORM_VALIDATION_SECONDS = new Histogram("testgrid_form_validation_seconds",
+            "Time spent validating the TestGrid configuration form.", null, SECONDS);
+
+    public static final Histogram PHASE_DURATION_SECONDS = new Histogram("testgrid_phase_duration_seconds",
+            "Duration of the phases of TestGrid builds.", "phase", PHASE_SECONDS);
+
+    private static final List<Metric<?>> ALL = Collections.unmodifiableList(Arrays.<Metric<?>>asList(
+            YAML_GENERATION_SECONDS, YAML_SIZE_CHARACTERS, VARIABLE_SECONDS, VALIDATIONS, FORM_VALIDATION_SECONDS,
+            PHASE_DURATION_SECONDS));
+
+    private TestgridMetrics() {
+    }
+
+    /**
+     * Observe the duration of a phase that started at the given {@link System#currentTimeMillis()},
+     * which unlike {@link System#nanoTime()} survives a controller restart in the middle of the phase.
+     */
+    public static void phaseSince(String phase, long startMillis) {
+        PHASE_DURATION_SECONDS.observe(phase, Math.max(0, System.currentTimeMillis() - startMillis) / 1000.0);
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format.
+     *
+     * @return the metrics text
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Metric<?> metric : ALL) {
+            metric.write(out);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.wso2.testgrid.jenkins.TestgridJobProperty;
+import org.wso2.testgrid.jenkins.git.GitCheckout;
+import org.wso2.testgrid.jenkins.git.GitMirrorCache;
+import org.wso2.testgrid.jenkins.git.PinnedRevisionsAction;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pipeline step that checks out git repositories through the mirror cache of the node.
+ *
+ * <pre>
+ * testgridCheckout url: 'https://github.com/wso2/testgrid-scenarios.git', branch: 'master', dir: 'scenarios'
+ * testgridCheckout()   // every infrastructure, deployment and scenario repository of the job
+ * </pre>
+ *
+ * A URL is checked out into the directory named after the repository unless {@code dir} is given.
+ * Without a URL, the repositories of the job are checked out into
+ * {@code infrastructure/<name>}, {@code deployment/<name>} and {@code scenarios}.
+ * Branches that were pinned when the build started are checked out at the pinned commit.
+ */
+public class TestgridCheckoutStep extends Step {
+
+    /**
+     * Size of all mirrors on a node above which the least recently used ones are deleted.
+     */
+    public static final long DISK_BUDGET_MB =
+            Long.getLong(TestgridCheckoutStep.class.getName() + ".diskBudgetMB", 10240);
+
+    /**
+     * Directory of the mirror cache, in the root directory of each node.
+     */
+    public static final String CACHE_DIRECTORY = "testgrid-git-cache";
+
+    private String url;
+    private String branch;
+    private String dir;
+
+    @DataBoundConstructor
+    public TestgridCheckoutStep() {
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @DataBoundSetter
+    public void setUrl(String url) {
+        this.url = Util.fixEmptyAndTrim(url);
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    @DataBoundSetter
+    public void setBranch(String branch) {
+        this.branch = Util.fixEmptyAndTrim(branch);
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    @DataBoundSetter
+    public void setDir(String dir) {
+        this.dir = Util.fixEmptyAndTrim(dir);
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    /**
+     * Lists the checkouts the step performs in the given build.
+     */
+    List<GitCheckout> checkouts(Run<?, ?> run) {
+        if (url != null) {
+            PinnedRevisionsAction pins = run.getAction(PinnedRevisionsAction.class);
+            String revision = pins == null ? branch : pins.getRevisionOrBranch(url, branch);
+            String directory = dir == null ? GitMirrorCache.repositoryName(url) : dir;
+            return Collections.singletonList(new GitCheckout(url, revision, directory));
+        }
+        TestgridJobProperty property = run.getParent().getProperty(TestgridJobProperty.class);
+        if (property == null) {
+            throw new IllegalStateException("job " + run.getParent().getFullName()
+                    + " does not have a TestGrid configuration; specify the url to check out");
+        }
+        PinnedRevisionsAction pins = run.getAction(PinnedRevisionsAction.class);
+        String base = dir == null ? "" : dir + "/";
+        List<GitCheckout> checkouts = new ArrayList<>();
+        for (GitCheckout repository : property.getRepositories()) {
+            String revision = pins == null ? repository.getRevision()
+                    : pins.getRevisionOrBranch(repository.getUrl(), repository.getRevision());
+            checkouts.add(new GitCheckout(repository.getUrl(), revision, base + repository.getDirectory()));
+        }
+        return checkouts;
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TestgridCheckoutStep step;
+
+        Execution(TestgridCheckoutStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Void run() throws Exception {
+            FilePath workspace = getContext().get(FilePath.class);
+            TaskListener listener = getContext().get(TaskListener.class);
+            List<GitCheckout> checkouts = step.checkouts(getContext().get(Run.class));
+            long start = System.nanoTime();
+            workspace.act(new CheckoutCallable(cacheRoot(workspace), DISK_BUDGET_MB * 1024 * 1024, checkouts,
+                    listener));
+            TestgridMetrics.PHASE_DURATION_SECONDS.observeSince(TestgridMetrics.CLONE, start);
+            return null;
+        }
+
+        /**
+         * The cache lives in the root directory of the node, so that all workspaces on it share the mirrors.
+         */
+        private static String cacheRoot(FilePath workspace) {
+            Computer computer = workspace.toComputer();
+            Node node = computer == null ? null : computer.getNode();
+            FilePath root = node == null ? null : node.getRootPath();
+            if (root == null) {
+                root = workspace.getParent();
+            }
+            return root.child(CACHE_DIRECTORY).getRemote();
+        }
+    }
+
+    /**
+     * Performs the checkouts on the node that holds the workspace.
+     */
+    private static final class CheckoutCallable extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheRoot;
+        private final long diskBudget;
+        private final List<GitCheckout> checkouts;
+        private final TaskListener listener;
+
+        CheckoutCallable(String cacheRoot, long diskBudget, List<GitCheckout> checkouts, TaskListener listener) {
+            this.cacheRoot = cacheRoot;
+            this.diskBudget = diskBudget;
+            this.checkouts = checkouts;
+            this.listener = listener;
+        }
+
+        @Override
+        public Void invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            GitMirrorCache cache = new GitMirrorCache(new File(cacheRoot), diskBudget);
+            for (GitCheckout checkout : checkouts) {
+                cache.checkout(checkout.getUrl(), checkout.getRevision(),
+                        new File(workspace, checkout.getDirectory()), listener.getLogger());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Static inner class that extends the {@link StepDescriptor} class to provide the
+     * metadata for the {@link TestgridCheckoutStep}.
+     */
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "testgridCheckout";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Check out TestGrid repositories through the node git mirror cache";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(FilePath.class, Run.class, TaskListener.class);
+        }
+    }
+}
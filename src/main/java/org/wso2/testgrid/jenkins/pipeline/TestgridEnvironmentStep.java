@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.jenkins.TestgridJobProperty;
+import org.wso2.testgrid.jenkins.environment.EnvironmentPool;
+import org.wso2.testgrid.jenkins.environment.PooledEnvironment;
+import org.wso2.testgrid.jenkins.git.GitCheckout;
+import org.wso2.testgrid.jenkins.git.PinnedRevisionsAction;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Pipeline step that leases an environment of an infrastructure provisioner from the
+ * {@link EnvironmentPool} for its body, instead of provisioning a new one for every build.
+ *
+ * <pre>
+ * testgridCheckout()
+ * testgridEnvironment('local-stack') {
+ *     sh 'run-scenarios.sh $TESTGRID_ENVIRONMENT_DIR'
+ * }
+ * </pre>
+ *
+ * The provisioner is read from the {@code infrastructure/<name>} checkout of the workspace, and
+ * all its scripts must be SHELL scripts. The body sees {@code TESTGRID_ENVIRONMENT_ID},
+ * {@code TESTGRID_ENVIRONMENT_DIR}, {@code TESTGRID_ENVIRONMENT_REUSED} and the variables the
+ * scripts exported, and the environment returns to the pool when the body completes.
+ */
+public class TestgridEnvironmentStep extends Step {
+
+    static final String ENVIRONMENT_ID = "TESTGRID_ENVIRONMENT_ID";
+    static final String ENVIRONMENT_DIR = "TESTGRID_ENVIRONMENT_DIR";
+    static final String ENVIRONMENT_REUSED = "TESTGRID_ENVIRONMENT_REUSED";
+
+    private final String provisioner;
+    private String dir;
+
+    /**
+     * @param provisioner name of the infrastructure provisioner of the job
+     */
+    @DataBoundConstructor
+    public TestgridEnvironmentStep(String provisioner) {
+        this.provisioner = provisioner;
+    }
+
+    public String getProvisioner() {
+        return provisioner;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    /**
+     * @param dir workspace directory of the provisioner checkout, {@code infrastructure/<name>} by default
+     */
+    @DataBoundSetter
+    public void setDir(String dir) {
+        this.dir = Util.fixEmptyAndTrim(dir);
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static final class Execution extends StepExecution {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TestgridEnvironmentStep step;
+        private BodyExecution body;
+        private boolean stopped;
+        private transient volatile Future<?> task;
+
+        Execution(TestgridEnvironmentStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            Run<?, ?> run = getContext().get(Run.class);
+            FilePath workspace = getContext().get(FilePath.class);
+            TaskListener listener = getContext().get(TaskListener.class);
+            JenkinsInfrastructureConfig infraConfig = provisioner(run, step.provisioner);
+            PinnedRevisionsAction pins = run.getAction(PinnedRevisionsAction.class);
+            String commit = pins == null ? null : pins.getRevision(infraConfig.getGitURL(), infraConfig.getGitBranch());
+            FilePath source = workspace.child(step.dir == null
+                    ? "infrastructure/" + GitCheckout.directoryName(infraConfig.getName()) : step.dir);
+            if (!source.isDirectory()) {
+                throw new AbortException("Provisioner " + infraConfig.getName() + " is not checked out in "
+                        + source.getRemote() + "; run testgridCheckout first");
+            }
+            String job = run.getParent().getFullName();
+            String build = run.getExternalizableId();
+            task = EnvironmentPool.submit(() -> lease(infraConfig, commit, source, job, build, listener));
+            return false;
+        }
+
+        /**
+         * Lease the environment and start the body with it, on a thread of the pool.
+         */
+        private void lease(JenkinsInfrastructureConfig infraConfig, String commit, FilePath source, String job,
+                           String build, TaskListener listener) {
+            PooledEnvironment environment = null;
+            try {
+                environment = EnvironmentPool.get().lease(infraConfig, commit, source, job, build, listener);
+                startBody(source, environment);
+            } catch (Throwable t) {
+                if (environment != null) {
+                    EnvironmentPool.get().release(environment.getId());
+                }
+                synchronized (this) {
+                    if (!stopped) {
+                        getContext().onFailure(t);
+                    }
+                }
+            }
+        }
+
+        private synchronized void startBody(FilePath source, PooledEnvironment environment)
+                throws IOException, InterruptedException {
+            if (stopped) {
+                EnvironmentPool.get().release(environment.getId());
+                return;
+            }
+            Map<String, String> variables = EnvironmentPool.variables(source, environment);
+            variables.put(ENVIRONMENT_ID, environment.getId());
+            variables.put(ENVIRONMENT_DIR, environment.getDirectory());
+            variables.put(ENVIRONMENT_REUSED, String.valueOf(environment.getLeases() > 1));
+            body = getContext().newBodyInvoker()
+                    .withContext(EnvironmentExpander.merge(getContext().get(EnvironmentExpander.class),
+                            new LeaseEnvironment(variables)))
+                    .withCallback(new ReleaseCallback(environment.getId()))
+                    .start();
+        }
+
+        @Override
+        public synchronized void stop(@Nonnull Throwable cause) throws Exception {
+            if (body != null) {
+                body.cancel(cause);
+                return;
+            }
+            stopped = true;
+            Future<?> lease = task;
+            if (lease != null) {
+                lease.cancel(true);
+            }
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public synchronized void onResume() {
+            if (body == null && !stopped) {
+                stopped = true;
+                getContext().onFailure(new AbortException("Jenkins restarted while leasing a TestGrid environment"));
+            }
+        }
+
+        /**
+         * Find the provisioner of the job and check that the pool can create it.
+         */
+        private static JenkinsInfrastructureConfig provisioner(Run<?, ?> run, String name) throws AbortException {
+            TestgridJobProperty property = run.getParent().getProperty(TestgridJobProperty.class);
+            if (property == null || property.getResolvedInfrastructureConfigs() == null) {
+                throw new AbortException("job " + run.getParent().getFullName()
+                        + " does not have a TestGrid configuration");
+            }
+            for (JenkinsInfrastructureConfig infraConfig : property.getResolvedInfrastructureConfigs()) {
+                if (!infraConfig.getName().equals(name)) {
+                    continue;
+                }
+                if (infraConfig.getScriptConfigs() != null) {
+                    for (JenkinsScriptConfig scriptConfig : infraConfig.getScriptConfigs()) {
+                        if (scriptConfig.getIacProviderType() != Script.ScriptType.SHELL) {
+                            throw new AbortException("Only SHELL provisioners can be pooled; script "
+                                    + scriptConfig.getName() + " of " + name + " is "
+                                    + scriptConfig.getIacProvider());
+                        }
+                    }
+                }
+                return infraConfig;
+            }
+            throw new AbortException("job " + run.getParent().getFullName() + " has no provisioner " + name);
+        }
+    }
+
+    /**
+     * Exposes the leased environment to the body through environment variables.
+     */
+    private static final class LeaseEnvironment extends EnvironmentExpander {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, String> variables;
+
+        LeaseEnvironment(Map<String, String> variables) {
+            this.variables = variables;
+        }
+
+        @Override
+        public void expand(EnvVars env) throws IOException, InterruptedException {
+            env.overrideAll(variables);
+        }
+    }
+
+    /**
+     * Returns the environment to the pool, then completes the step with the outcome of the body.
+     */
+    private static final class ReleaseCallback extends BodyExecutionCallback.TailCall {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String environmentId;
+
+        ReleaseCallback(String environmentId) {
+            this.environmentId = environmentId;
+        }
+
+        @Override
+        protected void finished(StepContext context) throws Exception {
+            EnvironmentPool.get().release(environmentId);
+        }
+    }
+
+    /**
+     * Static inner class that extends the {@link StepDescriptor} class to provide the
+     * metadata for the {@link TestgridEnvironmentStep}.
+     */
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "testgridEnvironment";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Lease a TestGrid environment from the warm environment pool";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(FilePath.class, Run.class, TaskListener.class);
+        }
+
+        public FormValidation doCheckProvisioner(@QueryParameter String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.error("* Required Parameter..");
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+
+/**
+ * Pipeline step that runs its body once per TestGrid matrix cell, as parallel branches.
+ *
+ * <pre>
+ * testgridParallel(maxConcurrency: 4, labels: 'linux-a linux-b', failFast: true) {
+ *     node(env.TESTGRID_AGENT_LABEL) {
+ *         sh "run-scenario.sh $TESTGRID_PROVISIONER $TESTGRID_PATTERN $TESTGRID_SCENARIO"
+ *     }
+ * }
+ * </pre>
+ *
+ * Each branch sees the cell it runs through the {@code TESTGRID_*} environment variables.
+ * A failed cell that is known to be flaky is retried once, on the agent label it ran on, as long
+ * as the retry budget of the step lasts; the retry sees {@code TESTGRID_CELL_ATTEMPT=2}.
+ */
+public class TestgridParallelStep extends Step {
+
+    private int maxConcurrency;
+    private String labels;
+    private boolean failFast;
+    private boolean drainOnAbort;
+    private int retryBudget = DEFAULT_RETRY_BUDGET;
+
+    /**
+     * Number of flaky cells retried per build unless the step sets its own budget.
+     */
+    static final int DEFAULT_RETRY_BUDGET =
+            Integer.getInteger(TestgridParallelStep.class.getName() + ".retryBudget", 2);
+
+    @DataBoundConstructor
+    public TestgridParallelStep() {
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @param maxConcurrency maximum number of branches running at once, {@code 0} for no limit
+     */
+    @DataBoundSetter
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public String getLabels() {
+        return labels;
+    }
+
+    /**
+     * @param labels space or comma separated agent labels to spread the branches across
+     */
+    @DataBoundSetter
+    public void setLabels(String labels) {
+        this.labels = Util.fixEmptyAndTrim(labels);
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * @param failFast whether a failed cell aborts the running branches and skips the remaining ones
+     */
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public boolean isDrainOnAbort() {
+        return drainOnAbort;
+    }
+
+    /**
+     * @param drainOnAbort whether an aborted step lets the running branches finish instead of
+     *                     interrupting them
+     */
+    @DataBoundSetter
+    public void setDrainOnAbort(boolean drainOnAbort) {
+        this.drainOnAbort = drainOnAbort;
+    }
+
+    public int getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * @param retryBudget maximum number of failed flaky cells to retry, {@code 0} to never retry
+     */
+    @DataBoundSetter
+    public void setRetryBudget(int retryBudget) {
+        this.retryBudget = Math.max(0, retryBudget);
+    }
+
+    String[] getLabelArray() {
+        return labels == null ? new String[0] : labels.split("[\\s,]+");
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new TestgridParallelStepExecution(this, context);
+    }
+
+    /**
+     * Static inner class that extends the {@link StepDescriptor} class to provide the
+     * metadata for the {@link TestgridParallelStep}.
+     */
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "testgridParallel";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Run the TestGrid matrix cells in parallel";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(Run.class, TaskListener.class);
+        }
+
+        /**
+         * Validate the maximum concurrency entered by the user.
+         *
+         * @param value maximum concurrency entered by the user
+         * @return the a positive {@link FormValidation} result if it is not negative, else a negative result.
+         */
+        public FormValidation doCheckMaxConcurrency(@QueryParameter int value) {
+            if (value < 0) {
+                return FormValidation.error("Must be 0 or a positive number");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckRetryBudget(@QueryParameter int value) {
+            if (value < 0) {
+                return FormValidation.error("Must be 0 or a positive number");
+            }
+            return FormValidation.ok();
+        }
+    }
+}
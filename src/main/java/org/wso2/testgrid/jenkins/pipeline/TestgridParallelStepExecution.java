@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.pipeline;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.CauseOfInterruption;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.wso2.testgrid.jenkins.TestgridHandle;
+import org.wso2.testgrid.jenkins.matrix.CellDurations;
+import org.wso2.testgrid.jenkins.matrix.CellHistory;
+import org.wso2.testgrid.jenkins.matrix.MatrixCell;
+import org.wso2.testgrid.jenkins.matrix.TestgridMatrix;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the body of {@link TestgridParallelStep} once per matrix cell, keeping at most
+ * {@code maxConcurrency} branches running and starting the next cell whenever a branch completes.
+ *
+ * The cells are started longest first by their {@link CellDurations recorded durations}, which
+ * every successful cell updates.
+ *
+ * The outcome of every attempt is added to the {@link CellHistory} of the job. A failed cell whose
+ * history shows it to be flaky is retried once, on the label of the failed attempt so that it can
+ * reuse what that attempt provisioned, until the retry budget of the build is used up.
+ */
+final class TestgridParallelStepExecution extends StepExecution {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(TestgridParallelStepExecution.class.getName());
+
+    static final String CELL_INDEX = "TESTGRID_CELL_INDEX";
+    static final String CELL_KEY = "TESTGRID_CELL_KEY";
+    static final String CELL_ATTEMPT = "TESTGRID_CELL_ATTEMPT";
+    static final String PROVISIONER = "TESTGRID_PROVISIONER";
+    static final String PATTERN = "TESTGRID_PATTERN";
+    static final String SCENARIO = "TESTGRID_SCENARIO";
+    static final String AGENT_LABEL = "TESTGRID_AGENT_LABEL";
+
+    private final int maxConcurrency;
+    private final String[] labels;
+    private final boolean failFast;
+    private final boolean drainOnAbort;
+    private final int retryBudget;
+
+    private TestgridMatrix matrix;
+    /**
+     * Cell indexes in the order the branches are started.
+     */
+    private int[] order;
+    private int next;
+    private final Map<Integer, BodyExecution> running = new HashMap<>();
+    private final Map<Integer, String> runningLabels = new HashMap<>();
+    private final List<String> failedCells = new ArrayList<>();
+    /**
+     * Cell indexes that were retried.
+     */
+    private final List<Integer> retried = new ArrayList<>();
+    private Throwable firstFailure;
+    private Throwable abortCause;
+    private boolean stopping;
+    private boolean done;
+
+    TestgridParallelStepExecution(TestgridParallelStep step, StepContext context) {
+        super(context);
+        this.maxConcurrency = step.getMaxConcurrency();
+        this.labels = step.getLabelArray();
+        this.failFast = step.isFailFast();
+        this.drainOnAbort = step.isDrainOnAbort();
+        this.retryBudget = step.getRetryBudget();
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        Run<?, ?> run = getContext().get(Run.class);
+        matrix = TestgridHandle.forBuild(run).getMatrix();
+        CellDurations durations = CellDurations.of(run.getParent());
+        order = durations.longestFirst(matrix);
+        if (order.length == 0) {
+            getContext().get(TaskListener.class).getLogger().println("TestGrid matrix has no cells to run");
+            getContext().onSuccess(null);
+            return true;
+        }
+        getContext().get(TaskListener.class).getLogger().println("Running " + order.length
+                + " TestGrid cells" + (maxConcurrency > 0 ? ", at most " + maxConcurrency + " at a time" : "")
+                + (durations.isEmpty() ? "" : ", longest first"));
+        synchronized (this) {
+            startBranches();
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void stop(Throwable cause) throws Exception {
+        if (done) {
+            return;
+        }
+        stopping = true;
+        if (abortCause == null) {
+            abortCause = cause;
+        }
+        if (!drainOnAbort) {
+            for (BodyExecution execution : new ArrayList<>(running.values())) {
+                execution.cancel(cause);
+            }
+        }
+        finishIfDone();
+    }
+
+    /**
+     * Start branches for the next cells until the concurrency limit is reached.
+     */
+    private void startBranches() throws IOException, InterruptedException {
+        while (!stopping && next < order.length && (maxConcurrency <= 0 || running.size() < maxConcurrency)) {
+            int index = order[next++];
+            startBranch(index, pickLabel(), 1);
+        }
+    }
+
+    private void startBranch(int index, String label, int attempt) throws IOException, InterruptedException {
+        MatrixCell cell = matrix.getCell(index);
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put(CELL_INDEX, String.valueOf(cell.getIndex()));
+        variables.put(CELL_KEY, cell.getKey());
+        variables.put(CELL_ATTEMPT, String.valueOf(attempt));
+        putIfNotNull(variables, PROVISIONER, cell.getProvisioner());
+        putIfNotNull(variables, PATTERN, cell.getPattern());
+        putIfNotNull(variables, SCENARIO, cell.getScenario());
+        putIfNotNull(variables, AGENT_LABEL, label);
+
+        BodyExecution execution = getContext().newBodyInvoker()
+                .withContext(EnvironmentExpander.merge(getContext().get(EnvironmentExpander.class),
+                        new CellEnvironment(variables)))
+                .withDisplayName(attempt > 1 ? cell.getKey() + " (attempt " + attempt + ")" : cell.getKey())
+                .withCallback(new CellCallback(this, index))
+                .start();
+        running.put(index, execution);
+        if (label != null) {
+            runningLabels.put(index, label);
+        }
+    }
+
+    /**
+     * Pick the agent label with the fewest running branches.
+     */
+    private String pickLabel() {
+        if (labels.length == 0) {
+            return null;
+        }
+        String best = labels[0];
+        int bestCount = Integer.MAX_VALUE;
+        for (String label : labels) {
+            int count = 0;
+            for (String runningLabel : runningLabels.values()) {
+                if (label.equals(runningLabel)) {
+                    count++;
+                }
+            }
+            if (count < bestCount) {
+                best = label;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    synchronized void onCellSuccess(int index, long duration) {
+        running.remove(index);
+        runningLabels.remove(index);
+        try {
+            Job<?, ?> job = job();
+            CellDurations.of(job).record(matrix.getCell(index), duration);
+            CellHistory.of(job).record(matrix.getCell(index), true);
+        } catch (IOException | InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Cannot record the outcome of TestGrid cell " + matrix.getCell(index), e);
+        }
+        if (retried.contains(index)) {
+            log("TestGrid cell " + matrix.getCell(index).getKey() + " passed when retried");
+        }
+        continueOrFinish();
+    }
+
+    synchronized void onCellFailure(int index, Throwable t) {
+        running.remove(index);
+        String label = runningLabels.remove(index);
+        boolean interrupted = stopping && t instanceof FlowInterruptedException;
+        if (!interrupted && retry(index, label)) {
+            return;
+        }
+        if (!interrupted) {
+            failedCells.add(matrix.getCell(index).getKey());
+            if (firstFailure == null) {
+                firstFailure = t;
+            }
+        }
+        if (failFast && !stopping) {
+            stopping = true;
+            for (BodyExecution execution : new ArrayList<>(running.values())) {
+                execution.cancel(new FailFastCause(matrix.getCell(index).getKey()));
+            }
+        }
+        continueOrFinish();
+    }
+
+    /**
+     * Record the failure of a cell, and start it again if it is flaky, the step is not stopping
+     * and the retry budget allows.
+     * Whether the cell is flaky is judged on its history before this failure.
+     *
+     * @return whether the cell was started again
+     */
+    private boolean retry(int index, String label) {
+        MatrixCell cell = matrix.getCell(index);
+        CellHistory history;
+        try {
+            history = CellHistory.of(job());
+        } catch (IOException | InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Cannot record the outcome of TestGrid cell " + cell, e);
+            return false;
+        }
+        boolean retry = !stopping && retried.size() < retryBudget && !retried.contains(index)
+                && history.isFlaky(cell);
+        double flakiness = history.flakiness(cell);
+        history.record(cell, false);
+        if (!retry) {
+            return false;
+        }
+        retried.add(index);
+        log("Retrying flaky TestGrid cell " + cell.getKey() + " (" + Math.round(flakiness * 100)
+                + "% flaky), retry " + retried.size() + " of " + retryBudget);
+        try {
+            startBranch(index, label, 2);
+            return true;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Cannot retry TestGrid cell " + cell, e);
+            return false;
+        }
+    }
+
+    private Job<?, ?> job() throws IOException, InterruptedException {
+        return getContext().get(Run.class).getParent();
+    }
+
+    private void log(String message) {
+        try {
+            getContext().get(TaskListener.class).getLogger().println(message);
+        } catch (IOException | InterruptedException e) {
+            LOGGER.log(Level.FINE, message, e);
+        }
+    }
+
+    private void continueOrFinish() {
+        try {
+            startBranches();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            stopping = true;
+            if (firstFailure == null) {
+                firstFailure = e;
+            }
+        }
+        finishIfDone();
+    }
+
+    private void finishIfDone() {
+        if (done || !running.isEmpty() || (!stopping && next < order.length)) {
+            return;
+        }
+        done = true;
+        if (abortCause != null) {
+            getContext().onFailure(abortCause);
+        } else if (!failedCells.isEmpty()) {
+            AbortException failure = new AbortException(failedCells.size() + " of " + order.length
+                    + " TestGrid cells failed: " + failedCells);
+            if (firstFailure != null) {
+                failure.addSuppressed(firstFailure);
+            }
+            getContext().onFailure(failure);
+        } else if (firstFailure != null) {
+            getContext().onFailure(firstFailure);
+        } else {
+            getContext().onSuccess(null);
+        }
+    }
+
+    private static void putIfNotNull(Map<String, String> variables, String name, String value) {
+        if (value != null) {
+            variables.put(name, value);
+        }
+    }
+
+    /**
+     * Exposes the cell of a branch to the body through environment variables.
+     */
+    private static final class CellEnvironment extends EnvironmentExpander {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, String> variables;
+
+        CellEnvironment(Map<String, String> variables) {
+            this.variables = variables;
+        }
+
+        @Override
+        public void expand(EnvVars env) throws IOException, InterruptedException {
+            env.overrideAll(variables);
+        }
+    }
+
+    /**
+     * Reports the completion of a branch back to the execution.
+     */
+    private static final class CellCallback extends BodyExecutionCallback {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TestgridParallelStepExecution execution;
+        private final int index;
+        private final long startedAt = System.currentTimeMillis();
+
+        CellCallback(TestgridParallelStepExecution execution, int index) {
+            this.execution = execution;
+            this.index = index;
+        }
+
+        @Override
+        public void onSuccess(StepContext context, Object result) {
+            TestgridMetrics.phaseSince(TestgridMetrics.CELL, startedAt);
+            execution.onCellSuccess(index, System.currentTimeMillis() - startedAt);
+        }
+
+        @Override
+        public void onFailure(StepContext context, Throwable t) {
+            TestgridMetrics.phaseSince(TestgridMetrics.CELL, startedAt);
+            execution.onCellFailure(index, t);
+        }
+    }
+
+    /**
+     * Records that a branch was interrupted because another cell failed.
+     */
+    private static final class FailFastCause extends CauseOfInterruption {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String failedCell;
+
+        FailFastCause(String failedCell) {
+            this.failedCell = failedCell;
+        }
+
+        @Override
+        public String getShortDescription() {
+            return "Failed fast because TestGrid cell " + failedCell + " failed";
+        }
+    }
+}
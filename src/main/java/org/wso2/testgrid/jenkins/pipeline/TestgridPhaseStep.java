@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.pipeline;
+
+import hudson.Extension;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import org.wso2.testgrid.jenkins.metrics.TestgridMetrics;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Pipeline step that times its body as a phase of the TestGrid run, in the
+ * {@code testgrid_phase_duration_seconds} metric.
+ *
+ * <pre>
+ * testgridPhase('provision') {
+ *     sh 'provision.sh'
+ * }
+ * </pre>
+ */
+public class TestgridPhaseStep extends Step {
+
+    private final String name;
+
+    /**
+     * @param name phase of the body, one of {@link TestgridMetrics#PIPELINE_PHASES}
+     */
+    @DataBoundConstructor
+    public TestgridPhaseStep(String name) {
+        if (!TestgridMetrics.PIPELINE_PHASES.contains(name)) {
+            throw new IllegalArgumentException("Unknown TestGrid phase " + name + "; expected one of "
+                    + TestgridMetrics.PIPELINE_PHASES);
+        }
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(name, context);
+    }
+
+    private static final class Execution extends StepExecution {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private BodyExecution body;
+
+        Execution(String name, StepContext context) {
+            super(context);
+            this.name = name;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            body = getContext().newBodyInvoker()
+                    .withCallback(new PhaseCallback(name))
+                    .start();
+            return false;
+        }
+
+        @Override
+        public void stop(@Nonnull Throwable cause) throws Exception {
+            if (body != null) {
+                body.cancel(cause);
+            }
+        }
+    }
+
+    /**
+     * Records the duration of the body, then completes the step with its outcome.
+     */
+    private static final class PhaseCallback extends BodyExecutionCallback.TailCall {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final long startedAt = System.currentTimeMillis();
+
+        PhaseCallback(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected void finished(StepContext context) throws Exception {
+            TestgridMetrics.phaseSince(name, startedAt);
+        }
+    }
+
+    /**
+     * Static inner class that extends the {@link StepDescriptor} class to provide the
+     * metadata for the {@link TestgridPhaseStep}.
+     */
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "testgridPhase";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Time a phase of the TestGrid run";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Collections.emptySet();
+        }
+
+        public ListBoxModel doFillNameItems() {
+            ListBoxModel model = new ListBoxModel();
+            for (String phase : TestgridMetrics.PIPELINE_PHASES) {
+                model.add(phase);
+            }
+            return model;
+        }
+
+        /**
+         * Validate the phase name entered by the user.
+         *
+         * @param value phase name entered by the user
+         * @return the a positive {@link FormValidation} result if it is a known phase, else a negative result.
+         */
+        public FormValidation doCheckName(@QueryParameter String value) {
+            if (!TestgridMetrics.PIPELINE_PHASES.contains(value)) {
+                return FormValidation.error("Must be one of " + TestgridMetrics.PIPELINE_PHASES);
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.wso2.testgrid.jenkins.results.CellResult;
+import org.wso2.testgrid.jenkins.results.ResultParser;
+import org.wso2.testgrid.jenkins.results.TestgridResultsAction;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Pipeline step that reads the TestNG or JUnit reports of a matrix cell and records the totals
+ * in the {@link TestgridResultsAction} of the build.
+ *
+ * <pre>
+ * testgridParallel {
+ *     node(env.TESTGRID_AGENT_LABEL) {
+ *         sh "run-scenario.sh $TESTGRID_SCENARIO"
+ *         testgridResults files: '**&#47;testng-results.xml'
+ *     }
+ * }
+ * </pre>
+ *
+ * The reports are read on the node holding the workspace; only the totals and the names of
+ * the failed tests are sent back to the controller. Within {@code testgridParallel}, the
+ * results are recorded for the cell of the branch.
+ */
+public class TestgridResultsStep extends Step {
+
+    static final String DEFAULT_FILES = "**/testng-results.xml";
+
+    private String files = DEFAULT_FILES;
+    private String cell;
+    private boolean allowEmpty;
+
+    @DataBoundConstructor
+    public TestgridResultsStep() {
+    }
+
+    public String getFiles() {
+        return files;
+    }
+
+    /**
+     * @param files Ant style pattern of the report files, relative to the workspace
+     */
+    @DataBoundSetter
+    public void setFiles(String files) {
+        String value = Util.fixEmptyAndTrim(files);
+        this.files = value == null ? DEFAULT_FILES : value;
+    }
+
+    public String getCell() {
+        return cell;
+    }
+
+    /**
+     * @param cell key of the cell to record the results for, by default the cell of the
+     *             enclosing {@code testgridParallel} branch
+     */
+    @DataBoundSetter
+    public void setCell(String cell) {
+        this.cell = Util.fixEmptyAndTrim(cell);
+    }
+
+    public boolean isAllowEmpty() {
+        return allowEmpty;
+    }
+
+    /**
+     * @param allowEmpty whether finding no report is not an error
+     */
+    @DataBoundSetter
+    public void setAllowEmpty(boolean allowEmpty) {
+        this.allowEmpty = allowEmpty;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TestgridResultsStep step;
+
+        Execution(TestgridResultsStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Void run() throws Exception {
+            EnvVars env = getContext().get(EnvVars.class);
+            String cellKey = step.cell != null ? step.cell : env.get(TestgridParallelStepExecution.CELL_KEY);
+            if (cellKey == null) {
+                throw new AbortException("testgridResults is not running within a TestGrid cell; "
+                        + "specify the cell to record the results for");
+            }
+            FilePath workspace = getContext().get(FilePath.class);
+            TaskListener listener = getContext().get(TaskListener.class);
+            Run<?, ?> run = getContext().get(Run.class);
+
+            Parsed parsed = workspace.act(new ParseCallable(step.files));
+            if (parsed.reports == 0 && !step.allowEmpty) {
+                throw new AbortException("No test reports match " + step.files);
+            }
+            CellResult result = parsed.result;
+            int attempt = 1;
+            if (cellKey.equals(env.get(TestgridParallelStepExecution.CELL_KEY))) {
+                attempt = Integer.parseInt(env.get(TestgridParallelStepExecution.CELL_ATTEMPT, "1"));
+            }
+            TestgridResultsAction.of(run).add(cellKey, attempt, result);
+            run.save();
+            listener.getLogger().println("TestGrid cell " + cellKey + ": " + result.getPassed() + " passed, "
+                    + result.getFailed() + " failed, " + result.getSkipped() + " skipped in "
+                    + parsed.reports + " reports");
+            return null;
+        }
+    }
+
+    /**
+     * Results of the reports of a workspace.
+     */
+    private static final class Parsed implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CellResult result;
+        private final int reports;
+
+        Parsed(CellResult result, int reports) {
+            this.result = result;
+            this.reports = reports;
+        }
+    }
+
+    /**
+     * Reads the reports on the node that holds the workspace.
+     */
+    private static final class ParseCallable extends MasterToSlaveFileCallable<Parsed> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String files;
+
+        ParseCallable(String files) {
+            this.files = files;
+        }
+
+        @Override
+        public Parsed invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            CellResult result = new CellResult();
+            FilePath[] reports = new FilePath(workspace).list(files);
+            for (FilePath report : reports) {
+                try (InputStream in = report.read()) {
+                    ResultParser.parse(in, result);
+                } catch (IOException e) {
+                    throw new IOException("Cannot read " + report.getRemote() + ": " + e.getMessage(), e);
+                }
+            }
+            return new Parsed(result, reports.length);
+        }
+    }
+
+    /**
+     * Static inner class that extends the {@link StepDescriptor} class to provide the
+     * metadata for the {@link TestgridResultsStep}.
+     */
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "testgridResults";
+        }
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Record the TestNG or JUnit results of a TestGrid cell";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return ImmutableSet.of(FilePath.class, EnvVars.class, Run.class, TaskListener.class);
+        }
+    }
+}
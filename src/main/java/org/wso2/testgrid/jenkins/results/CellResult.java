@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.results;
+
+import hudson.Util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test results of one matrix cell: the number of passed, failed and skipped tests, their total
+ * duration and the names of the first failed tests.
+ */
+public final class CellResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of failed test names kept per cell, so that a broken cell cannot grow the build record without bound.
+     */
+    static final int MAX_FAILURE_NAMES = Integer.getInteger(CellResult.class.getName() + ".maxFailureNames", 100);
+
+    private int passed;
+    private int failed;
+    private int skipped;
+    private long durationMillis;
+    private final List<String> failures = new ArrayList<>();
+
+    public int getPassed() {
+        return passed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public int getTotal() {
+        return passed + failed + skipped;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getDurationString() {
+        return Util.getTimeSpanString(durationMillis);
+    }
+
+    /**
+     * @return names of the failed tests, at most {@link #MAX_FAILURE_NAMES} of them
+     */
+    public List<String> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    void pass(long duration) {
+        passed++;
+        durationMillis += duration;
+    }
+
+    void fail(String name, long duration) {
+        failed++;
+        durationMillis += duration;
+        if (failures.size() < MAX_FAILURE_NAMES) {
+            failures.add(name);
+        }
+    }
+
+    void skip(long duration) {
+        skipped++;
+        durationMillis += duration;
+    }
+
+    /**
+     * Add the results of another report of the same cell.
+     */
+    void merge(CellResult other) {
+        passed += other.passed;
+        failed += other.failed;
+        skipped += other.skipped;
+        durationMillis += other.durationMillis;
+        for (String failure : other.failures) {
+            if (failures.size() >= MAX_FAILURE_NAMES) {
+                break;
+            }
+            failures.add(failure);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.results;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads TestNG {@code testng-results.xml} and JUnit {@code TEST-*.xml} reports into a {@link CellResult}.
+ *
+ * Reports are read as a stream of StAX events and only the counters and the bounded list of
+ * failed test names are kept, so memory use does not depend on the size of the report.
+ * Configuration methods of TestNG reports are not counted as tests.
+ */
+public final class ResultParser {
+
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private ResultParser() {
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * Add the tests of a report to the given result.
+     *
+     * @param in     report content
+     * @param result result to add the tests to
+     * @throws IOException if the report cannot be read or is not well formed
+     */
+    public static void parse(InputStream in, CellResult result) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(in);
+            String className = null;
+            // state of the JUnit test case being read
+            String caseName = null;
+            long caseDuration = 0;
+            char caseStatus = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "class":
+                            className = reader.getAttributeValue(null, "name");
+                            break;
+                        case "test-method":
+                            testMethod(reader, className, result);
+                            break;
+                        case "testcase":
+                            caseName = qualify(reader.getAttributeValue(null, "classname"),
+                                    reader.getAttributeValue(null, "name"));
+                            caseDuration = seconds(reader.getAttributeValue(null, "time"));
+                            caseStatus = 'P';
+                            break;
+                        case "failure":
+                        case "error":
+                            if (caseName != null) {
+                                caseStatus = 'F';
+                            }
+                            break;
+                        case "skipped":
+                            if (caseName != null && caseStatus != 'F') {
+                                caseStatus = 'S';
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("testcase".equals(name) && caseName != null) {
+                        record(result, caseStatus, caseName, caseDuration);
+                        caseName = null;
+                    } else if ("class".equals(name)) {
+                        className = null;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid test report: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // the stream itself is closed by the caller
+                }
+            }
+        }
+    }
+
+    private static void testMethod(XMLStreamReader reader, String className, CellResult result) {
+        if ("true".equals(reader.getAttributeValue(null, "is-config"))) {
+            return;
+        }
+        String status = reader.getAttributeValue(null, "status");
+        char code = "FAIL".equals(status) ? 'F' : "SKIP".equals(status) ? 'S' : 'P';
+        record(result, code, qualify(className, reader.getAttributeValue(null, "name")),
+                millis(reader.getAttributeValue(null, "duration-ms")));
+    }
+
+    private static void record(CellResult result, char status, String name, long duration) {
+        switch (status) {
+            case 'F':
+                result.fail(name, duration);
+                break;
+            case 'S':
+                result.skip(duration);
+                break;
+            default:
+                result.pass(duration);
+                break;
+        }
+    }
+
+    private static String qualify(String className, String name) {
+        return className == null || className.isEmpty() ? String.valueOf(name) : className + '.' + name;
+    }
+
+    private static long millis(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse a JUnit duration in seconds, which some writers format with grouping separators.
+     */
+    private static long seconds(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.round(Double.parseDouble(value.trim().replace(",", "")) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
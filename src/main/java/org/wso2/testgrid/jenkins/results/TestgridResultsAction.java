@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.results;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Test results of a build, per matrix cell, keyed by the
+ * {@link org.wso2.testgrid.jenkins.matrix.MatrixCell#getKey() provisioner/pattern/scenario} of the cell.
+ *
+ * The maps and results are never changed once published: adding results replaces them with
+ * updated copies, so that the build can be saved, and the results read, while cells add results.
+ */
+public final class TestgridResultsAction implements RunAction2 {
+
+    private volatile TreeMap<String, CellResult> cells = new TreeMap<>();
+    /**
+     * Attempt the results of a cell are from, for the cells that were retried.
+     */
+    private volatile TreeMap<String, Integer> attempts;
+
+    private transient Run<?, ?> run;
+
+    /**
+     * Returns the results action of a build, adding it on first use.
+     *
+     * @param run build
+     * @return the results action of the build
+     */
+    public static TestgridResultsAction of(Run<?, ?> run) {
+        synchronized (run) {
+            TestgridResultsAction action = run.getAction(TestgridResultsAction.class);
+            if (action == null) {
+                action = new TestgridResultsAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Add the results of a cell, to those already recorded for it.
+     *
+     * @param cellKey key of the cell
+     * @param result  results of the cell
+     */
+    public void add(String cellKey, CellResult result) {
+        add(cellKey, 1, result);
+    }
+
+    /**
+     * Add the results of an attempt of a cell. The results of a later attempt of a retried cell
+     * replace those of the earlier attempts, and are added to those of the same attempt. Results of
+     * an earlier attempt that arrive after those of a later one are ignored.
+     *
+     * @param cellKey key of the cell
+     * @param attempt attempt of the cell, starting at 1
+     * @param result  results of the cell
+     */
+    public synchronized void add(String cellKey, int attempt, CellResult result) {
+        CellResult existing = cells.get(cellKey);
+        Integer recorded = attempts == null ? null : attempts.get(cellKey);
+        int current = recorded == null ? 1 : recorded;
+        if (existing != null && attempt < current) {
+            return;
+        }
+        CellResult updated = new CellResult();
+        if (existing == null || attempt > current) {
+            if (attempt > 1) {
+                TreeMap<String, Integer> updatedAttempts = attempts == null ? new TreeMap<>() : new TreeMap<>(attempts);
+                updatedAttempts.put(cellKey, attempt);
+                attempts = updatedAttempts;
+            }
+        } else {
+            updated.merge(existing);
+        }
+        updated.merge(result);
+        TreeMap<String, CellResult> updatedCells = new TreeMap<>(cells);
+        updatedCells.put(cellKey, updated);
+        cells = updatedCells;
+    }
+
+    /**
+     * @param cellKey key of the cell
+     * @return the attempt the results of the cell are from, 1 unless the cell was retried
+     */
+    public int getAttempt(String cellKey) {
+        Map<String, Integer> recorded = attempts;
+        Integer attempt = recorded == null ? null : recorded.get(cellKey);
+        return attempt == null ? 1 : attempt;
+    }
+
+    /**
+     * @return results keyed by cell key, in key order
+     */
+    public Map<String, CellResult> getCells() {
+        return Collections.unmodifiableMap(cells);
+    }
+
+    /**
+     * @return the sum of the results of all cells
+     */
+    public CellResult getTotal() {
+        CellResult total = new CellResult();
+        for (CellResult result : cells.values()) {
+            total.merge(result);
+        }
+        return total;
+    }
+
+    protected Object readResolve() {
+        if (cells == null) {
+            cells = new TreeMap<>();
+        }
+        return this;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clipboard.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "TestGrid Results";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "testgrid-results";
+    }
+}
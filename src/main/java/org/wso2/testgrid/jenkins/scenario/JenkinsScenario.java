@@ -22,7 +22,8 @@ import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.util.FormValidation;
 import org.kohsuke.stapler.DataBoundConstructor;
-import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.wso2.testgrid.jenkins.util.StringPool;
 
 /**
  * Defines the variables in the Scenario config section of the UI
@@ -36,12 +37,13 @@ public class JenkinsScenario implements Describable<JenkinsScenario> {
     private String name;
     private String description;
     private String dir;
+    private boolean alwaysRun;
 
     @DataBoundConstructor
     public JenkinsScenario(String name, String description, String dir) {
-        this.name = name;
-        this.description = description;
-        this.dir = dir;
+        this.name = StringPool.intern(name);
+        this.description = StringPool.intern(description);
+        this.dir = StringPool.intern(dir);
     }
 
     public String getName() {
@@ -56,6 +58,31 @@ public class JenkinsScenario implements Describable<JenkinsScenario> {
         return dir;
     }
 
+    public boolean isAlwaysRun() {
+        return alwaysRun;
+    }
+
+    /**
+     * @param alwaysRun whether the scenario runs even when the job only runs the scenarios
+     *                  affected by the changes of the scenario repository
+     */
+    @DataBoundSetter
+    public void setAlwaysRun(boolean alwaysRun) {
+        this.alwaysRun = alwaysRun;
+    }
+
+    /**
+     * Pool the strings read from config.xml.
+     *
+     * @return this object
+     */
+    protected Object readResolve() {
+        name = StringPool.intern(name);
+        description = StringPool.intern(description);
+        dir = StringPool.intern(dir);
+        return this;
+    }
+
     @Override
     public Descriptor<JenkinsScenario> getDescriptor() {
         return DESCRIPTOR;
@@ -63,7 +90,7 @@ public class JenkinsScenario implements Describable<JenkinsScenario> {
 
     public static class DescriptorImpl extends Descriptor<JenkinsScenario>{
 
-        public FormValidation doCheckName(@QueryParameter String value){
+        public FormValidation checkName(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
@@ -71,7 +98,7 @@ public class JenkinsScenario implements Describable<JenkinsScenario> {
             }
         }
 
-        public FormValidation doCheckDir(@QueryParameter String value){
+        public FormValidation checkDir(String value){
             if(value.isEmpty()){
                 return FormValidation.error("* Required Parameter..");
             }else{
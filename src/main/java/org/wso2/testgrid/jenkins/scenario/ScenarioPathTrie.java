@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.scenario;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps repository paths to the scenarios whose directory contains them.
+ *
+ * Every node stands for one path segment, and holds the scenarios whose directory ends there.
+ * Looking up a path walks its segments once and collects the scenarios of every node on the way,
+ * so the cost of a lookup depends on the depth of the path and not on the number of scenarios.
+ */
+final class ScenarioPathTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Add a scenario directory.
+     *
+     * @param dir      directory relative to the repository root; empty or {@code .} for the root itself
+     * @param scenario name of the scenario
+     */
+    void add(String dir, String scenario) {
+        Node node = root;
+        for (String segment : segments(dir)) {
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+        }
+        node.scenarios.add(scenario);
+    }
+
+    /**
+     * Collect the scenarios whose directory is the given path or one of its parents.
+     *
+     * @param path      changed path relative to the repository root
+     * @param scenarios collection to add the names of the scenarios to
+     * @return whether the path lies in the directory of any scenario
+     */
+    boolean match(String path, Collection<String> scenarios) {
+        boolean matched = false;
+        Node node = root;
+        for (String segment : segments(path)) {
+            if (!node.scenarios.isEmpty()) {
+                scenarios.addAll(node.scenarios);
+                matched = true;
+            }
+            node = node.children.get(segment);
+            if (node == null) {
+                return matched;
+            }
+        }
+        if (!node.scenarios.isEmpty()) {
+            scenarios.addAll(node.scenarios);
+            matched = true;
+        }
+        return matched;
+    }
+
+    /**
+     * Split a path into its segments, ignoring empty and {@code .} segments and accepting both separators.
+     */
+    static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        if (path == null) {
+            return segments;
+        }
+        int length = path.length();
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/' || path.charAt(i) == '\\') {
+                if (i > start && !(i - start == 1 && path.charAt(start) == '.')) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<String> scenarios = new ArrayList<>(1);
+    }
+}
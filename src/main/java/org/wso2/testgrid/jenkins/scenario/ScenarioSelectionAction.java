@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.scenario;
+
+import hudson.model.InvisibleAction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the scenarios a build selected from the changes of the scenario repository since the
+ * last successful build, so that the build, and a restart of it, runs the same selection.
+ */
+public final class ScenarioSelectionAction extends InvisibleAction {
+
+    private final String baseRevision;
+    private final String revision;
+    private final int changedPaths;
+    private final ArrayList<String> scenarios;
+
+    /**
+     * @param baseRevision commit of the scenario repository the last successful build ran with
+     * @param revision     commit of the scenario repository this build runs with
+     * @param changedPaths number of paths changed between the two commits
+     * @param scenarios    names of the selected scenarios
+     */
+    public ScenarioSelectionAction(String baseRevision, String revision, int changedPaths,
+                                   Collection<String> scenarios) {
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.changedPaths = changedPaths;
+        this.scenarios = new ArrayList<>(scenarios);
+    }
+
+    public String getBaseRevision() {
+        return baseRevision;
+    }
+
+    public String getRevision() {
+        return revision;
+    }
+
+    public int getChangedPaths() {
+        return changedPaths;
+    }
+
+    /**
+     * @return names of the selected scenarios, in the order of the scenario list
+     */
+    public List<String> getScenarios() {
+        return Collections.unmodifiableList(scenarios);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.scenario;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the scenarios affected by a change of the scenario repository.
+ *
+ * A scenario is affected when a changed path lies in its directory. Scenarios that always run
+ * are selected regardless. A changed path outside of every scenario directory, such as a shared
+ * module or the build file of the repository, may affect any scenario, so it selects all of them.
+ */
+public final class ScenarioSelector {
+
+    private ScenarioSelector() {
+    }
+
+    /**
+     * Select the scenarios to run for the given changed paths.
+     *
+     * @param scenarios    scenarios of the job
+     * @param changedPaths paths changed in the scenario repository, relative to its root
+     * @return names of the selected scenarios, in the order of the scenario list
+     */
+    public static Set<String> select(List<JenkinsScenario> scenarios, Collection<String> changedPaths) {
+        ScenarioPathTrie trie = new ScenarioPathTrie();
+        Set<String> selected = new LinkedHashSet<>();
+        Set<String> all = new LinkedHashSet<>();
+        for (JenkinsScenario scenario : scenarios) {
+            all.add(scenario.getName());
+            trie.add(scenario.getDir(), scenario.getName());
+            if (scenario.isAlwaysRun()) {
+                selected.add(scenario.getName());
+            }
+        }
+        Set<String> affected = new LinkedHashSet<>();
+        for (String path : changedPaths) {
+            if (!trie.match(path, affected)) {
+                return all;
+            }
+        }
+        //keep the order of the scenario list
+        Set<String> ordered = new LinkedHashSet<>();
+        for (String name : all) {
+            if (selected.contains(name) || affected.contains(name)) {
+                ordered.add(name);
+            }
+        }
+        return ordered;
+    }
+}
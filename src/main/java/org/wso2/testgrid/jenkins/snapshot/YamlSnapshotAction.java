@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.snapshot;
+
+import hudson.model.Item;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.wso2.testgrid.jenkins.TestgridConfigDiff;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Records which TestGrid YAML a build ran with, by the content hash of its snapshot in the
+ * {@link YamlSnapshotStore}. The YAML itself is served at {@code testgrid-yaml} under the build,
+ * and its structural difference to the configuration of another build at {@code testgrid-yaml/diff}.
+ */
+public final class YamlSnapshotAction implements RunAction2 {
+
+    private final String hash;
+
+    private transient Run<?, ?> run;
+
+    public YamlSnapshotAction(String hash) {
+        this.hash = hash;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * @return the YAML the build ran with, or {@code null} if the snapshot is gone
+     * @throws IOException if the snapshot cannot be read
+     */
+    public String getYaml() throws IOException {
+        return YamlSnapshotStore.get().load(hash);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return run != null && run.getParent().hasPermission(Item.EXTENDED_READ) ? "document.png" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "TestGrid YAML";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "testgrid-yaml";
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        run.getParent().checkPermission(Item.EXTENDED_READ);
+        String yaml = getYaml();
+        if (yaml == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "The TestGrid YAML of this build is no longer stored");
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        rsp.getWriter().write(yaml);
+    }
+
+    /**
+     * Show the structural difference between the TestGrid configuration of another build and
+     * that of this build, as a page or, with {@code format=json}, as JSON.
+     *
+     * @param req    request
+     * @param rsp    response to write the difference to
+     * @param build  number of the build to compare with, by default the closest earlier build with a snapshot
+     * @param format {@code json} for a JSON response
+     * @throws IOException      if a snapshot cannot be read or the response written
+     * @throws ServletException if the page cannot be rendered
+     */
+    public void doDiff(StaplerRequest req, StaplerResponse rsp, @QueryParameter String build,
+                       @QueryParameter String format) throws IOException, ServletException {
+        run.getParent().checkPermission(Item.EXTENDED_READ);
+        Run<?, ?> other = build == null || build.isEmpty() ? previous() : numbered(build);
+        YamlSnapshotAction otherSnapshot = other == null ? null : other.getAction(YamlSnapshotAction.class);
+        if (otherSnapshot == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "No build to compare with has a TestGrid YAML snapshot");
+            return;
+        }
+        List<TestgridConfigDiff.Change> changes = TestgridConfigDiff.compare(otherSnapshot.getHash(), hash);
+        if ("json".equals(format)) {
+            JSONObject result = new JSONObject();
+            result.put("from", other.getNumber());
+            result.put("to", run.getNumber());
+            result.put("changes", TestgridConfigDiff.toJson(changes));
+            rsp.setContentType("application/json;charset=UTF-8");
+            result.write(rsp.getWriter());
+            return;
+        }
+        req.setAttribute("other", other);
+        req.setAttribute("changes", changes);
+        req.getView(this, "diff.jelly").forward(req, rsp);
+    }
+
+    private Run<?, ?> previous() {
+        for (Run<?, ?> previous = run.getPreviousBuild(); previous != null; previous = previous.getPreviousBuild()) {
+            if (previous.getAction(YamlSnapshotAction.class) != null) {
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    private Run<?, ?> numbered(String build) {
+        try {
+            return run.getParent().getBuildByNumber(Integer.parseInt(build));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.snapshot;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the references of the {@link YamlSnapshotStore} in step with deleted and renamed items,
+ * whose builds go away or move without a notification per build.
+ */
+@Extension
+public class YamlSnapshotItemListener extends ItemListener {
+
+    private static final Logger LOGGER = Logger.getLogger(YamlSnapshotItemListener.class.getName());
+
+    @Override
+    public void onDeleted(Item item) {
+        try {
+            YamlSnapshotStore.get().releaseAll(item.getFullName());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot release the TestGrid YAML snapshots of " + item.getFullName(), e);
+        }
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        try {
+            YamlSnapshotStore.get().rename(oldFullName, newFullName);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot move the TestGrid YAML snapshots of " + oldFullName
+                    + " to " + newFullName, e);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.snapshot;
+
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+import org.wso2.testgrid.jenkins.util.ConfigDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content addressed store of the TestGrid YAML that builds ran with, under
+ * {@code JENKINS_HOME/testgrid-snapshots}.
+ *
+ * Every distinct YAML is stored once, gzip compressed, as {@code <hh>/<hash>.yaml.gz} where
+ * {@code hash} is the SHA-256 of the content. The builds referring to a snapshot are marked by one
+ * empty file per build in {@code <hh>/<hash>.builds/}, named by the encoded
+ * {@link hudson.model.Run#getExternalizableId()}, and every such build is also indexed by its job
+ * as {@code jobs/<folder>/<job>/<number>}, a file holding the hash. Adding or removing a reference
+ * touches only the files of that build, and deleting or moving an item only the files of its
+ * builds. A snapshot is deleted together with its last reference.
+ */
+public final class YamlSnapshotStore {
+
+    static final String DIRECTORY = "testgrid-snapshots";
+
+    private static final String SNAPSHOT_SUFFIX = ".yaml.gz";
+    private static final String BUILDS_SUFFIX = ".builds";
+    private static final String JOBS_DIRECTORY = "jobs";
+    /**
+     * Suffix of the reference lists written by earlier versions, one build per line.
+     */
+    private static final String LEGACY_REFS_SUFFIX = ".refs";
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final Logger LOGGER = Logger.getLogger(YamlSnapshotStore.class.getName());
+
+    private static YamlSnapshotStore instance;
+
+    private final File root;
+
+    public YamlSnapshotStore(File root) {
+        this.root = root;
+    }
+
+    /**
+     * @return the store of this Jenkins instance
+     */
+    public static synchronized YamlSnapshotStore get() {
+        if (instance == null) {
+            YamlSnapshotStore store = new YamlSnapshotStore(new File(Jenkins.getInstance().getRootDir(), DIRECTORY));
+            try {
+                store.migrate();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot convert the references of the TestGrid YAML snapshots", e);
+            }
+            instance = store;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the content hash of a YAML, under which {@link #store(String, String)} keeps it.
+     *
+     * @param yaml YAML content
+     * @return the lower case hex encoded hash
+     */
+    public static String hash(String yaml) {
+        return new ConfigDigest().add(yaml).hex();
+    }
+
+    /**
+     * Store a YAML, unless it is already stored, and add a reference to it.
+     *
+     * @param yaml     YAML content
+     * @param referrer id of the build referring to the snapshot
+     * @return the content hash of the YAML
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized String store(String yaml, String referrer) throws IOException {
+        String hash = hash(yaml);
+        File snapshot = snapshotFile(hash);
+        if (!snapshot.exists()) {
+            File directory = snapshot.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            File temporary = File.createTempFile(hash, ".tmp", directory);
+            try {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary.toPath()))) {
+                    out.write(yaml.getBytes(StandardCharsets.UTF_8));
+                }
+                Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary.toPath());
+            }
+        }
+        addReference(hash, referrer);
+        return hash;
+    }
+
+    /**
+     * Read a stored YAML.
+     *
+     * @param hash content hash of the YAML
+     * @return the YAML content, or {@code null} if there is no such snapshot
+     * @throws IOException if the snapshot cannot be read
+     */
+    public String load(String hash) throws IOException {
+        File snapshot = snapshotFile(hash);
+        if (!snapshot.isFile()) {
+            return null;
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot.toPath()))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8.name());
+        }
+    }
+
+    /**
+     * Remove a reference to a snapshot, deleting the snapshot if it was the last one.
+     *
+     * @param hash     content hash of the snapshot
+     * @param referrer id of the build that referred to the snapshot
+     * @throws IOException if the references cannot be updated
+     */
+    public synchronized void release(String hash, String referrer) throws IOException {
+        File index = indexFile(referrer);
+        if (index.isFile() && hash.equals(readHash(index))) {
+            Files.delete(index.toPath());
+        }
+        File builds = buildsDirectory(hash);
+        if (Files.deleteIfExists(new File(builds, encode(referrer)).toPath()) && isEmpty(builds)) {
+            Files.deleteIfExists(snapshotFile(hash).toPath());
+            Files.deleteIfExists(builds.toPath());
+        }
+    }
+
+    /**
+     * Remove the references of every build of the given item, and of the items within it.
+     *
+     * @param fullName full name of the deleted item
+     * @throws IOException if the references cannot be updated
+     */
+    public synchronized void releaseAll(String fullName) throws IOException {
+        releaseAll(itemDirectory(fullName), fullName);
+    }
+
+    private void releaseAll(File item, String fullName) throws IOException {
+        File[] entries = item.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                releaseAll(entry, fullName + '/' + decode(entry.getName()));
+            } else {
+                String hash = readHash(entry);
+                if (hash != null) {
+                    release(hash, fullName + '#' + decode(entry.getName()));
+                }
+                Files.deleteIfExists(entry.toPath());
+            }
+        }
+        Files.deleteIfExists(item.toPath());
+    }
+
+    /**
+     * Move the references of the builds of a renamed or moved item to its new name.
+     *
+     * @param oldFullName previous full name of the item
+     * @param newFullName current full name of the item
+     * @throws IOException if the references cannot be updated
+     */
+    public synchronized void rename(String oldFullName, String newFullName) throws IOException {
+        File oldItem = itemDirectory(oldFullName);
+        if (!oldItem.isDirectory()) {
+            return;
+        }
+        renameReferences(oldItem, oldFullName, newFullName);
+        File newItem = itemDirectory(newFullName);
+        File parent = newItem.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        Files.move(oldItem.toPath(), newItem.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void renameReferences(File item, String oldFullName, String newFullName) throws IOException {
+        File[] entries = item.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            String name = decode(entry.getName());
+            if (entry.isDirectory()) {
+                renameReferences(entry, oldFullName + '/' + name, newFullName + '/' + name);
+                continue;
+            }
+            String hash = readHash(entry);
+            if (hash == null) {
+                continue;
+            }
+            File builds = buildsDirectory(hash);
+            File marker = new File(builds, encode(oldFullName + '#' + name));
+            if (marker.isFile()) {
+                Files.move(marker.toPath(), new File(builds, encode(newFullName + '#' + name)).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Convert the reference lists of earlier versions into reference files, once.
+     */
+    private synchronized void migrate() throws IOException {
+        File[] directories = root.listFiles(file -> file.isDirectory() && file.getName().length() == 2);
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            File[] lists = directory.listFiles((dir, name) -> name.endsWith(LEGACY_REFS_SUFFIX));
+            if (lists == null) {
+                continue;
+            }
+            for (File list : lists) {
+                String hash = list.getName().substring(0, list.getName().length() - LEGACY_REFS_SUFFIX.length());
+                try (Reader reader = Files.newBufferedReader(list.toPath(), StandardCharsets.UTF_8)) {
+                    for (String referrer : IOUtils.readLines(reader)) {
+                        if (!referrer.isEmpty()) {
+                            addReference(hash, referrer);
+                        }
+                    }
+                }
+                Files.delete(list.toPath());
+            }
+        }
+    }
+
+    private void addReference(String hash, String referrer) throws IOException {
+        File builds = buildsDirectory(hash);
+        if (!builds.isDirectory() && !builds.mkdirs()) {
+            throw new IOException("Cannot create " + builds);
+        }
+        File marker = new File(builds, encode(referrer));
+        if (!marker.exists() && !marker.createNewFile() && !marker.exists()) {
+            throw new IOException("Cannot create " + marker);
+        }
+        File index = indexFile(referrer);
+        File parent = index.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        Files.write(index.toPath(), hash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readHash(File index) throws IOException {
+        String hash = new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8).trim();
+        return HASH.matcher(hash).matches() ? hash : null;
+    }
+
+    private static boolean isEmpty(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            return true;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.toPath())) {
+            return !entries.iterator().hasNext();
+        }
+    }
+
+    /**
+     * Returns the index file of a build: {@code jobs/<item>/.../<number>}.
+     */
+    private File indexFile(String referrer) {
+        int separator = referrer.lastIndexOf('#');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Not a build id: " + referrer);
+        }
+        return new File(itemDirectory(referrer.substring(0, separator)), encode(referrer.substring(separator + 1)));
+    }
+
+    private File itemDirectory(String fullName) {
+        File directory = new File(root, JOBS_DIRECTORY);
+        for (String name : fullName.split("/")) {
+            directory = new File(directory, encode(name));
+        }
+        return directory;
+    }
+
+    /**
+     * Encodes a name into a file name that is never {@code .} or {@code ..} and holds no separators.
+     */
+    private static String encode(String name) {
+        try {
+            String encoded = URLEncoder.encode(name, StandardCharsets.UTF_8.name());
+            return encoded.replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private File snapshotFile(String hash) {
+        return new File(directory(hash), hash + SNAPSHOT_SUFFIX);
+    }
+
+    private File buildsDirectory(String hash) {
+        return new File(directory(hash), hash + BUILDS_SUFFIX);
+    }
+
+    private File directory(String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not a snapshot hash: " + hash);
+        }
+        return new File(root, hash.substring(0, 2));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.util;
+
+import hudson.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds a stable SHA-256 hash over a sequence of configuration values.
+ *
+ * Every value is written with a type marker and a length prefix, so that
+ * {@code ("ab", "c")} and {@code ("a", "bc")} never produce the same hash, and a
+ * {@code null} value is distinguishable from an empty string.
+ */
+public final class ConfigDigest {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+
+    private final MessageDigest digest;
+
+    public ConfigDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Add a string value to the hash.
+     *
+     * @param value value to be added, may be {@code null}
+     * @return this digest
+     */
+    public ConfigDigest add(String value) {
+        if (value == null) {
+            digest.update(NULL);
+            return this;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(STRING);
+        updateInt(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    /**
+     * Add an int value to the hash.
+     *
+     * @param value value to be added
+     * @return this digest
+     */
+    public ConfigDigest add(int value) {
+        digest.update(INT);
+        updateInt(value);
+        return this;
+    }
+
+    /**
+     * Add a boolean value to the hash.
+     *
+     * @param value value to be added
+     * @return this digest
+     */
+    public ConfigDigest add(boolean value) {
+        return add(value ? 1 : 0);
+    }
+
+    /**
+     * Complete the hash computation. The digest must not be used afterwards.
+     *
+     * @return the lower case hex encoded hash
+     */
+    public String hex() {
+        return Util.toHexString(digest.digest());
+    }
+
+    private void updateInt(int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+}
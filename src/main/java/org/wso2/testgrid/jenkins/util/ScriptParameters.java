@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parser for the 'Input Parameters' text of infrastructure and deployment scripts.
+ *
+ * The text holds one {@code key=value} pair per line and is parsed in a single pass:
+ * <ul>
+ *     <li>the key ends at the first {@code =}, so values may contain {@code =} themselves;</li>
+ *     <li>keys and unquoted values are trimmed, and unquoted values are taken literally;</li>
+ *     <li>a value enclosed in double or single quotes keeps its surrounding white space and
+ *     supports the {@code \\}, {@code \"}, {@code \'}, {@code \n}, {@code \r} and {@code \t} escapes;</li>
+ *     <li>a key may be quoted the same way, so that it can hold {@code =}, start with {@code #} or
+ *     {@code !}, or be empty;</li>
+ *     <li>blank lines, lines without {@code =} or without a key, and lines starting with
+ *     {@code #} or {@code !} are ignored;</li>
+ *     <li>when a key repeats, the last value wins.</li>
+ * </ul>
+ */
+public final class ScriptParameters {
+
+    private ScriptParameters() {
+    }
+
+    /**
+     * Parse the given parameters text.
+     *
+     * @param parameters parameters text, may be {@code null}
+     * @return an unmodifiable map of the parameters, in the order they first appear
+     */
+    public static Map<String, String> parse(String parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        StringBuilder buffer = new StringBuilder();
+        int length = parameters.length();
+        int position = 0;
+        while (position < length) {
+            int lineEnd = lineEnd(parameters, position, length);
+            parseLine(parameters, position, lineEnd, values, buffer);
+            position = nextLine(parameters, lineEnd, length);
+        }
+        return values.isEmpty() ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Format parameters as text that {@link #parse(String)} reads back into the same map.
+     * Keys and values are quoted only when they would not survive parsing unquoted.
+     *
+     * @param parameters parameters to format, may be {@code null}
+     * @return the parameters text, one {@code key=value} pair per line
+     */
+    public static String format(Map<String, String> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            String key = parameter.getKey() == null ? "" : parameter.getKey();
+            if (keyNeedsQuotes(key)) {
+                quote(key, text);
+            } else {
+                text.append(key);
+            }
+            text.append('=');
+            String value = parameter.getValue() == null ? "" : parameter.getValue();
+            if (needsQuotes(value)) {
+                quote(value, text);
+            } else {
+                text.append(value);
+            }
+        }
+        return text.toString();
+    }
+
+    private static boolean keyNeedsQuotes(String key) {
+        if (key.isEmpty()) {
+            return true;
+        }
+        char first = key.charAt(0);
+        return first == '#' || first == '!' || key.indexOf('=') >= 0 || needsQuotes(key);
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (Character.isWhitespace(first) || Character.isWhitespace(value.charAt(value.length() - 1))
+                || first == '"' || first == '\'') {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void quote(String value, StringBuilder text) {
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\n':
+                    text.append("\\n");
+                    break;
+                case '\r':
+                    text.append("\\r");
+                    break;
+                case '\t':
+                    text.append("\\t");
+                    break;
+                case '\\':
+                case '"':
+                    text.append('\\').append(c);
+                    break;
+                default:
+                    text.append(c);
+                    break;
+            }
+        }
+        text.append('"');
+    }
+
+    private static void parseLine(String text, int start, int end, Map<String, String> values, StringBuilder buffer) {
+        int position = skipWhitespace(text, start, end);
+        if (position == end) {
+            return;
+        }
+        char first = text.charAt(position);
+        if (first == '#' || first == '!') {
+            return;
+        }
+        String key;
+        int separator;
+        if (first == '"' || first == '\'') {
+            separator = skipWhitespace(text, unquote(text, position, end, buffer), end);
+            if (separator == end || text.charAt(separator) != '=') {
+                return;
+            }
+            key = buffer.toString();
+        } else {
+            separator = indexOf(text, '=', position, end);
+            if (separator < 0) {
+                return;
+            }
+            int keyEnd = trimEnd(text, position, separator);
+            if (keyEnd == position) {
+                return;
+            }
+            key = text.substring(position, keyEnd);
+        }
+
+        int valueStart = skipWhitespace(text, separator + 1, end);
+        String value;
+        if (valueStart < end && (text.charAt(valueStart) == '"' || text.charAt(valueStart) == '\'')) {
+            unquote(text, valueStart, end, buffer);
+            value = buffer.toString();
+        } else {
+            value = text.substring(valueStart, trimEnd(text, valueStart, end));
+        }
+        values.put(key, value);
+    }
+
+    /**
+     * Read a quoted key or value into the buffer, up to the matching quote or the end of the line
+     * if the quote is not closed.
+     *
+     * @return the position after the closing quote
+     */
+    private static int unquote(String text, int start, int end, StringBuilder buffer) {
+        char quote = text.charAt(start);
+        buffer.setLength(0);
+        int position = start + 1;
+        while (position < end) {
+            char c = text.charAt(position++);
+            if (c == quote) {
+                break;
+            }
+            if (c == '\\' && position < end) {
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        buffer.append('\n');
+                        break;
+                    case 'r':
+                        buffer.append('\r');
+                        break;
+                    case 't':
+                        buffer.append('\t');
+                        break;
+                    case '\\':
+                    case '"':
+                    case '\'':
+                        buffer.append(escaped);
+                        break;
+                    default:
+                        buffer.append('\\').append(escaped);
+                        break;
+                }
+            } else {
+                buffer.append(c);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns the position of the first occurrence of a character within a line, or {@code -1}.
+     */
+    private static int indexOf(String text, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lineEnd(String text, int start, int length) {
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static int nextLine(String text, int lineEnd, int length) {
+        if (lineEnd < length && text.charAt(lineEnd) == '\r' && lineEnd + 1 < length
+                && text.charAt(lineEnd + 1) == '\n') {
+            return lineEnd + 2;
+        }
+        return lineEnd + 1;
+    }
+
+    private static int skipWhitespace(String text, int start, int end) {
+        int position = start;
+        while (position < end && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int trimEnd(String text, int start, int end) {
+        int position = end;
+        while (position > start && Character.isWhitespace(text.charAt(position - 1))) {
+            position--;
+        }
+        return position;
+    }
+}
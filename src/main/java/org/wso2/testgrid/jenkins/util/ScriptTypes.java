@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.util;
+
+import hudson.Util;
+import org.wso2.testgrid.common.config.Script;
+
+import java.util.Locale;
+
+/**
+ * Conversion of the script types entered in the job configuration.
+ */
+public final class ScriptTypes {
+
+    private ScriptTypes() {
+    }
+
+    /**
+     * @param type script type name, case insensitive, may be {@code null}
+     * @return the script type, or {@code null} if none is given
+     * @throws IllegalArgumentException if there is no such script type
+     */
+    public static Script.ScriptType valueOf(String type) {
+        String trimmed = Util.fixEmptyAndTrim(type);
+        return trimmed == null ? null : Script.ScriptType.valueOf(trimmed.toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Pool of the strings held by the TestGrid configuration model.
+ *
+ * Thousands of jobs repeat the same repository URLs, branches, file names and parameter blocks.
+ * The model passes its strings through this pool when it is constructed or read from disk, so
+ * that equal strings share one instance. The pool holds its strings weakly.
+ */
+public final class StringPool {
+
+    /**
+     * Turns pooling off, to compare the heap footprint with and without it.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(StringPool.class.getName() + ".disabled");
+
+    private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+    private StringPool() {
+    }
+
+    /**
+     * @param value string to pool, may be {@code null}
+     * @return the pooled instance equal to the given string
+     */
+    public static String intern(String value) {
+        if (value == null || DISABLED) {
+            return value;
+        }
+        return STRINGS.intern(value);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/*
+ * Validates the TestGrid section of the job configuration form with a single request to
+ * TestgridJobProperty.PropertyImpl#doValidateForm when the page loads and whenever the form
+ * changes, and shows the messages below the fields they belong to.
+ */
+(function () {
+    var DELAY = 800;
+
+    /*
+     * Path of a field as used by the server, e.g. infrastructureConfigs[0].scriptConfigs[1].file.
+     */
+    function pathOf(input) {
+        var name = input.getAttribute("name");
+        if (!name || name.indexOf("_.") !== 0) {
+            return null;
+        }
+        var path = name.substring(2);
+        for (var e = input.parentNode; e && e.tagName !== "FORM"; e = e.parentNode) {
+            if (e.nodeType === 1 && Element.hasClassName(e, "repeated-chunk")) {
+                var index = 0;
+                for (var s = e.previousSibling; s; s = s.previousSibling) {
+                    if (s.nodeType === 1 && Element.hasClassName(s, "repeated-chunk")) {
+                        index++;
+                    }
+                }
+                path = e.getAttribute("name") + "[" + index + "]." + path;
+            }
+        }
+        return path;
+    }
+
+    function show(form, fields) {
+        var inputs = form.querySelectorAll("input, textarea, select");
+        for (var i = 0; i < inputs.length; i++) {
+            var path = pathOf(inputs[i]);
+            if (path === null || !fields.hasOwnProperty(path)) {
+                continue;
+            }
+            var area = findFollowingTR(inputs[i], "validation-error-area");
+            if (area && area.firstChild && area.firstChild.nextSibling) {
+                updateValidationArea(area.firstChild.nextSibling, fields[path]);
+            }
+        }
+    }
+
+    function validate(form, url) {
+        buildFormTree(form);
+        new Ajax.Request(url, {
+            method: "post",
+            parameters: {json: form.elements["json"].value},
+            onSuccess: function (rsp) {
+                show(form, rsp.responseText.evalJSON().fields);
+            }
+        });
+    }
+
+    Behaviour.specify("DIV.testgrid-validation", "testgrid-validation", 0, function (marker) {
+        var form = findAncestor(marker, "FORM");
+        var url = marker.getAttribute("data-url");
+        var timer = null;
+        var schedule = function () {
+            if (timer !== null) {
+                window.clearTimeout(timer);
+            }
+            timer = window.setTimeout(function () {
+                timer = null;
+                validate(form, url);
+            }, DELAY);
+        };
+        form.addEventListener("change", schedule);
+        form.addEventListener("click", function (e) {
+            if (e.target.tagName === "BUTTON") {
+                schedule();
+            }
+        });
+        schedule();
+    });
+})();
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import hudson.model.Items;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestgridJobPropertyConverterTest {
+
+    /**
+     * A property as written by the reflection based converter, before the compact layout.
+     */
+    private static final String REFLECTION_LAYOUT = "<org.wso2.testgrid.jenkins.TestgridJobProperty>"
+            + "<infrastructureConfigs>"
+            + "<org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig>"
+            + "<name>aws</name><gitURL>https://example.com/infra.git</gitURL><gitBranch>master</gitBranch>"
+            + "<description>AWS stack</description>"
+            + "<scriptConfigs><org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig>"
+            + "<name>stack</name><file>stack.yaml</file><parameters>region=us-east-1\nsize=2</parameters>"
+            + "<iacProvider>CLOUDFORMATION</iacProvider>"
+            + "</org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig></scriptConfigs>"
+            + "</org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig>"
+            + "<org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig>"
+            + "<name>local</name><template>shared</template>"
+            + "</org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig>"
+            + "</infrastructureConfigs>"
+            + "<deploymentConfigs><org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig>"
+            + "<deploymentPatternConfigs><org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig>"
+            + "<name>single-node</name><gitURL>https://example.com/deploy.git</gitURL>"
+            + "<deploymentPatternScripts><org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript>"
+            + "<name>deploy</name><type>SHELL</type><file>deploy.sh</file><parameters>nodes=1</parameters>"
+            + "</org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript></deploymentPatternScripts>"
+            + "</org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig></deploymentPatternConfigs>"
+            + "</org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig></deploymentConfigs>"
+            + "<scenarioList><org.wso2.testgrid.jenkins.scenario.JenkinsScenario>"
+            + "<name>login</name><dir>scenarios/login</dir><alwaysRun>true</alwaysRun>"
+            + "</org.wso2.testgrid.jenkins.scenario.JenkinsScenario></scenarioList>"
+            + "<scenarioGitURL>https://example.com/scenarios.git</scenarioGitURL>"
+            + "<scenarioTestType>TESTNG</scenarioTestType><scenarioGitBranch>master</scenarioGitBranch>"
+            + "<excludeParameters><org.wso2.testgrid.jenkins.TestgridJobProperty_-ExcludeParameter>"
+            + "<excludeParameter>CentOS</excludeParameter>"
+            + "</org.wso2.testgrid.jenkins.TestgridJobProperty_-ExcludeParameter></excludeParameters>"
+            + "<useIncludeParameters>false</useIncludeParameters><useExcludeParameters>true</useExcludeParameters>"
+            + "<emailToList>qa@example.com</emailToList><selectChangedScenarios>true</selectChangedScenarios>"
+            + "</org.wso2.testgrid.jenkins.TestgridJobProperty>";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void reflectionLayoutIsRewrittenCompactWithoutLosingSettings() {
+        TestgridJobProperty read = (TestgridJobProperty) Items.XSTREAM2.fromXML(REFLECTION_LAYOUT);
+        assertSettings(read);
+
+        String compact = Items.XSTREAM2.toXML(read);
+        assertTrue(compact, compact.contains(" v=\"" + TestgridJobPropertyConverter.VERSION + "\""));
+        assertFalse(compact, compact.contains("JenkinsInfrastructureConfig"));
+
+        TestgridJobProperty reread = (TestgridJobProperty) Items.XSTREAM2.fromXML(compact);
+        assertSettings(reread);
+        assertEquals(compact, Items.XSTREAM2.toXML(reread));
+        assertEquals(read.getTestgridYaml(), reread.getTestgridYaml());
+    }
+
+    private static void assertSettings(TestgridJobProperty property) {
+        assertEquals("https://example.com/scenarios.git", property.getScenarioGitURL());
+        assertEquals("master", property.getScenarioGitBranch());
+        assertEquals("TESTNG", property.getScenarioTestType());
+        assertEquals("qa@example.com", property.getEmailToList());
+        assertTrue(property.isSelectChangedScenarios());
+        assertFalse(property.getUseIncludeParameters());
+        assertTrue(property.getUseExcludeParameters());
+        assertNull(property.getIncludeParameters());
+        assertEquals(1, property.getExcludeParameters().size());
+        assertEquals("CentOS", property.getExcludeParameters().get(0).getExcludeParameter());
+
+        assertEquals(2, property.getInfrastructureConfigs().size());
+        JenkinsInfrastructureConfig aws = property.getInfrastructureConfigs().get(0);
+        assertEquals("aws", aws.getName());
+        assertEquals("https://example.com/infra.git", aws.getGitURL());
+        assertEquals("master", aws.getGitBranch());
+        assertEquals("AWS stack", aws.getDescription());
+        assertNull(aws.getTemplate());
+        JenkinsScriptConfig stack = aws.getScriptConfigs().get(0);
+        assertEquals("stack", stack.getName());
+        assertEquals("stack.yaml", stack.getFile());
+        assertEquals("CLOUDFORMATION", stack.getIacProvider());
+        assertEquals("region=us-east-1\nsize=2", stack.getParameters());
+        JenkinsInfrastructureConfig local = property.getInfrastructureConfigs().get(1);
+        assertEquals("local", local.getName());
+        assertEquals("shared", local.getTemplate());
+
+        JenkinsDeploymentPatternConfig pattern =
+                property.getDeploymentConfigs().get(0).getDeploymentPatternConfigs().get(0);
+        assertEquals("single-node", pattern.getName());
+        assertEquals("https://example.com/deploy.git", pattern.getGitURL());
+        JenkinsDeploymentPatternScript deploy = pattern.getDeploymentPatternScripts().get(0);
+        assertEquals("deploy", deploy.getName());
+        assertEquals("SHELL", deploy.getType());
+        assertEquals("deploy.sh", deploy.getFile());
+        assertEquals("nodes=1", deploy.getParameters());
+
+        JenkinsScenario scenario = property.getScenarioList().get(0);
+        assertEquals("login", scenario.getName());
+        assertEquals("scenarios/login", scenario.getDir());
+        assertTrue(scenario.isAlwaysRun());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternConfig;
+import org.wso2.testgrid.jenkins.deployment.JenkinsDeploymentPatternScript;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+import org.wso2.testgrid.jenkins.scenario.JenkinsScenario;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestgridYamlReaderTest {
+
+    private static final String YAML = "infrastructureConfig:\n"
+            + "  provisioners:\n"
+            + "    - name: local\n"
+            + "      remoteRepository: -b master https://example.com/infra.git\n"
+            + "    - name: aws\n"
+            + "deploymentConfig:\n"
+            + "  deploymentPatterns:\n"
+            + "    - name: single-node\n"
+            + "scenarioConfig:\n"
+            + "  remoteRepository: https://example.com/scenarios.git\n"
+            + "  testType: INTEGRATION\n"
+            + "  scenarios:\n"
+            + "    - name: login\n"
+            + "      dir: scenarios/login\n"
+            + "    - name: signup\n"
+            + "      dir: scenarios/signup\n";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void settingsTheFileDoesNotHoldAreCarriedOver() throws IOException {
+        JenkinsInfrastructureConfig local = new JenkinsInfrastructureConfig(null, null, null, "local",
+                Collections.<JenkinsScriptConfig>emptyList());
+        local.setTemplate("shared");
+        JenkinsDeploymentPatternConfig pattern = new JenkinsDeploymentPatternConfig("single-node", null,
+                Collections.<JenkinsDeploymentPatternScript>emptyList(), null, null);
+        pattern.setTemplate("cluster");
+        JenkinsScenario login = new JenkinsScenario("login", null, "scenarios/login");
+        login.setAlwaysRun(true);
+        TestgridJobProperty existing = new TestgridJobProperty(new ArrayList<>(Arrays.asList(local)),
+                new ArrayList<>(Arrays.asList(new JenkinsDeploymentConfig(new ArrayList<>(Arrays.asList(pattern))))),
+                null, null, false, false, new ArrayList<>(Arrays.asList(login)), "https://example.com/old.git",
+                "JMETER", "master", "qa@example.com");
+        existing.setSelectChangedScenarios(true);
+
+        TestgridJobProperty imported = TestgridYamlReader.read(new StringReader(YAML), existing);
+
+        assertEquals("qa@example.com", imported.getEmailToList());
+        assertEquals("JMETER", imported.getScenarioTestType());
+        assertTrue(imported.isSelectChangedScenarios());
+        assertEquals("https://example.com/scenarios.git", imported.getScenarioGitURL());
+        assertEquals("shared", imported.getInfrastructureConfigs().get(0).getTemplate());
+        assertEquals("https://example.com/infra.git", imported.getInfrastructureConfigs().get(0).getGitURL());
+        assertNull(imported.getInfrastructureConfigs().get(1).getTemplate());
+        assertEquals("cluster", imported.getDeploymentConfigs().get(0).getDeploymentPatternConfigs().get(0)
+                .getTemplate());
+        assertTrue(imported.getScenarioList().get(0).isAlwaysRun());
+        assertFalse(imported.getScenarioList().get(1).isAlwaysRun());
+    }
+
+    @Test
+    public void withoutAnExistingConfigurationDefaultsAreUsed() throws IOException {
+        TestgridJobProperty imported = TestgridYamlReader.read(new StringReader(YAML), null);
+
+        assertNull(imported.getEmailToList());
+        assertEquals(TestgridJobProperty.TESTNG, imported.getScenarioTestType());
+        assertFalse(imported.isSelectChangedScenarios());
+        assertNull(imported.getInfrastructureConfigs().get(0).getTemplate());
+        assertFalse(imported.getScenarioList().get(0).isAlwaysRun());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.environment;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig;
+import org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EnvironmentPoolTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    /**
+     * A local stand-in provisioner, as described in the README.
+     */
+    private static final String SCRIPT = "case \"$1\" in\n"
+            + "    create)  echo \"STACK_URL=http://localhost:8080\""
+            + " > \"$TESTGRID_ENVIRONMENT_DIR/environment.properties\" ;;\n"
+            + "    check)   test -f \"$TESTGRID_ENVIRONMENT_DIR/environment.properties\" ;;\n"
+            + "    destroy) rm -f \"$TESTGRID_ENVIRONMENT_DIR/environment.properties\" ;;\n"
+            + "esac\n";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final TaskListener listener = StreamTaskListener.fromStdout();
+    private final EnvironmentPool pool = new EnvironmentPool();
+    private JenkinsInfrastructureConfig infraConfig;
+    private FilePath source;
+
+    @Before
+    public void createProvisioner() throws Exception {
+        source = j.jenkins.getRootPath().child("provisioner");
+        source.child("stack.sh").write(SCRIPT, "UTF-8");
+        infraConfig = new JenkinsInfrastructureConfig("https://example.com/stack.git", "master", "", "local-stack",
+                Collections.singletonList(new JenkinsScriptConfig("stack", "stack.sh", "", "SHELL", "")));
+    }
+
+    @Test
+    public void releasedEnvironmentIsReused() throws Exception {
+        PooledEnvironment first = pool.lease(infraConfig, COMMIT, source, "job", "job#1", listener);
+        assertEquals("http://localhost:8080", EnvironmentPool.variables(source, first).get("STACK_URL"));
+        pool.release(first.getId());
+
+        PooledEnvironment second = pool.lease(infraConfig, COMMIT, source, "job", "job#2", listener);
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(2, second.getLeases());
+    }
+
+    @Test
+    public void environmentIsOnlyReusedByItsJob() throws Exception {
+        PooledEnvironment first = pool.lease(infraConfig, COMMIT, source, "job", "job#1", listener);
+        pool.release(first.getId());
+
+        PooledEnvironment other = pool.lease(infraConfig, COMMIT, source, "other", "other#1", listener);
+
+        assertNotEquals(first.getId(), other.getId());
+        assertEquals(1, other.getLeases());
+    }
+
+    @Test
+    public void unhealthyEnvironmentIsDestroyedAndNotLeased() throws Exception {
+        PooledEnvironment first = pool.lease(infraConfig, COMMIT, source, "job", "job#1", listener);
+        pool.release(first.getId());
+        File directory = new File(first.getDirectory());
+        assertTrue(new File(directory, "environment.properties").delete());
+
+        PooledEnvironment second = pool.lease(infraConfig, COMMIT, source, "job", "job#2", listener);
+
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(1, first.getLeases());
+        assertTrue(first.isRetired());
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (pool.getEnvironments().contains(first) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertFalse(pool.getEnvironments().contains(first));
+        assertFalse(directory.exists());
+
+        pool.release(second.getId());
+        assertEquals(second.getId(), pool.lease(infraConfig, COMMIT, source, "job", "job#3", listener).getId());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GitMirrorCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final PrintStream log = System.out;
+
+    @BeforeClass
+    public static void allowLocalRepositories() {
+        System.setProperty(TestRepository.ALLOW_LOCAL, "true");
+    }
+
+    @AfterClass
+    public static void disallowLocalRepositories() {
+        System.clearProperty(TestRepository.ALLOW_LOCAL);
+    }
+
+    @Test
+    public void existingCheckoutIsReused() throws Exception {
+        TestRepository origin = TestRepository.create(temp.newFolder("origin"));
+        GitMirrorCache cache = new GitMirrorCache(temp.newFolder("cache"), Long.MAX_VALUE);
+        File checkout = new File(temp.getRoot(), "checkout");
+
+        cache.checkout(origin.url(), "master", checkout, log);
+        File marker = new File(checkout, ".git/testgrid-test-marker");
+        assertTrue(marker.createNewFile());
+        origin.commit("README.md", "second");
+        cache.checkout(origin.url(), "master", checkout, log);
+
+        assertTrue("the checkout was cloned again", marker.isFile());
+        assertEquals("second", read(new File(checkout, "README.md")));
+    }
+
+    @Test
+    public void leastRecentlyUsedMirrorIsEvictedOverBudget() throws Exception {
+        TestRepository first = TestRepository.create(temp.newFolder("first"));
+        TestRepository second = TestRepository.create(temp.newFolder("second"));
+        GitMirrorCache cache = new GitMirrorCache(temp.newFolder("cache"), 1);
+
+        File firstMirror = cache.update(first.url(), log);
+        assertTrue(firstMirror.isDirectory());
+        File secondMirror = cache.update(second.url(), log);
+
+        assertFalse(firstMirror.exists());
+        assertTrue(secondMirror.isDirectory());
+    }
+
+    @Test
+    public void mirrorSizeIsRecordedAfterFetch() throws Exception {
+        TestRepository origin = TestRepository.create(temp.newFolder("origin"));
+        GitMirrorCache cache = new GitMirrorCache(temp.newFolder("cache"), Long.MAX_VALUE);
+
+        File mirror = cache.update(origin.url(), log);
+        long size = Long.parseLong(read(new File(mirror, "testgrid-usage")));
+        assertTrue("size " + size, size > 0);
+        assertEquals(GitMirrorCache.sizeOf(mirror), size);
+    }
+
+    @Test
+    public void directoryThatIsNotACheckoutIsKept() throws Exception {
+        TestRepository origin = TestRepository.create(temp.newFolder("origin"));
+        GitMirrorCache cache = new GitMirrorCache(temp.newFolder("cache"), Long.MAX_VALUE);
+        File workspace = temp.newFolder("workspace");
+        File kept = new File(workspace, "kept.txt");
+        assertTrue(kept.createNewFile());
+
+        try {
+            cache.checkout(origin.url(), "master", workspace, log);
+            fail("checked out into a directory with other files");
+        } catch (IOException e) {
+            assertTrue(kept.isFile());
+        }
+    }
+
+    @Test
+    public void optionsAreNotTakenForUrlsOrRevisions() throws Exception {
+        TestRepository origin = TestRepository.create(temp.newFolder("origin"));
+        GitMirrorCache cache = new GitMirrorCache(temp.newFolder("cache"), Long.MAX_VALUE);
+        File checkout = new File(temp.getRoot(), "checkout");
+
+        try {
+            cache.checkout("--upload-pack=touch " + temp.getRoot() + "/pwned", "master", checkout, log);
+            fail("accepted an option as URL");
+        } catch (IOException e) {
+            assertFalse(new File(temp.getRoot(), "pwned").exists());
+        }
+        try {
+            cache.checkout(origin.url(), "--output=" + temp.getRoot() + "/pwned", checkout, log);
+            fail("accepted an option as revision");
+        } catch (IOException e) {
+            assertFalse(new File(temp.getRoot(), "pwned").exists());
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
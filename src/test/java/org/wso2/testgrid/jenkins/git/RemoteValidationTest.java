@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import hudson.util.FormValidation;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RemoteValidationTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @After
+    public void disallowLocalRepositories() {
+        System.clearProperty(TestRepository.ALLOW_LOCAL);
+    }
+
+    @Test
+    public void missingBranchIsReported() throws Exception {
+        System.setProperty(TestRepository.ALLOW_LOCAL, "true");
+        TestRepository origin = TestRepository.create(temp.newFolder("origin"));
+
+        assertNull(awaitListing(origin.url()).getMessage());
+        FormValidation missing = RemoteValidation.checkBranch(null, origin.url(), "*/no-such-branch");
+        FormValidation existing = RemoteValidation.checkBranch(null, origin.url(), "*/master");
+
+        assertEquals(FormValidation.Kind.ERROR, missing.kind);
+        assertEquals("Branch no-such-branch does not exist in " + origin.url(), missing.getMessage());
+        assertEquals(FormValidation.Kind.OK, existing.kind);
+    }
+
+    @Test
+    public void localRepositoriesAndOptionsAreRejected() throws Exception {
+        TestRepository origin = TestRepository.create(temp.newFolder("origin"));
+
+        assertEquals(FormValidation.Kind.ERROR, RemoteValidation.checkUrl(null, origin.url()).kind);
+        assertEquals(FormValidation.Kind.ERROR, RemoteValidation.checkUrl(null, temp.getRoot().getPath()).kind);
+        assertEquals(FormValidation.Kind.ERROR, RemoteValidation.checkUrl(null, "--upload-pack=id").kind);
+        assertEquals(FormValidation.Kind.ERROR, RemoteValidation.checkUrl(null, "ext::sh -c id").kind);
+        assertEquals(FormValidation.Kind.OK,
+                RemoteValidation.checkBranch(null, origin.url(), "*/no-such-branch").kind);
+    }
+
+    @Test
+    public void remoteTransportsAreAccepted() throws Exception {
+        for (String url : new String[]{"https://git.example.com/repo.git", "http://git.example.com/repo.git",
+                "ssh://git@git.example.com/repo.git", "git://git.example.com/repo.git",
+                "git@git.example.com:repo.git"}) {
+            assertEquals(url, GitRemote.checkUrl(url));
+        }
+    }
+
+    /**
+     * Validates the URL until its listing is complete, as the form does while the user types.
+     */
+    private static FormValidation awaitListing(String url) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        FormValidation validation = RemoteValidation.checkUrl(null, url);
+        while (validation.kind == FormValidation.Kind.OK && validation.getMessage() != null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            validation = RemoteValidation.checkUrl(null, url);
+        }
+        return validation;
+    }
+}
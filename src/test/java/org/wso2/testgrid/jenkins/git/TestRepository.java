@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A local git repository with a master branch, readable through a {@code file://} URL when
+ * {@code GitRemote.allowLocal} is set.
+ */
+final class TestRepository {
+
+    static final String ALLOW_LOCAL = GitRemote.class.getName() + ".allowLocal";
+
+    private final File directory;
+
+    private TestRepository(File directory) {
+        this.directory = directory;
+    }
+
+    static TestRepository create(File directory) throws IOException, InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        GitCommand.run(directory, "init", "--quiet");
+        GitCommand.run(directory, "symbolic-ref", "HEAD", "refs/heads/master");
+        TestRepository repository = new TestRepository(directory);
+        repository.commit("README.md", "first");
+        return repository;
+    }
+
+    void commit(String path, String content) throws IOException, InterruptedException {
+        Files.write(new File(directory, path).toPath(), content.getBytes(StandardCharsets.UTF_8));
+        GitCommand.run(directory, "add", "--", path);
+        GitCommand.run(directory, "-c", "user.name=TestGrid", "-c", "user.email=testgrid@example.com",
+                "commit", "--quiet", "-m", "update " + path);
+    }
+
+    String url() {
+        return directory.toURI().toString().replaceFirst("^file:/+", "file:///");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.infrastructure;
+
+import hudson.model.Items;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class JenkinsInfrastructureConfigTest {
+
+    private static final String PROVISIONER = "<org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig>"
+            + "<name>aws</name><gitURL>https://example.com/infra.git</gitURL><gitBranch>master</gitBranch>"
+            + "<scriptConfigs><org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig>"
+            + "<name>stack</name><file>stack.yaml</file><parameters>region=us-east-1\nsize=2</parameters>"
+            + "<iacProvider>CLOUDFORMATION</iacProvider>"
+            + "</org.wso2.testgrid.jenkins.infrastructure.JenkinsScriptConfig></scriptConfigs>"
+            + "</org.wso2.testgrid.jenkins.infrastructure.JenkinsInfrastructureConfig>";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void configurationsReadFromDiskShareTheirStrings() {
+        JenkinsInfrastructureConfig first = (JenkinsInfrastructureConfig) Items.XSTREAM2.fromXML(PROVISIONER);
+        JenkinsInfrastructureConfig second = (JenkinsInfrastructureConfig) Items.XSTREAM2.fromXML(PROVISIONER);
+
+        assertNotSame(first, second);
+        assertSame(first.getName(), second.getName());
+        assertSame(first.getGitURL(), second.getGitURL());
+        assertSame(first.getGitBranch(), second.getGitBranch());
+        JenkinsScriptConfig firstScript = first.getScriptConfigs().get(0);
+        JenkinsScriptConfig secondScript = second.getScriptConfigs().get(0);
+        assertSame(firstScript.getFile(), secondScript.getFile());
+        assertSame(firstScript.getParameters(), secondScript.getParameters());
+        assertSame(firstScript.getIacProviderType(), secondScript.getIacProviderType());
+    }
+
+    @Test
+    public void configurationsBuiltFromTheFormShareTheirStrings() {
+        JenkinsInfrastructureConfig read = (JenkinsInfrastructureConfig) Items.XSTREAM2.fromXML(PROVISIONER);
+        JenkinsInfrastructureConfig built = new JenkinsInfrastructureConfig(new String("https://example.com/infra.git"),
+                new String("master"), null, new String("aws"), Collections.<JenkinsScriptConfig>emptyList());
+
+        assertSame(read.getGitURL(), built.getGitURL());
+        assertSame(read.getGitBranch(), built.getGitBranch());
+        assertSame(read.getName(), built.getName());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedSettersStillApply() {
+        JenkinsScriptConfig script = new JenkinsScriptConfig("stack", "stack.yaml", null, "SHELL", "a=1");
+        assertEquals("1", script.getParsedParameters().get("a"));
+
+        script.setParameters("a=2");
+        script.setIacProvider("cloudformation");
+        script.setName("renamed");
+
+        assertEquals("2", script.getParsedParameters().get("a"));
+        assertEquals("CLOUDFORMATION", script.getIacProvider());
+        assertEquals("renamed", script.getName());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.mail;
+
+import org.junit.Test;
+import org.wso2.testgrid.jenkins.results.CellResult;
+
+import javax.mail.MessagingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReportMailerTest {
+
+    @Test
+    public void reportsWithinTheBatchWindowAreSentAsOneMail() throws Exception {
+        RecordingTransport transport = new RecordingTransport(0);
+        ReportMailer mailer = new ReportMailer(transport, 0);
+
+        mailer.submit("b@example.com, a@example.com", report("job #1", "SUCCESS"), 1);
+        mailer.submit("a@example.com b@example.com", report("job #2", "FAILURE"), 1);
+
+        // both reports are in the batch before its window closes, so the one mail covers both builds
+        assertEquals(Collections.singletonList("TestGrid: 2 builds, 1 not successful"), transport.await(1));
+        assertEquals(1, transport.attempts());
+    }
+
+    @Test
+    public void failedMailIsRetried() throws Exception {
+        RecordingTransport transport = new RecordingTransport(2);
+        ReportMailer mailer = new ReportMailer(transport, 0);
+
+        mailer.submit("a@example.com", report("job #1", "SUCCESS"), 0);
+
+        assertEquals(Collections.singletonList("TestGrid job #1: SUCCESS"), transport.await(1));
+        assertEquals(3, transport.attempts());
+    }
+
+    private static BuildReport report(String name, String result) {
+        return new BuildReport(name, null, result, Collections.<String, CellResult>emptyMap());
+    }
+
+    /**
+     * Records the subjects of the mails it delivers, after failing a number of attempts. Tests wait
+     * on it for the mails they expect, for a bounded time, instead of sleeping.
+     */
+    private static final class RecordingTransport implements MailTransport {
+
+        private final List<String> subjects = new ArrayList<>();
+        private int failures;
+        private int attempts;
+
+        RecordingTransport(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public synchronized void send(String recipients, String subject, String body) throws MessagingException {
+            attempts++;
+            if (failures > 0) {
+                failures--;
+                throw new MessagingException("refused");
+            }
+            subjects.add(subject);
+            notifyAll();
+        }
+
+        synchronized List<String> await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (subjects.size() < count && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            return new ArrayList<>(subjects);
+        }
+
+        synchronized int attempts() {
+            return attempts;
+        }
+    }
+}
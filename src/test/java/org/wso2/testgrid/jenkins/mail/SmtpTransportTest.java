@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.mail;
+
+import hudson.util.Secret;
+import jenkins.model.JenkinsLocationConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.wso2.testgrid.jenkins.TestgridGlobalConfiguration;
+
+import javax.mail.MessagingException;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmtpTransportTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void mailIsSentThroughTheConfiguredServerWithAuthentication() throws Exception {
+        try (SmtpServer server = new SmtpServer(false)) {
+            TestgridGlobalConfiguration globalConfiguration = configure(server);
+            globalConfiguration.setSmtpUsername("tester");
+            globalConfiguration.setSmtpPassword(Secret.fromString("secret"));
+            globalConfiguration.setMailFrom("testgrid@example.com");
+
+            new SmtpTransport().send("a@example.com, b@example.com", "TestGrid job #1: SUCCESS", "job #1: SUCCESS");
+            server.await();
+
+            assertEquals("tester:secret", server.credentials());
+            List<String> commands = server.commands();
+            assertTrue(commands.toString(), commands.contains("MAIL FROM:<testgrid@example.com>"));
+            assertTrue(commands.toString(), commands.contains("RCPT TO:<a@example.com>"));
+            assertTrue(commands.toString(), commands.contains("RCPT TO:<b@example.com>"));
+            assertTrue(server.data(), server.data().contains("Subject: TestGrid job #1: SUCCESS"));
+            assertTrue(server.data(), server.data().contains("job #1: SUCCESS"));
+        }
+    }
+
+    @Test
+    public void senderFallsBackToTheAdministratorAddress() throws Exception {
+        JenkinsLocationConfiguration.get().setAdminAddress("jenkins@example.com");
+        try (SmtpServer server = new SmtpServer(false)) {
+            configure(server);
+
+            new SmtpTransport().send("a@example.com", "subject", "body");
+            server.await();
+
+            assertNull(server.credentials());
+            assertTrue(server.commands().toString(), server.commands().contains("MAIL FROM:<jenkins@example.com>"));
+        }
+    }
+
+    @Test
+    public void startTlsIsRequested() throws Exception {
+        try (SmtpServer server = new SmtpServer(true)) {
+            configure(server).setSmtpStartTls(true);
+
+            try {
+                new SmtpTransport().send("a@example.com", "subject", "body");
+                fail("the stand-in refuses STARTTLS, so the mail must not be sent in plain text");
+            } catch (MessagingException expected) {
+                server.await();
+            }
+
+            assertTrue(server.commands().toString(), server.commands().contains("STARTTLS"));
+            assertFalse(server.commands().toString(), server.commands().contains("DATA"));
+        }
+    }
+
+    private static TestgridGlobalConfiguration configure(SmtpServer server) {
+        TestgridGlobalConfiguration globalConfiguration = TestgridGlobalConfiguration.get();
+        globalConfiguration.setSmtpHost(InetAddress.getLoopbackAddress().getHostAddress());
+        globalConfiguration.setSmtpPort(server.port());
+        globalConfiguration.setSmtpStartTls(false);
+        globalConfiguration.setSmtpUsername(null);
+        globalConfiguration.setSmtpPassword(null);
+        globalConfiguration.setMailFrom(null);
+        return globalConfiguration;
+    }
+
+    /**
+     * Local SMTP stand-in serving one connection. It offers PLAIN and LOGIN authentication, and
+     * STARTTLS if asked to, which it then refuses.
+     */
+    private static final class SmtpServer implements Closeable {
+
+        private final ServerSocket socket;
+        private final boolean startTls;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final List<String> commands = new ArrayList<>();
+        private String credentials;
+        private String data;
+
+        SmtpServer(boolean startTls) throws IOException {
+            this.socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            this.startTls = startTls;
+            Thread thread = new Thread(this::serve, "SMTP stand-in");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("the SMTP conversation did not end", done.await(30, TimeUnit.SECONDS));
+        }
+
+        synchronized List<String> commands() {
+            return new ArrayList<>(commands);
+        }
+
+        synchronized String credentials() {
+            return credentials;
+        }
+
+        synchronized String data() {
+            return data;
+        }
+
+        private void serve() {
+            try (Socket client = socket.accept();
+                 BufferedReader in = new BufferedReader(
+                         new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII)) {
+                reply(out, "220 localhost ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    synchronized (this) {
+                        commands.add(line);
+                    }
+                    String command = line.toUpperCase(Locale.ENGLISH);
+                    if (command.startsWith("EHLO")) {
+                        reply(out, "250-localhost\r\n" + (startTls ? "250-STARTTLS\r\n" : "") + "250 AUTH PLAIN LOGIN");
+                    } else if (command.equals("STARTTLS")) {
+                        reply(out, "454 TLS not available");
+                    } else if (command.startsWith("AUTH PLAIN")) {
+                        String response = argument(line);
+                        if (response == null) {
+                            reply(out, "334 ");
+                            response = in.readLine();
+                        }
+                        String[] parts = decode(response).split("\0");
+                        authenticated(out, parts[1], parts[2]);
+                    } else if (command.startsWith("AUTH LOGIN")) {
+                        String username = argument(line);
+                        if (username == null) {
+                            reply(out, "334 VXNlcm5hbWU6");
+                            username = in.readLine();
+                        }
+                        reply(out, "334 UGFzc3dvcmQ6");
+                        authenticated(out, decode(username), decode(in.readLine()));
+                    } else if (command.equals("DATA")) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder message = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            message.append(line).append('\n');
+                        }
+                        synchronized (this) {
+                            data = message.toString();
+                        }
+                        reply(out, "250 OK");
+                    } else if (command.equals("QUIT")) {
+                        reply(out, "221 Bye");
+                        break;
+                    } else {
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // the client went away; the test reports what was received
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private synchronized void authenticated(Writer out, String username, String password) throws IOException {
+            credentials = username + ":" + password;
+            reply(out, "235 Authentication successful");
+        }
+
+        private static String argument(String line) {
+            String[] words = line.trim().split(" ");
+            return words.length > 2 ? words[2] : null;
+        }
+
+        private static String decode(String base64) {
+            return new String(Base64.getDecoder().decode(base64.trim()), StandardCharsets.UTF_8);
+        }
+
+        private static void reply(Writer out, String reply) throws IOException {
+            out.write(reply + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CellDurationsTest {
+
+    private static final TestgridMatrix MATRIX = TestgridMatrix.expand(Collections.singletonList("aws"),
+            Arrays.asList("single-node", "cluster"), Arrays.asList("login", "search", "checkout"));
+
+    @Test
+    public void durationsAreAveraged() {
+        CellDurations durations = new CellDurations();
+        MatrixCell cell = MATRIX.getCell(0);
+        assertEquals(-1, durations.estimate(cell));
+
+        durations.record(cell, 1000);
+        assertEquals(1000, durations.estimate(cell));
+        durations.record(cell, 2000);
+        assertEquals(1300, durations.estimate(cell));
+    }
+
+    @Test
+    public void newPatternStartsWithTheDurationOfItsScenario() {
+        CellDurations durations = new CellDurations();
+        durations.record(MATRIX.getCell(0), 1000);
+
+        MatrixCell samePattern = MATRIX.getCell(1);
+        MatrixCell sameScenario = MATRIX.getCell(3);
+        assertEquals("login", sameScenario.getScenario());
+        assertEquals(-1, durations.estimate(samePattern));
+        assertEquals(1000, durations.estimate(sameScenario));
+    }
+
+    @Test
+    public void cellsRunLongestFirst() {
+        CellDurations durations = new CellDurations();
+        durations.record(MATRIX.getCell(0), 100);
+        durations.record(MATRIX.getCell(4), 500);
+
+        // 1 and 3 take as long as their scenario, and checkout, which has not run, as the average cell
+        assertArrayEquals(new int[]{1, 4, 2, 5, 0, 3}, durations.longestFirst(MATRIX));
+    }
+
+    @Test
+    public void cellsWithoutHistoryKeepTheirOrder() {
+        CellDurations durations = new CellDurations();
+
+        assertTrue(durations.isEmpty());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, durations.longestFirst(MATRIX));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.matrix;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CellHistoryTest {
+
+    private static final MatrixCell CELL = new MatrixCell(0, "aws", "single-node", "login");
+
+    @Test
+    public void alternatingCellIsFlaky() {
+        CellHistory history = history("PFPFPF");
+
+        assertEquals(1.0, history.flakiness(CELL), 0.0);
+        assertTrue(history.isFlaky(CELL));
+    }
+
+    @Test
+    public void cellThatBrokeOnceIsNotFlaky() {
+        CellHistory history = history("PPPPPPFFFF");
+
+        assertEquals(1.0 / 9, history.flakiness(CELL), 1e-9);
+        assertFalse(history.isFlaky(CELL));
+    }
+
+    @Test
+    public void failureFixedByTheLatestRunIsNotCounted() {
+        CellHistory history = history("PPPPFP");
+
+        assertEquals(0.25, history.flakiness(CELL), 0.0);
+        assertFalse(history.isFlaky(CELL));
+    }
+
+    @Test
+    public void shortHistoryIsNotFlaky() {
+        CellHistory history = history("PFPF");
+
+        assertEquals(1.0, history.flakiness(CELL), 0.0);
+        assertFalse(history.isFlaky(CELL));
+    }
+
+    @Test
+    public void singleFailureIsNotFlaky() {
+        CellHistory history = history("PPPPPPFPPP");
+
+        assertFalse(history.isFlaky(CELL));
+    }
+
+    @Test
+    public void cellWithoutHistoryIsNotFlaky() {
+        CellHistory history = new CellHistory();
+
+        assertEquals(0.0, history.flakiness(CELL), 0.0);
+        assertFalse(history.isFlaky(CELL));
+    }
+
+    @Test
+    public void onlyTheLatestOutcomesAreKept() {
+        CellHistory history = history("FFFFFFFFFFFFFFFFFFFF" + "PPPPPPPPPPPPPPPPPPPP");
+
+        assertEquals(0.0, history.flakiness(CELL), 0.0);
+        assertFalse(history.isFlaky(CELL));
+    }
+
+    /**
+     * Returns a history holding the given outcomes of {@link #CELL}, oldest first.
+     */
+    private static CellHistory history(String outcomes) {
+        CellHistory history = new CellHistory();
+        for (char outcome : outcomes.toCharArray()) {
+            history.record(CELL, outcome == 'P');
+        }
+        return history;
+    }
+}
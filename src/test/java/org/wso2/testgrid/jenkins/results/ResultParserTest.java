@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.results;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ResultParserTest {
+
+    private static CellResult parse(String report) throws IOException {
+        CellResult result = new CellResult();
+        ResultParser.parse(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)), result);
+        return result;
+    }
+
+    @Test
+    public void testNgConfigurationMethodsAreNotCounted() throws IOException {
+        CellResult result = parse("<testng-results><suite><test><class name=\"a.B\">"
+                + "<test-method is-config=\"true\" status=\"PASS\" name=\"setUp\" duration-ms=\"500\"/>"
+                + "<test-method is-config=\"true\" status=\"FAIL\" name=\"tearDown\" duration-ms=\"500\"/>"
+                + "<test-method status=\"PASS\" name=\"passes\" duration-ms=\"10\"/>"
+                + "<test-method status=\"FAIL\" name=\"fails\" duration-ms=\"20\"/>"
+                + "<test-method status=\"SKIP\" name=\"skipped\" duration-ms=\"x\"/>"
+                + "</class></test></suite></testng-results>");
+
+        assertEquals(1, result.getPassed());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getSkipped());
+        assertEquals(30, result.getDurationMillis());
+        assertEquals(Arrays.asList("a.B.fails"), result.getFailures());
+    }
+
+    @Test
+    public void junitSkippedAndErrorCasesAreCounted() throws IOException {
+        CellResult result = parse("<testsuite name=\"s\">"
+                + "<testcase classname=\"a.B\" name=\"passes\" time=\"1,000.5\"/>"
+                + "<testcase classname=\"a.B\" name=\"fails\" time=\"0.25\"><failure message=\"m\"/></testcase>"
+                + "<testcase classname=\"a.B\" name=\"errors\"><error type=\"E\"/></testcase>"
+                + "<testcase classname=\"a.B\" name=\"skipped\"><skipped/></testcase>"
+                + "<testcase name=\"noClass\"><error/><skipped/></testcase>"
+                + "</testsuite>");
+
+        assertEquals(1, result.getPassed());
+        assertEquals(3, result.getFailed());
+        assertEquals(1, result.getSkipped());
+        assertEquals(1000750, result.getDurationMillis());
+        assertEquals(Arrays.asList("a.B.fails", "a.B.errors", "noClass"), result.getFailures());
+    }
+
+    @Test
+    public void junitSuitesOfSuitesAreRead() throws IOException {
+        CellResult result = parse("<testsuites><testsuite><testcase classname=\"a\" name=\"b\"/></testsuite>"
+                + "<testsuite><testcase classname=\"c\" name=\"d\"><skipped/></testcase></testsuite></testsuites>");
+
+        assertEquals(1, result.getPassed());
+        assertEquals(1, result.getSkipped());
+        assertEquals(2, result.getTotal());
+    }
+
+    @Test
+    public void malformedReportsAreRejected() {
+        for (String report : new String[] {"", "<testsuite><testcase name=\"a\">", "<testsuite></testcase>",
+                "not xml"}) {
+            try {
+                parse(report);
+                fail("Accepted " + report);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+}
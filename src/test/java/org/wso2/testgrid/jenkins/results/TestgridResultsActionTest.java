@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.results;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestgridResultsActionTest {
+
+    private static CellResult passed(int count) {
+        CellResult result = new CellResult();
+        for (int i = 0; i < count; i++) {
+            result.pass(1);
+        }
+        return result;
+    }
+
+    @Test
+    public void resultsOfTheSameAttemptAreAdded() {
+        TestgridResultsAction action = new TestgridResultsAction();
+        action.add("p/d/s", passed(1));
+        action.add("p/d/s", passed(2));
+
+        assertEquals(3, action.getCells().get("p/d/s").getPassed());
+        assertEquals(1, action.getAttempt("p/d/s"));
+    }
+
+    @Test
+    public void laterAttemptsReplaceEarlierOnes() {
+        TestgridResultsAction action = new TestgridResultsAction();
+        action.add("p/d/s", 1, passed(1));
+        action.add("p/d/s", 2, passed(2));
+        action.add("p/d/s", 2, passed(4));
+
+        assertEquals(6, action.getCells().get("p/d/s").getPassed());
+        assertEquals(2, action.getAttempt("p/d/s"));
+    }
+
+    @Test
+    public void earlierAttemptsArrivingLateAreIgnored() {
+        TestgridResultsAction action = new TestgridResultsAction();
+        action.add("p/d/s", 3, passed(2));
+        action.add("p/d/s", 1, passed(1));
+        action.add("p/d/s", 2, passed(1));
+
+        assertEquals(2, action.getCells().get("p/d/s").getPassed());
+        assertEquals(3, action.getAttempt("p/d/s"));
+        assertEquals(2, action.getTotal().getPassed());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.jenkins.util;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScriptParametersTest {
+
+    @Test
+    public void keysAndUnquotedValuesAreTrimmed() {
+        Map<String, String> parameters = ScriptParameters.parse("  region = us-east-1  \r\nurl=https://host/?a=b\n");
+
+        assertEquals(2, parameters.size());
+        assertEquals("us-east-1", parameters.get("region"));
+        assertEquals("https://host/?a=b", parameters.get("url"));
+    }
+
+    @Test
+    public void quotedValuesKeepWhiteSpaceAndSupportEscapes() {
+        Map<String, String> parameters = ScriptParameters.parse("padded=\"  x  \"\n"
+                + "escaped=\"a\\tb\\nc\\\\d\\\"e\" trailing text\n"
+                + "single='it\\'s'\n"
+                + "unknown=\"\\q\"\n"
+                + "unclosed=\"open");
+
+        assertEquals("  x  ", parameters.get("padded"));
+        assertEquals("a\tb\nc\\d\"e", parameters.get("escaped"));
+        assertEquals("it's", parameters.get("single"));
+        assertEquals("\\q", parameters.get("unknown"));
+        assertEquals("open", parameters.get("unclosed"));
+    }
+
+    @Test
+    public void commentsAndLinesWithoutKeysAreIgnored() {
+        Map<String, String> parameters = ScriptParameters.parse("# comment=1\n! comment=2\n\n   \n"
+                + "no separator\n=no key\nkey=first\nkey=last");
+
+        assertEquals(1, parameters.size());
+        assertEquals("last", parameters.get("key"));
+    }
+
+    @Test
+    public void quotedKeysMayHoldSeparatorsAndCommentMarkers() {
+        Map<String, String> parameters = ScriptParameters.parse("\"a=b\"=1\n'#c' = 2\n\"\"=3\n\"d\" no separator");
+
+        assertEquals(3, parameters.size());
+        assertEquals("1", parameters.get("a=b"));
+        assertEquals("2", parameters.get("#c"));
+        assertEquals("3", parameters.get(""));
+    }
+
+    @Test
+    public void formattedParametersAreParsedBack() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("plain", "value");
+        parameters.put("equals", "a=b");
+        parameters.put("padded", " x ");
+        parameters.put("lines", "one\r\ntwo");
+        parameters.put("quoted", "\"x\"");
+        parameters.put("escapes", "\\t\t");
+        parameters.put("empty", "");
+        parameters.put("a=b", "key with separator");
+        parameters.put("#key", "comment marker");
+        parameters.put("!key", "comment marker");
+        parameters.put(" padded key ", "white space");
+        parameters.put("'quote", "leading quote");
+        parameters.put("", "empty key");
+
+        assertEquals(parameters, ScriptParameters.parse(ScriptParameters.format(parameters)));
+    }
+
+    @Test
+    public void longBlocksWithoutSeparatorsAreParsedInLinearTime() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            text.append("line without separator ").append(i).append('\n');
+        }
+        text.append("key=value");
+
+        long start = System.nanoTime();
+        Map<String, String> parameters = ScriptParameters.parse(text.toString());
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals("value", parameters.get("key"));
+        assertTrue("parsing took " + millis + " ms", millis < 5000);
+    }
+}